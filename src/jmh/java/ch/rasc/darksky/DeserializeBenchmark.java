@@ -0,0 +1,154 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.rasc.darksky.binary.DsResponseCodec;
+import ch.rasc.darksky.json.DsNumberMode;
+import ch.rasc.darksky.json.JacksonJsonConverter;
+import ch.rasc.darksky.json.LazyJsonConverter;
+import ch.rasc.darksky.json.StreamingJsonConverter;
+import ch.rasc.darksky.model.DsDataBlock;
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * Throughput of {@link JacksonJsonConverter}, {@link StreamingJsonConverter},
+ * {@link LazyJsonConverter} and {@link DsResponseCodec}. Run with
+ * <code>-prof gc</code> to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeserializeBenchmark {
+
+	@Param({ "forecast.json", "forecast-hourly.json" })
+	private String file;
+
+	private byte[] bytes;
+
+	private String json;
+
+	private DsResponse response;
+
+	private byte[] encoded;
+
+	private JacksonJsonConverter jackson;
+
+	private JacksonJsonConverter jacksonDouble;
+
+	private JacksonJsonConverter jacksonDoubleProjection;
+
+	private StreamingJsonConverter streaming;
+
+	private StreamingJsonConverter streamingDouble;
+
+	private LazyJsonConverter lazy;
+
+	@Setup
+	public void setup() throws IOException, URISyntaxException {
+		this.bytes = Files.readAllBytes(Paths
+				.get(getClass().getClassLoader().getResource(this.file).toURI()));
+		this.json = new String(this.bytes, StandardCharsets.UTF_8);
+		this.jackson = new JacksonJsonConverter();
+		this.jacksonDouble = new JacksonJsonConverter(DsNumberMode.DOUBLE);
+		this.jacksonDoubleProjection = new JacksonJsonConverter(DsNumberMode.DOUBLE,
+				EnumSet.of(DsDataPointField.PRECIP_PROBABILITY,
+						DsDataPointField.PRECIP_INTENSITY));
+		this.streaming = new StreamingJsonConverter();
+		this.streamingDouble = new StreamingJsonConverter(DsNumberMode.DOUBLE);
+		this.lazy = new LazyJsonConverter();
+		this.response = this.jackson.deserialize(this.json);
+		this.encoded = DsResponseCodec.encode(this.response);
+	}
+
+	@Benchmark
+	public DsResponse jacksonString() throws IOException {
+		return this.jackson.deserialize(this.json);
+	}
+
+	@Benchmark
+	public DsResponse jacksonStream() throws IOException {
+		return this.jackson.deserialize(new ByteArrayInputStream(this.bytes));
+	}
+
+	@Benchmark
+	public DsResponse jacksonDoubleStream() throws IOException {
+		return this.jacksonDouble.deserialize(new ByteArrayInputStream(this.bytes));
+	}
+
+	@Benchmark
+	public DsResponse jacksonDoubleProjectionStream() throws IOException {
+		return this.jacksonDoubleProjection
+				.deserialize(new ByteArrayInputStream(this.bytes));
+	}
+
+	@Benchmark
+	public DsResponse streamingStream() throws IOException {
+		return this.streaming.deserialize(new ByteArrayInputStream(this.bytes));
+	}
+
+	@Benchmark
+	public DsResponse streamingDoubleStream() throws IOException {
+		return this.streamingDouble.deserialize(new ByteArrayInputStream(this.bytes));
+	}
+
+	@Benchmark
+	public DsDataPoint lazyCurrently() throws IOException {
+		return this.lazy.deserialize(this.bytes).currently();
+	}
+
+	@Benchmark
+	public DsDataBlock lazyHourly() throws IOException {
+		return this.lazy.deserialize(this.bytes).hourly();
+	}
+
+	@Benchmark
+	public DsResponse binaryDecode() throws IOException {
+		return DsResponseCodec.decode(ByteBuffer.wrap(this.encoded));
+	}
+
+	@Benchmark
+	public byte[] binaryEncode() {
+		return DsResponseCodec.encode(this.response);
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.rasc.darksky.model.DsAlertSeverity;
+import ch.rasc.darksky.model.DsIcon;
+import ch.rasc.darksky.model.DsPrecipType;
+import ch.rasc.darksky.model.DsUnit;
+
+/**
+ * The findByJsonValue lookups the converters call for every data point.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumLookupBenchmark {
+
+	// copies, the parser never returns the interned constants
+	private final String[] icons = { new String("clear-day"),
+			new String("partly-cloudy-night"), new String("rain"), new String("fog"),
+			new String("unknown-icon") };
+
+	private final char[][] iconChars = { "clear-day".toCharArray(),
+			"partly-cloudy-night".toCharArray(), "rain".toCharArray(),
+			"fog".toCharArray(), "unknown-icon".toCharArray() };
+
+	private final String[] precipTypes = { new String("rain"), new String("snow"),
+			new String("sleet") };
+
+	private final String[] units = { new String("us"), new String("si"),
+			new String("uk2") };
+
+	private final String[] severities = { new String("advisory"), new String("watch"),
+			new String("warning") };
+
+	@Benchmark
+	public void icon(Blackhole bh) {
+		for (String icon : this.icons) {
+			bh.consume(DsIcon.findByJsonValue(icon));
+		}
+	}
+
+	@Benchmark
+	public void iconChars(Blackhole bh) {
+		// the parser path, the value is a range in the parser's char buffer
+		for (char[] icon : this.iconChars) {
+			bh.consume(DsIcon.findByJsonValue(icon, 0, icon.length));
+		}
+	}
+
+	@Benchmark
+	public void precipType(Blackhole bh) {
+		for (String precipType : this.precipTypes) {
+			bh.consume(DsPrecipType.findByJsonValue(precipType));
+		}
+	}
+
+	@Benchmark
+	public void unit(Blackhole bh) {
+		for (String unit : this.units) {
+			bh.consume(DsUnit.findByJsonValue(unit));
+		}
+	}
+
+	@Benchmark
+	public void alertSeverity(Blackhole bh) {
+		for (String severity : this.severities) {
+			bh.consume(DsAlertSeverity.findByJsonValue(severity));
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.rasc.darksky.model.DsBlock;
+import ch.rasc.darksky.model.DsForecastRequest;
+import ch.rasc.darksky.model.DsLanguage;
+import ch.rasc.darksky.model.DsTimeMachineRequest;
+import ch.rasc.darksky.model.DsUnit;
+
+/**
+ * URL and request key construction in {@link DsClient}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+
+	private DsClient client;
+
+	private DsForecastRequest simpleRequest;
+
+	private DsForecastRequest fullRequest;
+
+	private DsTimeMachineRequest timeMachineRequest;
+
+	@Setup
+	public void setup() {
+		this.client = new DsClient("0123456789abcdef0123456789abcdef");
+		this.simpleRequest = DsForecastRequest.builder().latitude("46.93011019")
+				.longitude("7.5635394").build();
+		this.fullRequest = DsForecastRequest.builder().latitude("46.93011019")
+				.longitude("7.5635394").unit(DsUnit.SI).language(DsLanguage.DE)
+				.extendHourly(true).excludeBlock(DsBlock.MINUTELY).excludeBlock(DsBlock.ALERTS)
+				.build();
+		this.timeMachineRequest = DsTimeMachineRequest.builder().latitude("46.93011019")
+				.longitude("7.5635394").time(1584723707L).includeBlock(DsBlock.HOURLY)
+				.build();
+	}
+
+	@Benchmark
+	public ResolvedRequest forecastSimple() {
+		return this.client.resolve(this.simpleRequest);
+	}
+
+	@Benchmark
+	public ResolvedRequest forecastFull() {
+		return this.client.resolve(this.fullRequest);
+	}
+
+	@Benchmark
+	public ResolvedRequest timeMachine() {
+		return this.client.resolve(this.timeMachineRequest);
+	}
+
+}
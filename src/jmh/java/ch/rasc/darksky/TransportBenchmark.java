@@ -0,0 +1,111 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpServer;
+
+import ch.rasc.darksky.model.DsForecastRequest;
+import ch.rasc.darksky.model.DsResponse;
+import ch.rasc.darksky.transport.DsOkHttpTransport;
+import ch.rasc.darksky.transport.DsTransport;
+import ch.rasc.darksky.transport.DsUrlConnectionTransport;
+
+/**
+ * Request throughput of the {@link DsTransport} implementations against a local server
+ * that returns <code>forecast.json</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TransportBenchmark {
+
+	@Param({ "okhttp", "urlconnection" })
+	private String transport;
+
+	private HttpServer server;
+
+	private ExecutorService serverExecutor;
+
+	private DsClient client;
+
+	private DsForecastRequest request;
+
+	@Setup
+	public void setup() throws IOException, URISyntaxException {
+		byte[] json = Files.readAllBytes(Paths
+				.get(getClass().getClassLoader().getResource("forecast.json").toURI()));
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/", exchange -> {
+			exchange.sendResponseHeaders(200, json.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(json);
+			}
+		});
+		this.serverExecutor = Executors.newFixedThreadPool(8);
+		this.server.setExecutor(this.serverExecutor);
+		this.server.start();
+
+		DsTransport dsTransport = "okhttp".equals(this.transport)
+				? new DsOkHttpTransport()
+				: new DsUrlConnectionTransport();
+		this.client = DsClient.builder("key").transport(dsTransport)
+				.baseUrl("http://127.0.0.1:" + this.server.getAddress().getPort()
+						+ "/forecast/")
+				.build();
+		this.request = DsForecastRequest.builder().latitude("46.93011019")
+				.longitude("7.5635394").build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.server.stop(0);
+		this.serverExecutor.shutdown();
+	}
+
+	@Benchmark
+	public DsResponse send() throws IOException {
+		return this.client.sendForecastRequest(this.request);
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs asynchronous tasks with a maximum number of tasks in flight. A new task is started
+ * as soon as a running task completes.
+ */
+final class BoundedExecution<T, R> {
+
+	private final List<T> inputs;
+
+	private final Function<T, CompletableFuture<R>> task;
+
+	private final List<CompletableFuture<R>> results;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private BoundedExecution(Collection<T> inputs, Function<T, CompletableFuture<R>> task) {
+		this.inputs = new ArrayList<>(inputs);
+		this.task = task;
+		this.results = new ArrayList<>(this.inputs.size());
+		for (int i = 0; i < this.inputs.size(); i++) {
+			this.results.add(new CompletableFuture<>());
+		}
+	}
+
+	/**
+	 * @return one future per input, in input order
+	 */
+	static <T, R> List<CompletableFuture<R>> run(Collection<T> inputs,
+			Function<T, CompletableFuture<R>> task, int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be greater than 0");
+		}
+		BoundedExecution<T, R> execution = new BoundedExecution<>(inputs, task);
+		int lanes = Math.min(maxInFlight, execution.inputs.size());
+		for (int i = 0; i < lanes; i++) {
+			execution.startNext();
+		}
+		return execution.results;
+	}
+
+	private void startNext() {
+		// loop instead of recursion for tasks that complete immediately
+		while (true) {
+			int ix = this.next.getAndIncrement();
+			if (ix >= this.inputs.size()) {
+				return;
+			}
+
+			CompletableFuture<R> future;
+			try {
+				future = this.task.apply(this.inputs.get(ix));
+			}
+			catch (Throwable e) {
+				this.results.get(ix).completeExceptionally(e);
+				continue;
+			}
+
+			if (future.isDone()) {
+				complete(ix, future);
+			}
+			else {
+				future.whenComplete((r, e) -> {
+					complete(ix, future);
+					startNext();
+				});
+				return;
+			}
+		}
+	}
+
+	private void complete(int ix, CompletableFuture<R> future) {
+		CompletableFuture<R> result = this.results.get(ix);
+		future.whenComplete((r, e) -> {
+			if (e != null) {
+				result.completeExceptionally(e);
+			}
+			else {
+				result.complete(r);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Shared daemon thread for delayed tasks: rate limiter permits and retry backoff. The
+ * tasks only complete futures or enqueue calls and must not block.
+ */
+final class DefaultScheduler {
+
+	private static volatile ScheduledExecutorService instance;
+
+	private DefaultScheduler() {
+		// utility class
+	}
+
+	static ScheduledExecutorService get() {
+		ScheduledExecutorService scheduler = instance;
+		if (scheduler == null) {
+			synchronized (DefaultScheduler.class) {
+				scheduler = instance;
+				if (scheduler == null) {
+					ScheduledThreadPoolExecutor executor;
+					executor = new ScheduledThreadPoolExecutor(1, r -> {
+						Thread thread = new Thread(r, "darksky-scheduler");
+						thread.setDaemon(true);
+						return thread;
+					});
+					executor.setRemoveOnCancelPolicy(true);
+					instance = scheduler = executor;
+				}
+			}
+		}
+		return scheduler;
+	}
+
+}
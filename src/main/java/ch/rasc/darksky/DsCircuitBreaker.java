@@ -0,0 +1,158 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.annotation.Nullable;
+
+/**
+ * Fails requests fast while darksky.net is unhealthy.
+ * <p>
+ * After <code>failureThreshold</code> consecutive failed calls (I/O errors and server
+ * errors) the breaker opens and every request fails with a
+ * {@link DsCircuitOpenException} without calling the API. After
+ * <code>openDuration</code> the breaker lets one trial call through (half open). A
+ * successful trial closes the breaker, a failed trial opens it again.
+ */
+public class DsCircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+
+	private final long openNanos;
+
+	private State state = State.CLOSED;
+
+	private int failures;
+
+	private long openedAt;
+
+	private boolean trialRunning;
+
+	/**
+	 * Opens after 5 consecutive failures for 30 seconds.
+	 */
+	public DsCircuitBreaker() {
+		this(5, Duration.ofSeconds(30));
+	}
+
+	public DsCircuitBreaker(int failureThreshold, Duration openDuration) {
+		if (failureThreshold < 1) {
+			throw new IllegalArgumentException("failureThreshold must be at least 1");
+		}
+		this.failureThreshold = failureThreshold;
+		this.openNanos = openDuration.toNanos();
+	}
+
+	public synchronized State state() {
+		if (this.state == State.OPEN
+				&& System.nanoTime() - this.openedAt >= this.openNanos) {
+			return State.HALF_OPEN;
+		}
+		return this.state;
+	}
+
+	/**
+	 * Asks for permission to send a call. Every granted call must be followed by
+	 * {@link #onSuccess()}, {@link #onFailure()} or {@link #release()}.
+	 */
+	synchronized boolean tryAcquire() {
+		switch (state()) {
+		case CLOSED:
+			return true;
+		case HALF_OPEN:
+			if (this.trialRunning) {
+				return false;
+			}
+			this.state = State.HALF_OPEN;
+			this.trialRunning = true;
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * The call reached darksky.net and got a response that is not a server error.
+	 */
+	synchronized void onSuccess() {
+		this.state = State.CLOSED;
+		this.failures = 0;
+		this.trialRunning = false;
+	}
+
+	/**
+	 * The call failed with an I/O error or a server error.
+	 *
+	 * @return true if the breaker opened
+	 */
+	synchronized boolean onFailure() {
+		this.failures++;
+		boolean open = this.state == State.HALF_OPEN
+				|| this.state == State.CLOSED && this.failures >= this.failureThreshold;
+		this.trialRunning = false;
+		if (open) {
+			this.state = State.OPEN;
+			this.openedAt = System.nanoTime();
+		}
+		return open;
+	}
+
+	/**
+	 * The call was not sent, for example because the daily quota is used up.
+	 */
+	synchronized void release() {
+		this.trialRunning = false;
+	}
+
+	/**
+	 * Records the outcome of a granted call.
+	 *
+	 * @param failure null if the call succeeded
+	 * @return true if the breaker opened
+	 */
+	boolean record(@Nullable Throwable failure) {
+		if (failure == null
+				|| failure instanceof DsHttpException && !isFailure(failure)) {
+			// darksky.net answered
+			onSuccess();
+			return false;
+		}
+		if (isFailure(failure)) {
+			return onFailure();
+		}
+		release();
+		return false;
+	}
+
+	/**
+	 * True if the failure says something about the health of darksky.net.
+	 */
+	static boolean isFailure(Throwable failure) {
+		if (failure instanceof DsHttpException) {
+			return ((DsHttpException) failure).getCode() >= 500;
+		}
+		return failure instanceof IOException
+				&& !(failure instanceof DsQuotaExceededException)
+				&& !(failure instanceof DsCircuitOpenException);
+	}
+
+}
@@ -15,37 +15,122 @@
  */
 package ch.rasc.darksky;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
+import ch.rasc.darksky.cache.DsDiskCache;
+import ch.rasc.darksky.cache.DsResponseCache;
+import ch.rasc.darksky.geo.DsCoordinate;
+import ch.rasc.darksky.geo.DsCoordinateQuantizer;
+import ch.rasc.darksky.geo.DsSpatialIndex;
 import ch.rasc.darksky.json.JacksonJsonConverter;
 import ch.rasc.darksky.json.JsonConverter;
 import ch.rasc.darksky.model.DsBlock;
 import ch.rasc.darksky.model.DsForecastRequest;
 import ch.rasc.darksky.model.DsLanguage;
+import ch.rasc.darksky.model.DsPriority;
 import ch.rasc.darksky.model.DsResponse;
 import ch.rasc.darksky.model.DsTimeMachineRequest;
 import ch.rasc.darksky.model.DsUnit;
+import ch.rasc.darksky.transport.DsOkHttpTransport;
+import ch.rasc.darksky.transport.DsTransport;
+import ch.rasc.darksky.transport.DsTransportResponse;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-import okhttp3.ResponseBody;
 
 public class DsClient {
+	/**
+	 * Time Machine responses are treated as final when the requested time is older than
+	 * this. Covers the rest of the requested local day in every time zone.
+	 */
+	private static final long HISTORICAL_AGE_SECONDS = TimeUnit.DAYS.toSeconds(2);
+
+	private static final String DEFAULT_BASE_URL = "https://api.darksky.net/forecast/";
+
 	private final String apiKey;
 
 	private final JsonConverter jsonConverter;
 
-	private final OkHttpClient httpClient;
+	private final DsTransport transport;
+
+	private final HttpUrl baseUrl;
+
+	private final Executor decodeExecutor;
+
+	@Nullable
+	private final DsResponseCache cache;
+
+	@Nullable
+	private final DsDiskCache diskCache;
+
+	@Nullable
+	private final DsRateLimiter rateLimiter;
+
+	@Nullable
+	private final DsRetryPolicy retryPolicy;
+
+	@Nullable
+	private final DsCircuitBreaker circuitBreaker;
+
+	private final boolean staleIfError;
+
+	@Nullable
+	private final DsHedgingPolicy hedgingPolicy;
+
+	@Nullable
+	private final DsRefreshPolicy refreshPolicy;
+
+	@Nullable
+	private final DsCoordinateQuantizer coordinateQuantizer;
+
+	@Nullable
+	private final DsSpatialIndex spatialIndex;
+
+	private final double maxDistanceKm;
 
-	private Integer apiCalls;
+	/**
+	 * Keys of the running background refreshes.
+	 */
+	private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
 
-	private String responseTime;
+	/**
+	 * Calls and hedged calls sent with the hedging policy, for the extra request ratio.
+	 */
+	private final AtomicLong hedgingCalls = new AtomicLong();
+
+	private final AtomicLong hedgedCalls = new AtomicLong();
+
+	/**
+	 * Running requests by request key. Only set when identical requests are coalesced.
+	 */
+	@Nullable
+	private final ConcurrentHashMap<String, CompletableFuture<DsResponse>> inFlight;
+
+	private final DsClientMetrics metrics = new DsClientMetrics();
+
+	private volatile String responseTime;
 
 	public DsClient(String apiKey) {
 		this(apiKey, new JacksonJsonConverter(), new OkHttpClient());
@@ -60,9 +145,49 @@ public class DsClient {
 	}
 
 	public DsClient(String apiKey, JsonConverter jsonConverter, OkHttpClient httpClient) {
-		this.apiKey = apiKey;
-		this.jsonConverter = jsonConverter;
-		this.httpClient = httpClient;
+		this(apiKey, jsonConverter, httpClient, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param decodeExecutor Executor that deserializes the response bodies of the
+	 * asynchronous send methods. Keeps the OkHttp dispatcher threads free for network
+	 * I/O.
+	 */
+	public DsClient(String apiKey, JsonConverter jsonConverter, OkHttpClient httpClient,
+			Executor decodeExecutor) {
+		this(builder(apiKey).jsonConverter(jsonConverter).httpClient(httpClient)
+				.decodeExecutor(decodeExecutor));
+	}
+
+	private DsClient(Builder builder) {
+		this.apiKey = builder.apiKey;
+		this.jsonConverter = builder.jsonConverter != null ? builder.jsonConverter
+				: new JacksonJsonConverter();
+		this.transport = builder.transport != null ? builder.transport
+				: new DsOkHttpTransport();
+		this.baseUrl = HttpUrl.get(
+				builder.baseUrl != null ? builder.baseUrl : DEFAULT_BASE_URL);
+		this.decodeExecutor = builder.decodeExecutor != null ? builder.decodeExecutor
+				: ForkJoinPool.commonPool();
+		this.cache = builder.cache;
+		this.diskCache = builder.diskCache;
+		this.rateLimiter = builder.rateLimiter;
+		this.retryPolicy = builder.retryPolicy;
+		this.circuitBreaker = builder.circuitBreaker;
+		this.staleIfError = builder.staleIfError;
+		this.hedgingPolicy = builder.hedgingPolicy;
+		this.refreshPolicy = builder.refreshPolicy;
+		this.coordinateQuantizer = builder.coordinateQuantizer;
+		this.spatialIndex = builder.spatialIndex;
+		if (this.cache != null && this.spatialIndex != null) {
+			this.cache.addRemovalListener(this.spatialIndex::invalidate);
+		}
+		this.maxDistanceKm = builder.maxDistanceKm;
+		this.inFlight = builder.coalesceRequests ? new ConcurrentHashMap<>() : null;
+	}
+
+	public static Builder builder(String apiKey) {
+		return new Builder(apiKey);
 	}
 
 	/**
@@ -74,10 +199,122 @@ public class DsClient {
 	 */
 	@Nullable
 	public DsResponse sendForecastRequest(DsForecastRequest request) throws IOException {
-		HttpUrl.Builder urlBuilder = new HttpUrl.Builder().scheme("https")
-				.host("api.darksky.net").addPathSegment("forecast")
-				.addPathSegment(this.apiKey)
-				.addPathSegment(request.latitude() + "," + request.longitude());
+		ResolvedRequest resolved = resolve(request);
+		if (resolved == null) {
+			return null;
+		}
+		return send(resolved);
+	}
+
+	/**
+	 * Sends a Forecast Request to darksky.net without blocking the calling thread.
+	 * <p>
+	 * The request is sent by the {@link DsTransport}, the response body is deserialized
+	 * on the decode executor. With the default transport the number of concurrent
+	 * requests is limited by {@link okhttp3.Dispatcher#getMaxRequestsPerHost()} (default
+	 * 5).
+	 *
+	 * @param Request object
+	 * @return A future that completes with the darksky response, or with
+	 * <code>null</code> if every block is excluded
+	 */
+	public CompletableFuture<DsResponse> sendForecastRequestAsync(
+			DsForecastRequest request) {
+		ResolvedRequest resolved = resolve(request);
+		if (resolved == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return sendAsync(resolved);
+	}
+
+	/**
+	 * Sends multiple Forecast Requests to darksky.net without blocking the calling
+	 * thread. At most <code>maxInFlight</code> requests are running at the same time,
+	 * the next request is sent as soon as a running request completes. The effective
+	 * concurrency is additionally limited by the {@link DsTransport}.
+	 *
+	 * @param requests The requests to send
+	 * @param maxInFlight Maximum number of concurrently running requests
+	 * @return One future per request, in the order of the input collection. A failed
+	 * request only completes its own future exceptionally.
+	 */
+	public List<CompletableFuture<DsResponse>> sendForecastRequestsAsync(
+			Collection<DsForecastRequest> requests, int maxInFlight) {
+		return BoundedExecution.run(requests, this::sendForecastRequestAsync,
+				maxInFlight);
+	}
+
+	/**
+	 * Sends a Time Machine Request to darksky.net
+	 *
+	 * A Time Machine Request returns the observed (in the past) or forecasted (in the
+	 * future) hour-by-hour and daily weather conditions for a particular date. A Time
+	 * Machine request is identical in structure to a Forecast Request, except:
+	 *
+	 * <li>The {@link DsResponse#currently()} data point will refer to the time provided,
+	 * rather than the current time.</li>
+	 * <li>The {@link DsResponse#minutely()} data block will be omitted, unless you are
+	 * requesting a time within an hour of the present.</li>
+	 * <li>The {@link DsResponse#hourly()} data block will contain data points starting at
+	 * midnight (local time) of the day requested, and continuing until midnight (local
+	 * time) of the following day.</li>
+	 * <li>The {@link DsResponse#daily()} data block will contain a single data point
+	 * referring to the requested date.</li>
+	 * <li>The {@link DsResponse#alerts()} data block will be omitted.</li>
+	 *
+	 * @param Request object
+	 * @return The darksky response
+	 * @throws IOException
+	 */
+	@Nullable
+	public DsResponse sendTimeMachineRequest(DsTimeMachineRequest request)
+			throws IOException {
+		ResolvedRequest resolved = resolve(request);
+		if (resolved == null) {
+			return null;
+		}
+		return send(resolved);
+	}
+
+	/**
+	 * Sends a Time Machine Request to darksky.net without blocking the calling thread.
+	 *
+	 * @see #sendTimeMachineRequest(DsTimeMachineRequest)
+	 * @see #sendForecastRequestAsync(DsForecastRequest)
+	 *
+	 * @param Request object
+	 * @return A future that completes with the darksky response, or with
+	 * <code>null</code> if every block is excluded
+	 */
+	public CompletableFuture<DsResponse> sendTimeMachineRequestAsync(
+			DsTimeMachineRequest request) {
+		ResolvedRequest resolved = resolve(request);
+		if (resolved == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return sendAsync(resolved);
+	}
+
+	/**
+	 * Sends multiple Time Machine Requests to darksky.net without blocking the calling
+	 * thread.
+	 *
+	 * @see #sendForecastRequestsAsync(Collection, int)
+	 *
+	 * @param requests The requests to send
+	 * @param maxInFlight Maximum number of concurrently running requests
+	 * @return One future per request, in the order of the input collection
+	 */
+	public List<CompletableFuture<DsResponse>> sendTimeMachineRequestsAsync(
+			Collection<DsTimeMachineRequest> requests, int maxInFlight) {
+		return BoundedExecution.run(requests, this::sendTimeMachineRequestAsync,
+				maxInFlight);
+	}
+
+	@Nullable
+	ResolvedRequest resolve(DsForecastRequest request) {
+		HttpUrl.Builder urlBuilder = this.baseUrl.newBuilder().addPathSegment(this.apiKey)
+				.addPathSegment(location(request.latitude(), request.longitude()));
 
 		DsUnit unit = request.unit();
 		if (unit != null && unit != DsUnit.US) {
@@ -89,15 +326,72 @@ public class DsClient {
 			urlBuilder.addQueryParameter("extend", "hourly");
 		}
 
-		DsLanguage language = request.language();
+		addLanguage(urlBuilder, request.language());
+
+		Set<DsBlock> blocks = addExclude(urlBuilder, request.includeBlocks(),
+				request.excludeBlocks());
+		if (blocks.isEmpty()) {
+			return null;
+		}
+
+		return new ResolvedRequest(urlBuilder.build(), blocks, false,
+				request.priority());
+	}
+
+	@Nullable
+	ResolvedRequest resolve(DsTimeMachineRequest request) {
+		HttpUrl.Builder urlBuilder = this.baseUrl.newBuilder().addPathSegment(this.apiKey)
+				.addPathSegment(location(request.latitude(), request.longitude()) + ","
+						+ request.time());
+
+		DsUnit unit = request.unit();
+		if (unit != null && unit != DsUnit.US) {
+			urlBuilder.addQueryParameter("units", unit.getJsonValue());
+		}
+
+		addLanguage(urlBuilder, request.language());
+
+		Set<DsBlock> blocks = addExclude(urlBuilder, request.includeBlocks(),
+				request.excludeBlocks());
+		if (blocks.isEmpty()) {
+			return null;
+		}
+
+		long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+		boolean historical = request.time() < now - HISTORICAL_AGE_SECONDS;
+		return new ResolvedRequest(urlBuilder.build(), blocks, historical,
+				request.priority());
+	}
+
+	/**
+	 * The location path segment, snapped to the grid of the coordinate quantizer.
+	 */
+	private String location(String latitude, String longitude) {
+		if (this.coordinateQuantizer == null) {
+			return latitude + "," + longitude;
+		}
+		return this.coordinateQuantizer.quantize(DsCoordinate.of(latitude, longitude))
+				.toString();
+	}
+
+	private static void addLanguage(HttpUrl.Builder urlBuilder,
+			@Nullable DsLanguage language) {
 		if (language != null && language != DsLanguage.EN) {
 			urlBuilder.addQueryParameter("lang",
 					language.name().toLowerCase().replace('_', '-'));
 		}
+	}
 
+	/**
+	 * Adds the exclude query parameter.
+	 *
+	 * @return the blocks the request asks for. An empty set if every block is excluded
+	 * and no request has to be sent.
+	 */
+	private static Set<DsBlock> addExclude(HttpUrl.Builder urlBuilder,
+			Set<DsBlock> include, Set<DsBlock> excludeBlocks) {
 		Set<DsBlock> exclude = EnumSet.noneOf(DsBlock.class);
 
-		Set<DsBlock> include = request.includeBlocks();
 		if (!include.isEmpty()) {
 			for (DsBlock block : DsBlock.values()) {
 				if (!include.contains(block)) {
@@ -106,11 +400,11 @@ public class DsClient {
 			}
 		}
 
-		if (!request.excludeBlocks().isEmpty()) {
-			exclude.addAll(request.excludeBlocks());
+		if (!excludeBlocks.isEmpty()) {
+			exclude.addAll(excludeBlocks);
 			if (exclude.size() == DsBlock.values().length) {
 				// Everything excluded
-				return null;
+				return EnumSet.noneOf(DsBlock.class);
 			}
 		}
 
@@ -119,125 +413,891 @@ public class DsClient {
 					.map(DsBlock::getJsonValue).collect(Collectors.joining(",")));
 		}
 
-		Request getRequest = new Request.Builder().get().url(urlBuilder.build()).build();
+		return EnumSet.complementOf(EnumSet.copyOf(exclude));
+	}
+
+	@Nullable
+	private DsResponse send(ResolvedRequest request) throws IOException {
+		DsResponse cached = cached(request);
+		if (cached != null) {
+			return cached;
+		}
+
+		if (this.inFlight == null) {
+			return fetch(request);
+		}
+
+		CompletableFuture<DsResponse> leader = new CompletableFuture<>();
+		CompletableFuture<DsResponse> running = this.inFlight
+				.putIfAbsent(request.key(), leader);
+		if (running != null) {
+			return join(running);
+		}
+
+		try {
+			DsResponse response = fetch(request);
+			this.inFlight.remove(request.key(), leader);
+			leader.complete(response);
+			return response;
+		}
+		catch (IOException | RuntimeException | Error e) {
+			this.inFlight.remove(request.key(), leader);
+			leader.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private CompletableFuture<DsResponse> sendAsync(ResolvedRequest request) {
+		DsResponse cached = cached(request);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
 
-		try (Response response = this.httpClient.newCall(getRequest).execute();
-				ResponseBody body = response.body()) {
+		if (this.inFlight == null) {
+			return fetchAsync(request);
+		}
 
-			String apiCallsString = response.header("X-Forecast-API-Calls");
-			if (apiCallsString != null && apiCallsString.trim().length() > 0) {
-				this.apiCalls = Integer.valueOf(apiCallsString);
+		CompletableFuture<DsResponse> leader = new CompletableFuture<>();
+		CompletableFuture<DsResponse> running = this.inFlight
+				.putIfAbsent(request.key(), leader);
+		if (running != null) {
+			// a new stage, a caller must not be able to complete the shared future
+			return running.thenApply(Function.identity());
+		}
+
+		CompletableFuture<DsResponse> fetched;
+		try {
+			fetched = fetchAsync(request);
+		}
+		catch (RuntimeException | Error e) {
+			this.inFlight.remove(request.key(), leader);
+			leader.completeExceptionally(e);
+			throw e;
+		}
+		fetched.whenComplete((response, e) -> {
+			this.inFlight.remove(request.key(), leader);
+			if (e != null) {
+				leader.completeExceptionally(e);
+			}
+			else {
+				leader.complete(response);
 			}
+		});
+		return leader.thenApply(Function.identity());
+	}
 
-			this.responseTime = response.header("X-Response-Time");
+	/**
+	 * Looks up the in-memory cache and then the spatial index for a response of a
+	 * nearby location.
+	 */
+	@Nullable
+	private DsResponse cached(ResolvedRequest request) {
+		if (this.cache == null) {
+			return null;
+		}
+		DsResponse cached = cachedOrRefresh(request);
+		if (cached == null && this.spatialIndex != null) {
+			cached = this.spatialIndex.nearest(request.variant(), request.latitude(),
+					request.longitude(), this.maxDistanceKm);
+			if (cached != null) {
+				this.metrics.recordNearbyResponse();
+			}
+		}
+		return cached;
+	}
+
+	/**
+	 * Looks up the in-memory cache and starts a background refresh if the refresh
+	 * policy asks for one.
+	 */
+	@Nullable
+	private DsResponse cachedOrRefresh(ResolvedRequest request) {
+		if (this.refreshPolicy == null) {
+			return this.cache.get(request.key());
+		}
+
+		DsResponseCache.Lookup lookup = this.cache.lookup(request.key());
+		if (lookup == null) {
+			return null;
+		}
+		boolean usable = this.refreshPolicy.isUsable(lookup);
+		if (usable && this.refreshPolicy.shouldRefresh(lookup)) {
+			refresh(request);
+		}
+		return usable ? lookup.response() : null;
+	}
 
-			if (body != null) {
-				String jsonData = body.string();
-				return this.jsonConverter.deserialize(jsonData);
+	/**
+	 * Fetches a response in the background and replaces the cached response. Skips the
+	 * disk cache, it would return the response that is being refreshed.
+	 */
+	private void refresh(ResolvedRequest request) {
+		if (!this.refreshing.add(request.key())) {
+			return;
+		}
+		this.metrics.recordRefresh();
+		callWithRetryAsync(request.withPriority(DsPriority.PREFETCH), 1)
+				.whenComplete((response, e) -> {
+					if (e == null) {
+						cache(request, response);
+					}
+					this.refreshing.remove(request.key());
+				});
+	}
+
+	@Nullable
+	private DsResponse fetch(ResolvedRequest request) throws IOException {
+		if (this.diskCache != null) {
+			DsResponse cached = readDiskCache(request);
+			if (cached != null) {
+				return cached;
 			}
 		}
 
-		return null;
+		DsResponse response;
+		try {
+			response = callWithRetry(request);
+		}
+		catch (IOException e) {
+			DsResponse stale = staleResponse(request, e);
+			if (stale == null) {
+				throw e;
+			}
+			return stale;
+		}
+		cache(request, response);
+		return response;
+	}
+
+	private CompletableFuture<DsResponse> fetchAsync(ResolvedRequest request) {
+		CompletableFuture<DsResponse> diskCached;
+		if (this.diskCache == null) {
+			diskCached = CompletableFuture.completedFuture(null);
+		}
+		else {
+			// the disk read blocks, run it on the decode executor
+			diskCached = CompletableFuture.supplyAsync(() -> readDiskCache(request),
+					this.decodeExecutor);
+		}
+
+		return diskCached.thenCompose(cached -> {
+			if (cached != null) {
+				return CompletableFuture.completedFuture(cached);
+			}
+			return callWithRetryAsync(request, 1).handle((response, e) -> {
+				if (e == null) {
+					cache(request, response);
+					return response;
+				}
+				Throwable cause = unwrap(e);
+				DsResponse stale = staleResponse(request, cause);
+				if (stale == null) {
+					throw e instanceof CompletionException ? (CompletionException) e
+							: new CompletionException(cause);
+				}
+				return stale;
+			});
+		});
+	}
+
+	@Nullable
+	private DsResponse callWithRetry(ResolvedRequest request) throws IOException {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return call(request);
+			}
+			catch (IOException e) {
+				if (!shouldRetry(e, attempt)) {
+					throw e;
+				}
+				this.metrics.recordRetry();
+				try {
+					Thread.sleep(this.retryPolicy.backoffMillis(attempt));
+				}
+				catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					InterruptedIOException interrupted = new InterruptedIOException();
+					interrupted.addSuppressed(e);
+					throw interrupted;
+				}
+			}
+		}
+	}
+
+	private CompletableFuture<DsResponse> callWithRetryAsync(ResolvedRequest request,
+			int attempt) {
+		return callAsync(request).handle((response, e) -> {
+			if (e == null) {
+				return CompletableFuture.completedFuture(response);
+			}
+			Throwable cause = unwrap(e);
+			if (!shouldRetry(cause, attempt)) {
+				return DsClient.<DsResponse>failed(cause);
+			}
+			this.metrics.recordRetry();
+			CompletableFuture<Void> backoff = new CompletableFuture<>();
+			DefaultScheduler.get().schedule(() -> backoff.complete(null),
+					this.retryPolicy.backoffMillis(attempt), TimeUnit.MILLISECONDS);
+			return backoff.thenCompose(v -> callWithRetryAsync(request, attempt + 1));
+		}).thenCompose(Function.identity());
+	}
+
+	private boolean shouldRetry(Throwable failure, int attempt) {
+		return this.retryPolicy != null && attempt < this.retryPolicy.maxAttempts()
+				&& this.retryPolicy.isRetryable(failure);
 	}
 
 	/**
-	 * Sends a Time Machine Request to darksky.net
-	 *
-	 * A Time Machine Request returns the observed (in the past) or forecasted (in the
-	 * future) hour-by-hour and daily weather conditions for a particular date. A Time
-	 * Machine request is identical in structure to a Forecast Request, except:
-	 *
-	 * <li>The {@link DsResponse#currently()} data point will refer to the time provided,
-	 * rather than the current time.</li>
-	 * <li>The {@link DsResponse#minutely()} data block will be omitted, unless you are
-	 * requesting a time within an hour of the present.</li>
-	 * <li>The {@link DsResponse#hourly()} data block will contain data points starting at
-	 * midnight (local time) of the day requested, and continuing until midnight (local
-	 * time) of the following day.</li>
-	 * <li>The {@link DsResponse#daily()} data block will contain a single data point
-	 * referring to the requested date.</li>
-	 * <li>The {@link DsResponse#alerts()} data block will be omitted.</li>
-	 *
-	 * @param Request object
-	 * @return The darksky response
-	 * @throws IOException
+	 * One HTTP call, guarded by the circuit breaker and the rate limiter.
 	 */
 	@Nullable
-	public DsResponse sendTimeMachineRequest(DsTimeMachineRequest request)
-			throws IOException {
-		HttpUrl.Builder urlBuilder = new HttpUrl.Builder().scheme("https")
-				.host("api.darksky.net").addPathSegment("forecast")
-				.addPathSegment(this.apiKey).addPathSegment(request.latitude() + ","
-						+ request.longitude() + "," + request.time());
+	private DsResponse call(ResolvedRequest request) throws IOException {
+		checkCircuit();
+		try {
+			if (this.rateLimiter != null) {
+				join(this.rateLimiter.acquire(request.priority()));
+			}
+			DsResponse response = this.hedgingPolicy != null
+					? join(executeHedgedAsync(request))
+					: execute(request);
+			recordCircuit(null);
+			return response;
+		}
+		catch (IOException | RuntimeException | Error e) {
+			recordCircuit(e);
+			throw e;
+		}
+	}
 
-		DsUnit unit = request.unit();
-		if (unit != null && unit != DsUnit.US) {
-			urlBuilder.addQueryParameter("units", unit.getJsonValue());
+	private CompletableFuture<DsResponse> callAsync(ResolvedRequest request) {
+		try {
+			checkCircuit();
+		}
+		catch (DsCircuitOpenException e) {
+			return failed(e);
 		}
 
-		DsLanguage language = request.language();
-		if (language != null && language != DsLanguage.EN) {
-			urlBuilder.addQueryParameter("lang",
-					language.name().toLowerCase().replace('_', '-'));
+		CompletableFuture<DsResponse> response;
+		if (this.rateLimiter == null) {
+			response = executeHedgedAsync(request);
+		}
+		else {
+			response = this.rateLimiter.acquire(request.priority())
+					.thenCompose(permit -> executeHedgedAsync(request));
 		}
+		if (this.circuitBreaker == null) {
+			return response;
+		}
+		return response
+				.whenComplete((r, e) -> recordCircuit(e != null ? unwrap(e) : null));
+	}
 
-		Set<DsBlock> exclude = EnumSet.noneOf(DsBlock.class);
+	private void checkCircuit() throws DsCircuitOpenException {
+		if (this.circuitBreaker != null && !this.circuitBreaker.tryAcquire()) {
+			this.metrics.recordCircuitRejection();
+			throw new DsCircuitOpenException();
+		}
+	}
 
-		Set<DsBlock> include = request.includeBlocks();
-		if (!include.isEmpty()) {
-			for (DsBlock block : DsBlock.values()) {
-				if (!include.contains(block)) {
-					exclude.add(block);
+	private void recordCircuit(@Nullable Throwable failure) {
+		if (this.circuitBreaker != null && this.circuitBreaker.record(failure)) {
+			this.metrics.recordCircuitOpened();
+		}
+	}
+
+	/**
+	 * Returns an expired cached response when darksky.net is unavailable.
+	 */
+	@Nullable
+	private DsResponse staleResponse(ResolvedRequest request, Throwable failure) {
+		if (!this.staleIfError || !(failure instanceof IOException)
+				|| failure instanceof DsHttpException
+						&& !((DsHttpException) failure).isTransient()) {
+			return null;
+		}
+
+		DsResponse stale = null;
+		if (this.cache != null) {
+			stale = this.cache.getStale(request.key());
+		}
+		if (stale == null && this.diskCache != null) {
+			try {
+				byte[] body = this.diskCache.getStale(request.key());
+				if (body != null) {
+					stale = this.jsonConverter
+							.deserialize(new ByteArrayInputStream(body));
 				}
 			}
+			catch (IOException e) {
+				failure.addSuppressed(e);
+			}
+		}
+		if (stale != null) {
+			this.metrics.recordStaleResponse();
 		}
+		return stale;
+	}
 
-		if (!request.excludeBlocks().isEmpty()) {
-			exclude.addAll(request.excludeBlocks());
-			if (exclude.size() == DsBlock.values().length) {
-				// Everything excluded
+	/**
+	 * Returns the fresh response from the disk cache or null. A disk cache that cannot
+	 * be read does not fail the request, the response is fetched from the API instead.
+	 * <p>
+	 * The response is added to the in-memory cache with the remaining time to live of
+	 * the disk cache entry.
+	 */
+	@Nullable
+	private DsResponse readDiskCache(ResolvedRequest request) {
+		try {
+			DsDiskCache.Entry entry = this.diskCache.getEntry(request.key());
+			if (entry == null) {
 				return null;
 			}
+			DsResponse response = this.jsonConverter
+					.deserialize(new ByteArrayInputStream(entry.body()));
+			if (this.cache != null && response != null) {
+				this.cache.put(request.key(), response, entry.fetchedAt(),
+						entry.expiresAt());
+				if (this.spatialIndex != null) {
+					this.spatialIndex.put(request.key(), request.variant(), response,
+							entry.expiresAt());
+				}
+			}
+			return response;
 		}
+		catch (IOException e) {
+			this.metrics.recordDiskCacheError();
+			return null;
+		}
+	}
 
-		if (!exclude.isEmpty()) {
-			urlBuilder.addQueryParameter("exclude", exclude.stream()
-					.map(DsBlock::getJsonValue).collect(Collectors.joining(",")));
+	private static <T> CompletableFuture<T> failed(Throwable failure) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(failure);
+		return future;
+	}
+
+	private static Throwable unwrap(Throwable e) {
+		return e instanceof CompletionException && e.getCause() != null ? e.getCause()
+				: e;
+	}
+
+	/**
+	 * Waits for the result of an asynchronous request and rethrows its failure.
+	 */
+	@Nullable
+	private static <T> T join(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.join();
+		}
+		catch (CompletionException | CancellationException e) {
+			Throwable cause = unwrap(e);
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
 		}
+	}
 
-		Request getRequest = new Request.Builder().get().url(urlBuilder.build()).build();
+	private void cache(ResolvedRequest request, @Nullable DsResponse response) {
+		if (this.cache != null && response != null) {
+			if (request.historical()) {
+				this.cache.putHistorical(request.key(), response);
+			}
+			else {
+				this.cache.put(request.key(), response, request.blocks());
+			}
 
-		try (Response response = this.httpClient.newCall(getRequest).execute();
-				ResponseBody body = response.body()) {
+			if (this.spatialIndex != null) {
+				// historical responses expire with the maximum age of the index
+				long expiresAt = request.historical() ? Long.MAX_VALUE
+						: System.currentTimeMillis()
+								+ this.cache.ttl(request.blocks()).toMillis();
+				this.spatialIndex.put(request.key(), request.variant(), response,
+						expiresAt);
+			}
+		}
+	}
 
-			String apiCallsString = response.header("X-Forecast-API-Calls");
-			if (apiCallsString != null && apiCallsString.trim().length() > 0) {
-				this.apiCalls = Integer.valueOf(apiCallsString);
+	@Nullable
+	private DsResponse execute(ResolvedRequest request) throws IOException {
+		long start = System.nanoTime();
+		DsTransportResponse response;
+		try {
+			response = this.transport.execute(request.url().toString());
+		}
+		catch (IOException e) {
+			this.metrics.recordCall(start, 0, false);
+			throw e;
+		}
+
+		try (DsTransportResponse r = response) {
+			return handleResponse(request, r, start);
+		}
+	}
+
+	/**
+	 * Sends the call with the hedging policy, or a single call without policy.
+	 */
+	private CompletableFuture<DsResponse> executeHedgedAsync(ResolvedRequest request) {
+		if (this.hedgingPolicy == null) {
+			return executeAsync(request);
+		}
+		this.hedgingCalls.incrementAndGet();
+		return HedgedExecution.run(() -> executeAsync(request),
+				this.hedgingPolicy.delayMillis(this.metrics.clientLatency()),
+				DefaultScheduler.get(), this::tryHedge, this.metrics::recordHedgeWin);
+	}
+
+	private boolean tryHedge() {
+		long allowed = (long) (this.hedgingCalls.get()
+				* this.hedgingPolicy.maxExtraRequestRatio());
+		while (true) {
+			long hedged = this.hedgedCalls.get();
+			if (hedged >= allowed) {
+				return false;
+			}
+			if (this.hedgedCalls.compareAndSet(hedged, hedged + 1)) {
+				this.metrics.recordHedge();
+				return true;
 			}
+		}
+	}
+
+	/**
+	 * Sends one call. Cancelling the returned future cancels the call.
+	 */
+	private CompletableFuture<DsResponse> executeAsync(ResolvedRequest request) {
+		CompletableFuture<DsResponse> future = new CompletableFuture<>();
 
-			this.responseTime = response.header("X-Response-Time");
+		long start = System.nanoTime();
+		CompletableFuture<DsTransportResponse> call = this.transport
+				.executeAsync(request.url().toString());
+		call.whenComplete((response, e) -> {
+			if (e != null) {
+				if (!future.isCancelled()) {
+					this.metrics.recordCall(start, 0, false);
+				}
+				future.completeExceptionally(unwrap(e));
+				return;
+			}
+			if (future.isCancelled()) {
+				closeQuietly(response);
+				return;
+			}
+			try {
+				this.decodeExecutor.execute(() -> {
+					try (DsTransportResponse r = response) {
+						future.complete(handleResponse(request, r, start));
+					}
+					catch (Throwable t) {
+						future.completeExceptionally(t);
+					}
+				});
+			}
+			catch (RejectedExecutionException ree) {
+				closeQuietly(response);
+				this.metrics.recordCall(start, 0, false);
+				future.completeExceptionally(ree);
+			}
+		});
 
-			if (body != null) {
-				String jsonData = body.string();
-				return this.jsonConverter.deserialize(jsonData);
+		future.whenComplete((r, e) -> {
+			if (future.isCancelled()) {
+				call.cancel(true);
+			}
+		});
+		return future;
+	}
+
+	@Nullable
+	private DsResponse handleResponse(ResolvedRequest request,
+			DsTransportResponse response, long start) throws IOException {
+		String responseTimeHeader = response.header("X-Response-Time");
+		String apiCallsHeader = response.header("X-Forecast-API-Calls");
+		this.metrics.recordApiCalls(apiCallsHeader);
+		if (this.rateLimiter != null) {
+			this.rateLimiter.recordApiCalls(apiCallsHeader);
+		}
+		this.metrics.recordResponseTime(responseTimeHeader);
+		this.responseTime = responseTimeHeader;
+
+		CountingInputStream in = null;
+		boolean success = false;
+		try {
+			if (!response.isSuccessful()) {
+				throw httpException(response);
+			}
+
+			DsResponse result;
+			in = new CountingInputStream(response.body());
+			if (this.diskCache != null) {
+				// keep the raw body for the disk cache
+				byte[] bytes = readAllBytes(in);
+				result = this.jsonConverter.deserialize(new ByteArrayInputStream(bytes));
+				storeDiskCache(request, bytes);
+			}
+			else {
+				result = this.jsonConverter.deserialize(in);
+			}
+			success = true;
+			return result;
+		}
+		finally {
+			this.metrics.recordCall(start, in != null ? in.count() : 0, success);
+		}
+	}
+
+	private static DsHttpException httpException(DsTransportResponse response) {
+		String message = "HTTP " + response.code();
+		try {
+			// error responses are small: {"code":403,"error":"..."}
+			byte[] body = new byte[1024];
+			int length = 0;
+			InputStream in = response.body();
+			int read;
+			while (length < body.length
+					&& (read = in.read(body, length, body.length - length)) != -1) {
+				length += read;
+			}
+			if (length > 0) {
+				message += " " + new String(body, 0, length, StandardCharsets.UTF_8);
 			}
 		}
+		catch (IOException e) {
+			// keep the status code only
+		}
+		return new DsHttpException(response.code(), message);
+	}
 
-		return null;
+	private static void closeQuietly(DsTransportResponse response) {
+		try {
+			response.close();
+		}
+		catch (IOException e) {
+			// ignore
+		}
+	}
+
+	/**
+	 * Stores the body in the disk cache. A failed write, for example on a full disk,
+	 * does not discard the response.
+	 */
+	private void storeDiskCache(ResolvedRequest request, byte[] body) {
+		try {
+			if (request.historical()) {
+				this.diskCache.putHistorical(request.key(), body);
+			}
+			else {
+				this.diskCache.put(request.key(), body, request.blocks());
+			}
+		}
+		catch (IOException e) {
+			this.metrics.recordDiskCacheError();
+		}
+	}
+
+	private static byte[] readAllBytes(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Counters and latency histograms of the HTTP calls this client sent.
+	 */
+	public DsClientMetrics metrics() {
+		return this.metrics;
 	}
 
 	/**
 	 * The number of API calls made for today. Value is only set after a request.
+	 *
+	 * @see DsClientMetrics#apiCalls()
 	 */
 	public Integer apiCalls() {
-		return this.apiCalls;
+		return this.metrics.apiCalls();
 	}
 
 	/**
 	 * The server-side response time of the last request. Only set after a request.
+	 *
+	 * @deprecated The last response time is overwritten by concurrent requests. Use
+	 * {@link DsClientMetrics#serverLatency()}
 	 */
+	@Deprecated
 	public String responseTime() {
 		return this.responseTime;
 	}
 
+	private static final class CountingInputStream extends FilterInputStream {
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				this.count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				this.count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			this.count += skipped;
+			return skipped;
+		}
+
+		long count() {
+			return this.count;
+		}
+	}
+
+	public static final class Builder {
+		private final String apiKey;
+
+		private JsonConverter jsonConverter;
+
+		private DsTransport transport;
+
+		private String baseUrl;
+
+		private Executor decodeExecutor;
+
+		private DsResponseCache cache;
+
+		private DsDiskCache diskCache;
+
+		private DsRateLimiter rateLimiter;
+
+		private DsRetryPolicy retryPolicy;
+
+		private DsCircuitBreaker circuitBreaker;
+
+		private boolean staleIfError;
+
+		private DsHedgingPolicy hedgingPolicy;
+
+		private DsRefreshPolicy refreshPolicy;
+
+		private DsCoordinateQuantizer coordinateQuantizer;
+
+		private DsSpatialIndex spatialIndex;
+
+		private double maxDistanceKm;
+
+		private boolean coalesceRequests;
+
+		Builder(String apiKey) {
+			this.apiKey = apiKey;
+		}
+
+		/**
+		 * Default: {@link JacksonJsonConverter}
+		 */
+		public Builder jsonConverter(JsonConverter converter) {
+			this.jsonConverter = converter;
+			return this;
+		}
+
+		/**
+		 * Sends the requests with a {@link DsOkHttpTransport} that uses this client.
+		 * <p>
+		 * Default: a new {@link OkHttpClient} instance
+		 */
+		public Builder httpClient(OkHttpClient client) {
+			this.transport = new DsOkHttpTransport(client);
+			return this;
+		}
+
+		/**
+		 * Sends the HTTP requests.
+		 * <p>
+		 * Default: {@link DsOkHttpTransport}
+		 */
+		public Builder transport(DsTransport httpTransport) {
+			this.transport = httpTransport;
+			return this;
+		}
+
+		/**
+		 * The URL the api key, the location and the parameters are appended to. For
+		 * example the URL of a proxy, a mock server or a compatible provider.
+		 * <p>
+		 * Default: https://api.darksky.net/forecast/
+		 */
+		public Builder baseUrl(String url) {
+			this.baseUrl = url;
+			return this;
+		}
+
+		/**
+		 * Executor that deserializes the response bodies of the asynchronous send
+		 * methods.
+		 * <p>
+		 * Default: {@link ForkJoinPool#commonPool()}
+		 */
+		public Builder decodeExecutor(Executor executor) {
+			this.decodeExecutor = executor;
+			return this;
+		}
+
+		/**
+		 * Returns cached responses for requests with the same location and parameters.
+		 * <p>
+		 * Default: no cache
+		 */
+		public Builder cache(DsResponseCache responseCache) {
+			this.cache = responseCache;
+			return this;
+		}
+
+		/**
+		 * Stores the raw response bodies on disk. Consulted after the in-memory cache and
+		 * before darksky.net is called, survives restarts of the application. Time
+		 * Machine responses of past days are never requested twice.
+		 * <p>
+		 * The client does not close the disk cache.
+		 * <p>
+		 * Default: no disk cache
+		 */
+		public Builder diskCache(DsDiskCache responseDiskCache) {
+			this.diskCache = responseDiskCache;
+			return this;
+		}
+
+		/**
+		 * Limits the rate of HTTP calls and enforces a daily quota. Requests answered by
+		 * a cache do not use a permit.
+		 * <p>
+		 * Default: no limit
+		 */
+		public Builder rateLimiter(DsRateLimiter limiter) {
+			this.rateLimiter = limiter;
+			return this;
+		}
+
+		/**
+		 * Repeats calls that failed with an I/O error or a server error.
+		 * <p>
+		 * Default: no retries
+		 */
+		public Builder retryPolicy(DsRetryPolicy policy) {
+			this.retryPolicy = policy;
+			return this;
+		}
+
+		/**
+		 * Fails requests without calling the API while darksky.net is unhealthy.
+		 * <p>
+		 * Default: no circuit breaker
+		 */
+		public Builder circuitBreaker(DsCircuitBreaker breaker) {
+			this.circuitBreaker = breaker;
+			return this;
+		}
+
+		/**
+		 * When enabled, a request that fails with an I/O error, a server error, an open
+		 * circuit breaker or an exhausted quota returns the expired response of the
+		 * cache or disk cache if there is one. See
+		 * {@link DsResponseCache#DsResponseCache(int, java.util.Map, java.time.Duration)}
+		 * for keeping expired responses in the in-memory cache.
+		 * <p>
+		 * Default: false
+		 */
+		public Builder staleIfError(boolean enabled) {
+			this.staleIfError = enabled;
+			return this;
+		}
+
+		/**
+		 * Sends a second call when a call takes longer than the hedging delay and uses
+		 * the response that arrives first.
+		 * <p>
+		 * Default: no hedging
+		 */
+		public Builder hedging(DsHedgingPolicy policy) {
+			this.hedgingPolicy = policy;
+			return this;
+		}
+
+		/**
+		 * Refreshes cached responses of frequently requested locations before they
+		 * expire and returns expired responses while they are refreshed. Requires a
+		 * {@link #cache(DsResponseCache)}.
+		 * <p>
+		 * Default: no background refresh
+		 */
+		public Builder refresh(DsRefreshPolicy policy) {
+			this.refreshPolicy = policy;
+			return this;
+		}
+
+		/**
+		 * Snaps the coordinates of every request to a grid before the request key and
+		 * the URL are built. Requests for nearby locations share cache entries and API
+		 * calls, the response contains the snapped coordinates.
+		 * <p>
+		 * Default: coordinates are sent unchanged
+		 */
+		public Builder coordinateQuantizer(DsCoordinateQuantizer quantizer) {
+			this.coordinateQuantizer = quantizer;
+			return this;
+		}
+
+		/**
+		 * Answers a request that is not in the cache with the cached response of the
+		 * nearest location within <code>maxDistanceKm</code>, if the response was
+		 * requested with the same parameters and is not expired. Responses are added to
+		 * the index when they are stored in the cache and removed when they are evicted
+		 * from the cache, requires a {@link #cache(DsResponseCache)}.
+		 * <p>
+		 * Default: no spatial index
+		 */
+		public Builder spatialIndex(DsSpatialIndex index, double maxDistanceKm) {
+			this.spatialIndex = index;
+			this.maxDistanceKm = maxDistanceKm;
+			return this;
+		}
+
+		/**
+		 * When enabled, concurrent requests with the same location and parameters share
+		 * one HTTP call and receive the same {@link DsResponse} instance.
+		 * <p>
+		 * Default: false
+		 */
+		public Builder coalesceRequests(boolean coalesce) {
+			this.coalesceRequests = coalesce;
+			return this;
+		}
+
+		public DsClient build() {
+			return new DsClient(this);
+		}
+	}
+
 }
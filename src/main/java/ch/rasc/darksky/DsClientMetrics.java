@@ -0,0 +1,280 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+/**
+ * Thread safe counters and latency histograms of the HTTP calls a {@link DsClient}
+ * sends. Requests answered by a cache or by a coalesced call are not counted.
+ */
+public class DsClientMetrics {
+
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+	private final Clock clock;
+
+	private final LongAdder calls = new LongAdder();
+
+	private final LongAdder errors = new LongAdder();
+
+	private final LongAdder bytesReceived = new LongAdder();
+
+	private final LongAdder retries = new LongAdder();
+
+	private final LongAdder staleResponses = new LongAdder();
+
+	private final LongAdder circuitOpened = new LongAdder();
+
+	private final LongAdder circuitRejections = new LongAdder();
+
+	private final LongAdder hedges = new LongAdder();
+
+	private final LongAdder hedgeWins = new LongAdder();
+
+	private final LongAdder refreshes = new LongAdder();
+
+	private final LongAdder nearbyResponses = new LongAdder();
+
+	private final LongAdder diskCacheErrors = new LongAdder();
+
+	private final DsLatencyHistogram clientLatency = new DsLatencyHistogram();
+
+	private final DsLatencyHistogram serverLatency = new DsLatencyHistogram();
+
+	/**
+	 * UTC day in the upper 32 bits, api calls of that day in the lower 32 bits.
+	 */
+	private final AtomicLong apiCalls = new AtomicLong(-1);
+
+	DsClientMetrics() {
+		this(Clock.systemUTC());
+	}
+
+	DsClientMetrics(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * The number of HTTP calls sent to the API.
+	 */
+	public long calls() {
+		return this.calls.sum();
+	}
+
+	/**
+	 * The number of HTTP calls that failed with an I/O error or an unparsable response.
+	 */
+	public long errors() {
+		return this.errors.sum();
+	}
+
+	/**
+	 * The number of response body bytes received (after decompression).
+	 */
+	public long bytesReceived() {
+		return this.bytesReceived.sum();
+	}
+
+	/**
+	 * The number of calls repeated by the {@link DsRetryPolicy}.
+	 */
+	public long retries() {
+		return this.retries.sum();
+	}
+
+	/**
+	 * The number of failed requests answered with an expired cached response.
+	 */
+	public long staleResponses() {
+		return this.staleResponses.sum();
+	}
+
+	/**
+	 * How many times the {@link DsCircuitBreaker} opened.
+	 */
+	public long circuitOpened() {
+		return this.circuitOpened.sum();
+	}
+
+	/**
+	 * The number of requests the open {@link DsCircuitBreaker} failed without a call.
+	 */
+	public long circuitRejections() {
+		return this.circuitRejections.sum();
+	}
+
+	/**
+	 * The number of hedged calls sent by the {@link DsHedgingPolicy}.
+	 */
+	public long hedges() {
+		return this.hedges.sum();
+	}
+
+	/**
+	 * The number of hedged calls that completed before the original call.
+	 */
+	public long hedgeWins() {
+		return this.hedgeWins.sum();
+	}
+
+	/**
+	 * The number of background refreshes started by the {@link DsRefreshPolicy}.
+	 */
+	public long refreshes() {
+		return this.refreshes.sum();
+	}
+
+	/**
+	 * The number of requests answered with the cached response of a nearby location
+	 * from the {@link ch.rasc.darksky.geo.DsSpatialIndex}.
+	 */
+	public long nearbyResponses() {
+		return this.nearbyResponses.sum();
+	}
+
+	/**
+	 * The number of failed reads and writes of the
+	 * {@link ch.rasc.darksky.cache.DsDiskCache}. The requests continue without the disk
+	 * cache.
+	 */
+	public long diskCacheErrors() {
+		return this.diskCacheErrors.sum();
+	}
+
+	/**
+	 * Time between sending the request and parsing the response body, measured by the
+	 * client.
+	 */
+	public DsLatencyHistogram clientLatency() {
+		return this.clientLatency;
+	}
+
+	/**
+	 * Server-side response time, reported by the X-Response-Time header.
+	 */
+	public DsLatencyHistogram serverLatency() {
+		return this.serverLatency;
+	}
+
+	/**
+	 * The highest X-Forecast-API-Calls value received today (UTC), or null if no call
+	 * has been sent today. Responses arriving out of order never decrease the value.
+	 */
+	@Nullable
+	public Integer apiCalls() {
+		long value = this.apiCalls.get();
+		if (value == -1 || value >>> 32 != today()) {
+			return null;
+		}
+		return (int) value;
+	}
+
+	void recordRetry() {
+		this.retries.increment();
+	}
+
+	void recordStaleResponse() {
+		this.staleResponses.increment();
+	}
+
+	void recordCircuitOpened() {
+		this.circuitOpened.increment();
+	}
+
+	void recordCircuitRejection() {
+		this.circuitRejections.increment();
+	}
+
+	void recordHedge() {
+		this.hedges.increment();
+	}
+
+	void recordHedgeWin() {
+		this.hedgeWins.increment();
+	}
+
+	void recordRefresh() {
+		this.refreshes.increment();
+	}
+
+	void recordNearbyResponse() {
+		this.nearbyResponses.increment();
+	}
+
+	void recordDiskCacheError() {
+		this.diskCacheErrors.increment();
+	}
+
+	void recordCall(long startNanos, long bytes, boolean success) {
+		this.calls.increment();
+		if (!success) {
+			this.errors.increment();
+		}
+		this.bytesReceived.add(bytes);
+		this.clientLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param header value of the X-Response-Time header, for example "67.092ms"
+	 */
+	void recordResponseTime(@Nullable String header) {
+		if (header == null) {
+			return;
+		}
+		String value = header.trim();
+		if (value.endsWith("ms")) {
+			value = value.substring(0, value.length() - 2);
+		}
+		try {
+			double millis = Double.parseDouble(value);
+			this.serverLatency.record((long) (millis * 1000), TimeUnit.MICROSECONDS);
+		}
+		catch (NumberFormatException e) {
+			// ignore unknown formats
+		}
+	}
+
+	/**
+	 * @param header value of the X-Forecast-API-Calls header
+	 */
+	void recordApiCalls(@Nullable String header) {
+		if (header == null || header.trim().isEmpty()) {
+			return;
+		}
+		long count;
+		try {
+			count = Integer.parseInt(header.trim());
+		}
+		catch (NumberFormatException e) {
+			return;
+		}
+		long value = today() << 32 | count & 0xffffffffL;
+		// the counter is reset every day, a newer day always wins
+		this.apiCalls.accumulateAndGet(value,
+				(current, update) -> current == -1 ? update : Math.max(current, update));
+	}
+
+	private long today() {
+		return this.clock.millis() / 1000 / SECONDS_PER_DAY;
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.time.Duration;
+
+/**
+ * Settings for hedged requests. If a call did not complete within the hedging delay the
+ * client sends a second identical call and uses the response that arrives first, the
+ * other call is cancelled.
+ * <p>
+ * The delay is a percentile of {@link DsClientMetrics#clientLatency()}, so only the
+ * slowest calls are hedged. Until the histogram contains <code>minSamples</code> calls
+ * the initial delay is used. The number of hedged calls is limited to a ratio of all
+ * calls, every hedged call counts against the API quota.
+ */
+public class DsHedgingPolicy {
+
+	private final double percentile;
+
+	private final long initialDelayMillis;
+
+	private final long minDelayMillis;
+
+	private final long minSamples;
+
+	private final double maxExtraRequestRatio;
+
+	private DsHedgingPolicy(Builder builder) {
+		this.percentile = builder.percentile;
+		this.initialDelayMillis = builder.initialDelay.toMillis();
+		this.minDelayMillis = builder.minDelay.toMillis();
+		this.minSamples = builder.minSamples;
+		this.maxExtraRequestRatio = builder.maxExtraRequestRatio;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public double maxExtraRequestRatio() {
+		return this.maxExtraRequestRatio;
+	}
+
+	/**
+	 * The time to wait for a call before the second call is sent.
+	 */
+	long delayMillis(DsLatencyHistogram latency) {
+		if (latency.count() < this.minSamples) {
+			return this.initialDelayMillis;
+		}
+		return Math.max(this.minDelayMillis,
+				latency.percentile(this.percentile).toMillis());
+	}
+
+	public static final class Builder {
+		private double percentile = 95;
+
+		private Duration initialDelay = Duration.ofSeconds(1);
+
+		private Duration minDelay = Duration.ofMillis(10);
+
+		private long minSamples = 100;
+
+		private double maxExtraRequestRatio = 0.05;
+
+		Builder() {
+		}
+
+		/**
+		 * The latency percentile (0 - 100) after which a call is hedged.
+		 * <p>
+		 * Default: 95
+		 */
+		public Builder percentile(double value) {
+			if (value <= 0 || value > 100) {
+				throw new IllegalArgumentException("percentile must be in (0, 100]");
+			}
+			this.percentile = value;
+			return this;
+		}
+
+		/**
+		 * The delay while the latency histogram contains less than
+		 * <code>minSamples</code> calls.
+		 * <p>
+		 * Default: 1 second
+		 */
+		public Builder initialDelay(Duration delay) {
+			this.initialDelay = delay;
+			return this;
+		}
+
+		/**
+		 * Lower bound of the delay.
+		 * <p>
+		 * Default: 10 milliseconds
+		 */
+		public Builder minDelay(Duration delay) {
+			this.minDelay = delay;
+			return this;
+		}
+
+		/**
+		 * Number of calls in the latency histogram before the percentile is used.
+		 * <p>
+		 * Default: 100
+		 */
+		public Builder minSamples(long samples) {
+			this.minSamples = samples;
+			return this;
+		}
+
+		/**
+		 * Maximum number of hedged calls as a ratio of all calls, between 0 and 1.
+		 * <p>
+		 * Default: 0.05
+		 */
+		public Builder maxExtraRequestRatio(double ratio) {
+			if (ratio < 0 || ratio > 1) {
+				throw new IllegalArgumentException("ratio must be between 0 and 1");
+			}
+			this.maxExtraRequestRatio = ratio;
+			return this;
+		}
+
+		public DsHedgingPolicy build() {
+			return new DsHedgingPolicy(this);
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.io.IOException;
+
+/**
+ * Thrown when darksky.net answers with a HTTP status code outside of the 2xx range.
+ */
+public class DsHttpException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int code;
+
+	public DsHttpException(int code, String message) {
+		super(message);
+		this.code = code;
+	}
+
+	/**
+	 * The HTTP status code
+	 */
+	public int getCode() {
+		return this.code;
+	}
+
+	/**
+	 * True for server errors (5xx) and 429 Too Many Requests. Sending the request again
+	 * later may succeed.
+	 */
+	public boolean isTransient() {
+		return this.code >= 500 || this.code == 429;
+	}
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of durations with microsecond resolution.
+ * <p>
+ * Values are counted in logarithmic buckets with four sub-buckets per power of two. The
+ * percentiles are the upper bound of a bucket and overestimate the real value by at
+ * most 25%.
+ */
+public class DsLatencyHistogram {
+
+	private static final int SUB_BUCKETS = 4;
+
+	private static final int LINEAR_BUCKETS = 8;
+
+	private static final int MAX_BITS = 40;
+
+	private static final int OVERFLOW_BUCKET = LINEAR_BUCKETS
+			+ (MAX_BITS - 3) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(OVERFLOW_BUCKET + 1);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder totalMicros = new LongAdder();
+
+	private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+	public void record(Duration duration) {
+		record(duration.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	public void record(long value, TimeUnit unit) {
+		long micros = Math.max(0, unit.toMicros(value));
+		this.buckets.incrementAndGet(bucket(micros));
+		this.count.increment();
+		this.totalMicros.add(micros);
+		this.maxMicros.accumulate(micros);
+	}
+
+	public long count() {
+		return this.count.sum();
+	}
+
+	public Duration max() {
+		return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(this.maxMicros.get()));
+	}
+
+	public Duration mean() {
+		long n = this.count.sum();
+		if (n == 0) {
+			return Duration.ZERO;
+		}
+		return Duration
+				.ofNanos(TimeUnit.MICROSECONDS.toNanos(this.totalMicros.sum() / n));
+	}
+
+	/**
+	 * Returns the duration below or equal to which the given percentage of the recorded
+	 * values fall.
+	 *
+	 * @param percentile between 0 and 100
+	 */
+	public Duration percentile(double percentile) {
+		long n = count();
+		if (n == 0) {
+			return Duration.ZERO;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+		long seen = 0;
+		for (int i = 0; i < this.buckets.length(); i++) {
+			seen += this.buckets.get(i);
+			if (seen >= rank) {
+				long upper = Math.min(upperBound(i), this.maxMicros.get());
+				return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(upper));
+			}
+		}
+		return max();
+	}
+
+	static int bucket(long micros) {
+		if (micros < LINEAR_BUCKETS) {
+			return (int) micros;
+		}
+		int bits = 64 - Long.numberOfLeadingZeros(micros);
+		if (bits > MAX_BITS) {
+			return OVERFLOW_BUCKET;
+		}
+		// the two bits after the highest one bit select the sub-bucket
+		int sub = (int) (micros >>> (bits - 3)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (bits - 4) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * The largest value that falls into the bucket.
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		if (bucket >= OVERFLOW_BUCKET) {
+			return Long.MAX_VALUE;
+		}
+		int bits = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+		int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long base = 1L << (bits - 1);
+		return base + base * (sub + 1) / SUB_BUCKETS - 1;
+	}
+
+}
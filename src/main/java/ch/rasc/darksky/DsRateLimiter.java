@@ -0,0 +1,383 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.model.DsPriority;
+
+/**
+ * Token bucket rate limiter with a daily quota budget for the HTTP calls of a
+ * {@link DsClient}.
+ * <p>
+ * A request waits for a token without blocking a thread: {@link #acquire(DsPriority)}
+ * returns a future that a scheduler completes as soon as a token is available. Waiting
+ * requests are served by priority, interactive requests overtake queued prefetch
+ * requests.
+ * <p>
+ * Each priority may use a share of the daily quota (default: prefetch 80%, normal 95%,
+ * interactive 100%). When the share is used up the request fails with a
+ * {@link DsQuotaExceededException}, so prefetch traffic stops first and interactive
+ * requests keep going. The used quota is the larger of the calls this limiter granted
+ * today and the X-Forecast-API-Calls header of the last response, which also counts
+ * calls other applications made with the same API key. The quota resets at midnight
+ * UTC.
+ * <p>
+ * A caller that no longer needs a permit cancels the future. A cancelled request does
+ * not use a token or quota.
+ */
+public class DsRateLimiter {
+
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+	private final double permitsPerNano;
+
+	private final double burst;
+
+	private final int dailyQuota;
+
+	private final Map<DsPriority, Integer> budgets = new EnumMap<>(DsPriority.class);
+
+	private final ScheduledExecutorService scheduler;
+
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+
+	private double tokens;
+
+	private long lastRefill = System.nanoTime();
+
+	private long sequence;
+
+	private boolean drainScheduled;
+
+	private long day = -1;
+
+	private int granted;
+
+	private int reported;
+
+	private DsRateLimiter(Builder builder) {
+		this.permitsPerNano = builder.permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = builder.burst;
+		this.tokens = builder.burst;
+		this.dailyQuota = builder.dailyQuota;
+		for (DsPriority priority : DsPriority.values()) {
+			double share = builder.budgetShares.get(priority);
+			this.budgets.put(priority, (int) Math.min(Integer.MAX_VALUE,
+					Math.floor(share * builder.dailyQuota)));
+		}
+		this.scheduler = builder.scheduler != null ? builder.scheduler
+				: DefaultScheduler.get();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Requests a permit for one HTTP call.
+	 *
+	 * @return a future that completes when the call may be sent, or completes
+	 * exceptionally with a {@link DsQuotaExceededException} if the daily quota of the
+	 * priority is used up
+	 */
+	public CompletableFuture<Void> acquire(DsPriority priority) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		DsQuotaExceededException rejected;
+		synchronized (this) {
+			rejected = checkBudget(priority);
+			if (rejected == null) {
+				refill();
+				if (this.waiters.isEmpty() && this.tokens >= 1) {
+					this.tokens--;
+					this.granted++;
+				}
+				else {
+					this.waiters.add(new Waiter(priority, this.sequence++, future));
+					scheduleDrain();
+					return future;
+				}
+			}
+		}
+
+		if (rejected != null) {
+			future.completeExceptionally(rejected);
+		}
+		else {
+			future.complete(null);
+		}
+		return future;
+	}
+
+	/**
+	 * The number of calls used today
+	 */
+	public synchronized int quotaUsed() {
+		rollDay();
+		return Math.max(this.granted, this.reported);
+	}
+
+	/**
+	 * The number of requests waiting for a token
+	 */
+	public synchronized int queueLength() {
+		return this.waiters.size();
+	}
+
+	/**
+	 * @param header value of the X-Forecast-API-Calls header
+	 */
+	void recordApiCalls(@Nullable String header) {
+		if (header == null) {
+			return;
+		}
+		int calls;
+		try {
+			calls = Integer.parseInt(header.trim());
+		}
+		catch (NumberFormatException e) {
+			return;
+		}
+		synchronized (this) {
+			rollDay();
+			this.reported = Math.max(this.reported, calls);
+		}
+	}
+
+	private void drain() {
+		List<Waiter> grantedWaiters = new ArrayList<>();
+		List<Waiter> rejectedWaiters = new ArrayList<>();
+		List<DsQuotaExceededException> rejections = new ArrayList<>();
+		synchronized (this) {
+			this.drainScheduled = false;
+			refill();
+			while (!this.waiters.isEmpty()) {
+				Waiter waiter = this.waiters.peek();
+				if (waiter.future.isDone()) {
+					// cancelled or completed by the caller
+					this.waiters.poll();
+					continue;
+				}
+				DsQuotaExceededException rejected = checkBudget(waiter.priority);
+				if (rejected != null) {
+					this.waiters.poll();
+					rejectedWaiters.add(waiter);
+					rejections.add(rejected);
+				}
+				else if (this.tokens >= 1) {
+					this.waiters.poll();
+					this.tokens--;
+					this.granted++;
+					grantedWaiters.add(waiter);
+				}
+				else {
+					break;
+				}
+			}
+			scheduleDrain();
+		}
+
+		for (int i = 0; i < rejectedWaiters.size(); i++) {
+			rejectedWaiters.get(i).future.completeExceptionally(rejections.get(i));
+		}
+		int unused = 0;
+		for (Waiter waiter : grantedWaiters) {
+			if (!waiter.future.complete(null)) {
+				unused++;
+			}
+		}
+		if (unused > 0) {
+			release(unused);
+		}
+	}
+
+	/**
+	 * Returns tokens of permits the caller cancelled after they were granted.
+	 */
+	private synchronized void release(int permits) {
+		this.tokens = Math.min(this.burst, this.tokens + permits);
+		this.granted = Math.max(0, this.granted - permits);
+		scheduleDrain();
+	}
+
+	/**
+	 * Schedules a drain for the time the next token is available. Caller holds the lock.
+	 */
+	private void scheduleDrain() {
+		if (this.drainScheduled || this.waiters.isEmpty()) {
+			return;
+		}
+		long delay = (long) Math.ceil((1 - this.tokens) / this.permitsPerNano);
+		this.drainScheduled = true;
+		this.scheduler.schedule(this::drain, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Caller holds the lock.
+	 */
+	private void refill() {
+		if (Double.isInfinite(this.permitsPerNano)) {
+			this.tokens = this.burst;
+			return;
+		}
+		long now = System.nanoTime();
+		this.tokens = Math.min(this.burst,
+				this.tokens + (now - this.lastRefill) * this.permitsPerNano);
+		this.lastRefill = now;
+	}
+
+	/**
+	 * Caller holds the lock.
+	 */
+	@Nullable
+	private DsQuotaExceededException checkBudget(DsPriority priority) {
+		if (this.dailyQuota == Integer.MAX_VALUE) {
+			return null;
+		}
+		rollDay();
+		int used = Math.max(this.granted, this.reported);
+		int budget = this.budgets.get(priority);
+		if (used >= budget) {
+			return new DsQuotaExceededException(priority, used, budget);
+		}
+		return null;
+	}
+
+	/**
+	 * Resets the used quota at midnight UTC. Caller holds the lock.
+	 */
+	private void rollDay() {
+		long today = System.currentTimeMillis() / 1000 / SECONDS_PER_DAY;
+		if (today != this.day) {
+			this.day = today;
+			this.granted = 0;
+			this.reported = 0;
+		}
+	}
+
+	private static final class Waiter implements Comparable<Waiter> {
+		final DsPriority priority;
+
+		final long sequence;
+
+		final CompletableFuture<Void> future;
+
+		Waiter(DsPriority priority, long sequence, CompletableFuture<Void> future) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.future = future;
+		}
+
+		@Override
+		public int compareTo(Waiter o) {
+			int cmp = this.priority.compareTo(o.priority);
+			return cmp != 0 ? cmp : Long.compare(this.sequence, o.sequence);
+		}
+	}
+
+	public static final class Builder {
+		private double permitsPerSecond = Double.POSITIVE_INFINITY;
+
+		private int burst = 1;
+
+		private int dailyQuota = Integer.MAX_VALUE;
+
+		private final Map<DsPriority, Double> budgetShares = new EnumMap<>(
+				DsPriority.class);
+
+		private ScheduledExecutorService scheduler;
+
+		Builder() {
+			this.budgetShares.put(DsPriority.INTERACTIVE, 1.0);
+			this.budgetShares.put(DsPriority.NORMAL, 0.95);
+			this.budgetShares.put(DsPriority.PREFETCH, 0.8);
+		}
+
+		/**
+		 * Sustained rate of HTTP calls.
+		 * <p>
+		 * Default: unlimited
+		 */
+		public Builder permitsPerSecond(double permits) {
+			if (permits <= 0) {
+				throw new IllegalArgumentException("permitsPerSecond must be positive");
+			}
+			this.permitsPerSecond = permits;
+			return this;
+		}
+
+		/**
+		 * Number of calls that may be sent at once after an idle period.
+		 * <p>
+		 * Default: 1
+		 */
+		public Builder burst(int permits) {
+			if (permits < 1) {
+				throw new IllegalArgumentException("burst must be at least 1");
+			}
+			this.burst = permits;
+			return this;
+		}
+
+		/**
+		 * Maximum number of calls per UTC day.
+		 * <p>
+		 * Default: unlimited
+		 */
+		public Builder dailyQuota(int quota) {
+			this.dailyQuota = quota;
+			return this;
+		}
+
+		/**
+		 * The share of the daily quota requests of the priority may use, between 0 and 1.
+		 * <p>
+		 * Default: {@link DsPriority#INTERACTIVE} 1, {@link DsPriority#NORMAL} 0.95,
+		 * {@link DsPriority#PREFETCH} 0.8
+		 */
+		public Builder budgetShare(DsPriority priority, double share) {
+			if (share < 0 || share > 1) {
+				throw new IllegalArgumentException("share must be between 0 and 1");
+			}
+			this.budgetShares.put(priority, share);
+			return this;
+		}
+
+		/**
+		 * Scheduler that completes the waiting requests.
+		 * <p>
+		 * Default: a daemon thread shared by all clients
+		 */
+		public Builder scheduler(ScheduledExecutorService executor) {
+			this.scheduler = executor;
+			return this;
+		}
+
+		public DsRateLimiter build() {
+			return new DsRateLimiter(this);
+		}
+	}
+
+}
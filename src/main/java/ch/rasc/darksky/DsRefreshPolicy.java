@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.time.Duration;
+
+import ch.rasc.darksky.cache.DsResponseCache;
+
+/**
+ * Settings for refreshing cached responses in the background.
+ * <p>
+ * Refresh-ahead: a response that was requested at least <code>minHits</code> times is
+ * refreshed when a request finds it after <code>refreshAhead</code> of its time to
+ * live has elapsed. The request is answered with the cached response and frequently
+ * requested locations are replaced before they expire.
+ * <p>
+ * Stale-while-revalidate: a request for a response that expired less than
+ * <code>staleWhileRevalidate</code> ago is answered with the expired response while the
+ * response is fetched in the background. The {@link DsResponseCache} has to keep
+ * expired responses at least as long, see
+ * {@link DsResponseCache#DsResponseCache(int, java.util.Map, Duration)}.
+ * <p>
+ * At most one background refresh per request key is running. Background refreshes are
+ * sent with {@link ch.rasc.darksky.model.DsPriority#PREFETCH}.
+ */
+public class DsRefreshPolicy {
+
+	private final double refreshAhead;
+
+	private final int minHits;
+
+	private final long staleWhileRevalidateMillis;
+
+	private DsRefreshPolicy(Builder builder) {
+		this.refreshAhead = builder.refreshAhead;
+		this.minHits = builder.minHits;
+		this.staleWhileRevalidateMillis = builder.staleWhileRevalidate.toMillis();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Decides if a cached response is refreshed in the background.
+	 */
+	boolean shouldRefresh(DsResponseCache.Lookup lookup) {
+		if (lookup.isExpired()) {
+			return true;
+		}
+		return lookup.hits() >= this.minHits
+				&& lookup.lifetimeUsed() >= this.refreshAhead;
+	}
+
+	/**
+	 * Decides if a cached response can be returned.
+	 */
+	boolean isUsable(DsResponseCache.Lookup lookup) {
+		return !lookup.isExpired() || lookup.ageMillis()
+				- lookup.ttlMillis() < this.staleWhileRevalidateMillis;
+	}
+
+	public static final class Builder {
+		private double refreshAhead = 0.8;
+
+		private int minHits = 3;
+
+		private Duration staleWhileRevalidate = Duration.ofMinutes(1);
+
+		Builder() {
+		}
+
+		/**
+		 * The part of the time to live (between 0 and 1) after which a frequently
+		 * requested response is refreshed.
+		 * <p>
+		 * Default: 0.8
+		 */
+		public Builder refreshAhead(double ratio) {
+			if (ratio <= 0 || ratio > 1) {
+				throw new IllegalArgumentException("ratio must be in (0, 1]");
+			}
+			this.refreshAhead = ratio;
+			return this;
+		}
+
+		/**
+		 * Number of requests for a cached response before it is refreshed ahead of its
+		 * expiration.
+		 * <p>
+		 * Default: 3
+		 */
+		public Builder minHits(int hits) {
+			this.minHits = hits;
+			return this;
+		}
+
+		/**
+		 * How long an expired response is returned while it is fetched in the
+		 * background. {@link Duration#ZERO} disables stale-while-revalidate.
+		 * <p>
+		 * Default: 1 minute
+		 */
+		public Builder staleWhileRevalidate(Duration duration) {
+			this.staleWhileRevalidate = duration;
+			return this;
+		}
+
+		public DsRefreshPolicy build() {
+			return new DsRefreshPolicy(this);
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries failed HTTP calls with exponential backoff and full jitter: the delay before
+ * retry n is a random value between 0 and
+ * <code>min(maxBackoff, initialBackoff * 2^(n-1))</code>.
+ * <p>
+ * I/O errors, server errors (5xx) and 429 Too Many Requests are retried. Client errors,
+ * {@link DsQuotaExceededException} and {@link DsCircuitOpenException} are not. All API
+ * calls are GET requests and safe to repeat.
+ */
+public class DsRetryPolicy {
+
+	private final int maxAttempts;
+
+	private final long initialBackoffMillis;
+
+	private final long maxBackoffMillis;
+
+	private DsRetryPolicy(Builder builder) {
+		this.maxAttempts = builder.maxAttempts;
+		this.initialBackoffMillis = builder.initialBackoff.toMillis();
+		this.maxBackoffMillis = builder.maxBackoff.toMillis();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * The maximum number of calls for one request, including the first call.
+	 */
+	public int maxAttempts() {
+		return this.maxAttempts;
+	}
+
+	/**
+	 * True if the failure is transient and the call may be repeated.
+	 */
+	public boolean isRetryable(Throwable failure) {
+		if (failure instanceof DsQuotaExceededException
+				|| failure instanceof DsCircuitOpenException) {
+			return false;
+		}
+		if (failure instanceof DsHttpException) {
+			return ((DsHttpException) failure).isTransient();
+		}
+		return failure instanceof IOException;
+	}
+
+	/**
+	 * The delay in milliseconds before the next call.
+	 *
+	 * @param attempt the number of calls sent so far, starting with 1
+	 */
+	long backoffMillis(int attempt) {
+		long backoff = this.initialBackoffMillis;
+		for (int i = 1; i < attempt && backoff < this.maxBackoffMillis; i++) {
+			backoff *= 2;
+		}
+		backoff = Math.min(backoff, this.maxBackoffMillis);
+		return ThreadLocalRandom.current().nextLong(backoff + 1);
+	}
+
+	public static final class Builder {
+		private int maxAttempts = 3;
+
+		private Duration initialBackoff = Duration.ofMillis(100);
+
+		private Duration maxBackoff = Duration.ofSeconds(2);
+
+		Builder() {
+		}
+
+		/**
+		 * The maximum number of calls for one request, including the first call.
+		 * <p>
+		 * Default: 3
+		 */
+		public Builder maxAttempts(int attempts) {
+			if (attempts < 1) {
+				throw new IllegalArgumentException("maxAttempts must be at least 1");
+			}
+			this.maxAttempts = attempts;
+			return this;
+		}
+
+		/**
+		 * Upper bound of the delay before the first retry.
+		 * <p>
+		 * Default: 100 milliseconds
+		 */
+		public Builder initialBackoff(Duration backoff) {
+			this.initialBackoff = backoff;
+			return this;
+		}
+
+		/**
+		 * Upper bound of the delay between two calls.
+		 * <p>
+		 * Default: 2 seconds
+		 */
+		public Builder maxBackoff(Duration backoff) {
+			this.maxBackoff = backoff;
+			return this;
+		}
+
+		public DsRetryPolicy build() {
+			return new DsRetryPolicy(this);
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs an asynchronous task and starts a second attempt if the first one did not
+ * complete within a delay. The first successful attempt completes the result, the other
+ * attempt is cancelled. The result fails only if every started attempt failed.
+ * Cancelling the result cancels the running attempts and the pending second attempt.
+ */
+final class HedgedExecution<T> {
+
+	private final Supplier<CompletableFuture<T>> task;
+
+	private final CompletableFuture<T> result = new CompletableFuture<>();
+
+	private CompletableFuture<T> primary;
+
+	private CompletableFuture<T> hedge;
+
+	private int running;
+
+	private Throwable failure;
+
+	/**
+	 * Set when the result is determined, guarded by this
+	 */
+	private boolean decided;
+
+	private HedgedExecution(Supplier<CompletableFuture<T>> task) {
+		this.task = task;
+	}
+
+	/**
+	 * @param task starts one attempt. Cancelling the returned future must abort the
+	 * attempt.
+	 * @param delayMillis time to wait for the first attempt before starting the second
+	 * @param tryHedge asked before the second attempt is started, false skips it
+	 * @param onHedgeWin called when the second attempt completes the result
+	 */
+	static <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> task,
+			long delayMillis, ScheduledExecutorService scheduler,
+			BooleanSupplier tryHedge, Runnable onHedgeWin) {
+		HedgedExecution<T> execution = new HedgedExecution<>(task);
+		CompletableFuture<T> primary = execution.start(false, onHedgeWin);
+
+		ScheduledFuture<?> timer = scheduler.schedule(() -> {
+			synchronized (execution) {
+				if (!execution.decided && tryHedge.getAsBoolean()) {
+					execution.start(true, onHedgeWin);
+				}
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+
+		primary.whenComplete((r, e) -> timer.cancel(false));
+		execution.result.whenComplete((r, e) -> {
+			if (execution.result.isCancelled()) {
+				timer.cancel(false);
+				execution.cancelAll();
+			}
+		});
+		return execution.result;
+	}
+
+	private CompletableFuture<T> start(boolean isHedge, Runnable onHedgeWin) {
+		CompletableFuture<T> attempt;
+		synchronized (this) {
+			this.running++;
+			try {
+				attempt = this.task.get();
+			}
+			catch (Throwable e) {
+				attempt = new CompletableFuture<>();
+				attempt.completeExceptionally(e);
+			}
+			if (isHedge) {
+				this.hedge = attempt;
+			}
+			else {
+				this.primary = attempt;
+			}
+		}
+
+		attempt.whenComplete((r, e) -> {
+			if (e == null) {
+				boolean won;
+				synchronized (this) {
+					won = !this.decided;
+					this.decided = true;
+				}
+				if (won) {
+					if (isHedge) {
+						onHedgeWin.run();
+					}
+					cancelOther(isHedge);
+					this.result.complete(r);
+				}
+				return;
+			}
+
+			boolean allFailed;
+			synchronized (this) {
+				if (this.failure == null) {
+					this.failure = e instanceof CompletionException
+							&& e.getCause() != null ? e.getCause() : e;
+				}
+				allFailed = --this.running == 0 && !this.decided;
+				this.decided |= allFailed;
+			}
+			if (allFailed) {
+				this.result.completeExceptionally(this.failure);
+			}
+		});
+		return attempt;
+	}
+
+	private void cancelAll() {
+		CompletableFuture<T> primaryAttempt;
+		CompletableFuture<T> hedgeAttempt;
+		synchronized (this) {
+			this.decided = true;
+			primaryAttempt = this.primary;
+			hedgeAttempt = this.hedge;
+		}
+		if (primaryAttempt != null) {
+			primaryAttempt.cancel(false);
+		}
+		if (hedgeAttempt != null) {
+			hedgeAttempt.cancel(false);
+		}
+	}
+
+	private void cancelOther(boolean isHedge) {
+		CompletableFuture<T> other;
+		synchronized (this) {
+			other = isHedge ? this.primary : this.hedge;
+		}
+		if (other != null) {
+			other.cancel(false);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.model.DsBlock;
+import ch.rasc.darksky.model.DsPriority;
+import okhttp3.HttpUrl;
+
+/**
+ * A forecast or time machine request translated into the request URL.
+ */
+final class ResolvedRequest {
+
+	private final HttpUrl url;
+
+	private final String key;
+
+	private final String location;
+
+	private final String variant;
+
+	private final Set<DsBlock> blocks;
+
+	private final boolean historical;
+
+	private final DsPriority priority;
+
+	ResolvedRequest(HttpUrl url, Set<DsBlock> blocks, boolean historical,
+			@Nullable DsPriority priority) {
+		this.url = url;
+		this.blocks = blocks;
+		this.historical = historical;
+		this.priority = priority != null ? priority : DsPriority.NORMAL;
+
+		// base url, location segment and query, without the api key
+		String location = url.pathSegments().get(url.pathSize() - 1);
+		String base = url.newBuilder().removePathSegment(url.pathSize() - 1)
+				.removePathSegment(url.pathSize() - 2).query(null).build().toString();
+		String query = url.encodedQuery();
+		this.key = base + (query != null ? location + "?" + query : location);
+
+		// latitude,longitude[,time]
+		int time = location.indexOf(',', location.indexOf(',') + 1);
+		this.location = time != -1 ? location.substring(0, time) : location;
+		String parameters = time != -1 ? location.substring(time + 1) : "";
+		this.variant = base + (query != null ? parameters + "?" + query : parameters);
+	}
+
+	HttpUrl url() {
+		return this.url;
+	}
+
+	/**
+	 * Identifies requests that return the same response: the normalized base URL, the
+	 * location and the query. Does not contain the api key. Clients with different base
+	 * URLs do not share entries of a cache.
+	 */
+	String key() {
+		return this.key;
+	}
+
+	/**
+	 * The request key without the coordinates. Requests with the same variant differ
+	 * only in the location.
+	 */
+	String variant() {
+		return this.variant;
+	}
+
+	/**
+	 * The requested latitude, NaN if it is not a number.
+	 */
+	double latitude() {
+		return parse(this.location.substring(0, this.location.indexOf(',')));
+	}
+
+	/**
+	 * The requested longitude, NaN if it is not a number.
+	 */
+	double longitude() {
+		return parse(this.location.substring(this.location.indexOf(',') + 1));
+	}
+
+	private static double parse(String degrees) {
+		try {
+			return Double.parseDouble(degrees);
+		}
+		catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * The blocks the request asks for.
+	 */
+	Set<DsBlock> blocks() {
+		return this.blocks;
+	}
+
+	/**
+	 * True for Time Machine requests of a past day. The response of such a request does
+	 * not change anymore and can be cached forever.
+	 */
+	boolean historical() {
+		return this.historical;
+	}
+
+	DsPriority priority() {
+		return this.priority;
+	}
+
+	ResolvedRequest withPriority(DsPriority newPriority) {
+		return new ResolvedRequest(this.url, this.blocks, this.historical, newPriority);
+	}
+
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.archive;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.model.DsBlock;
+import ch.rasc.darksky.model.DsColumnarDataBlock;
+import ch.rasc.darksky.model.DsDataBlock;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * File based archive for the hourly and daily blocks of Time Machine responses.
+ * <p>
+ * Responses for past days do not change, the archive stores one file per location and
+ * day in a compact columnar binary format and reads them back as
+ * {@link DsColumnarDataBlock} without going through JSON. The layout is
+ * <code>directory/latitude_longitude/yyyy-MM-dd.dsa</code>, the day is the local date
+ * of the location.
+ * <p>
+ * Decimal values are stored with 4 decimal places, the precision of the Dark Sky API.
+ * <p>
+ * Instances are thread safe. Files are replaced atomically.
+ */
+public class DsArchive {
+
+	private static final String EXTENSION = ".dsa";
+
+	private static final DsDataPointField[] FIELDS = DsDataPointField.values();
+
+	private final Path directory;
+
+	public DsArchive(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Stores the hourly and daily block of a Time Machine response. Replaces an already
+	 * stored response for the same location and day.
+	 *
+	 * @return the local date of the stored day
+	 * @throws IllegalArgumentException if the response contains neither a hourly nor a
+	 * daily block
+	 */
+	public LocalDate store(DsResponse response) throws IOException {
+		LocalDate date = date(response);
+		store(response.latitude().toPlainString(), response.longitude().toPlainString(),
+				date, response);
+		return date;
+	}
+
+	/**
+	 * Stores the hourly and daily block of a Time Machine response under the given
+	 * location and day instead of the location and day of the response. Used when the
+	 * response coordinates differ from the requested ones, for example when the client
+	 * quantizes coordinates, or when the requested day is not the local date of the
+	 * first data point.
+	 *
+	 * @see #contains(String, String, LocalDate)
+	 */
+	public void store(String latitude, String longitude, LocalDate date,
+			DsResponse response) throws IOException {
+		Path file = file(latitude, longitude, date);
+		Files.createDirectories(file.getParent());
+
+		// a unique temporary file per call, concurrent stores of the same day must not
+		// write to or move the same file
+		Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(),
+				".tmp");
+		try {
+			Files.write(tmp, DsArchiveFormat.encode(response));
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * True if the archive contains the day for the location.
+	 */
+	public boolean contains(String latitude, String longitude, LocalDate date) {
+		return Files.exists(file(latitude, longitude, date));
+	}
+
+	/**
+	 * Reads the hourly block of a day.
+	 *
+	 * @return the block or null if the day is not archived or the response did not
+	 * contain a hourly block
+	 */
+	@Nullable
+	public DsColumnarDataBlock hourly(String latitude, String longitude, LocalDate date)
+			throws IOException {
+		return read(latitude, longitude, date, DsBlock.HOURLY);
+	}
+
+	/**
+	 * Reads the hourly blocks of the days from <code>from</code> to <code>to</code>
+	 * (inclusive) and concatenates them. Days that are not archived are skipped.
+	 */
+	public DsColumnarDataBlock hourly(String latitude, String longitude, LocalDate from,
+			LocalDate to) throws IOException {
+		return read(latitude, longitude, from, to, DsBlock.HOURLY);
+	}
+
+	/**
+	 * Reads the daily block of a day. The block contains one data point.
+	 *
+	 * @return the block or null if the day is not archived or the response did not
+	 * contain a daily block
+	 */
+	@Nullable
+	public DsColumnarDataBlock daily(String latitude, String longitude, LocalDate date)
+			throws IOException {
+		return read(latitude, longitude, date, DsBlock.DAILY);
+	}
+
+	/**
+	 * Reads the daily data points of the days from <code>from</code> to
+	 * <code>to</code> (inclusive). Days that are not archived are skipped.
+	 */
+	public DsColumnarDataBlock daily(String latitude, String longitude, LocalDate from,
+			LocalDate to) throws IOException {
+		return read(latitude, longitude, from, to, DsBlock.DAILY);
+	}
+
+	@Nullable
+	private DsColumnarDataBlock read(String latitude, String longitude, LocalDate date,
+			DsBlock block) throws IOException {
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(file(latitude, longitude, date));
+		}
+		catch (NoSuchFileException e) {
+			return null;
+		}
+		return DsArchiveFormat.decode(ByteBuffer.wrap(bytes), block);
+	}
+
+	private DsColumnarDataBlock read(String latitude, String longitude, LocalDate from,
+			LocalDate to, DsBlock block) throws IOException {
+		List<DsColumnarDataBlock> days = new ArrayList<>();
+		for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+			DsColumnarDataBlock day = read(latitude, longitude, date, block);
+			if (day != null) {
+				days.add(day);
+			}
+		}
+		if (days.size() == 1) {
+			return days.get(0);
+		}
+		return concat(days);
+	}
+
+	/**
+	 * Concatenates the data points of multiple blocks. The result has no block summary
+	 * and icon.
+	 */
+	private static DsColumnarDataBlock concat(List<DsColumnarDataBlock> blocks) {
+		int size = 0;
+		for (DsColumnarDataBlock block : blocks) {
+			size += block.size();
+		}
+
+		DsColumnarDataBlock.Builder builder = DsColumnarDataBlock.builder(size);
+		int offset = 0;
+		for (DsColumnarDataBlock block : blocks) {
+			for (int i = 0; i < block.size(); i++) {
+				builder.time(offset + i, block.time(i));
+				builder.icon(offset + i, block.icon(i));
+				builder.precipType(offset + i, block.precipType(i));
+				builder.summary(offset + i, block.summary(i));
+			}
+			for (DsDataPointField field : FIELDS) {
+				if (!field.isNumeric() || field == DsDataPointField.TIME) {
+					continue;
+				}
+				double[] column = block.column(field);
+				for (int i = 0; i < column.length; i++) {
+					builder.value(field, offset + i, column[i]);
+				}
+			}
+			offset += block.size();
+		}
+		return builder.build();
+	}
+
+	private Path file(String latitude, String longitude, LocalDate date) {
+		return this.directory.resolve(location(latitude, longitude))
+				.resolve(date + EXTENSION);
+	}
+
+	private static String location(String latitude, String longitude) {
+		return normalize(latitude) + "_" + normalize(longitude);
+	}
+
+	/**
+	 * "47.30", "47.3" and the 47.3 of a response map to the same location.
+	 */
+	private static String normalize(String coordinate) {
+		BigDecimal value = new BigDecimal(coordinate).stripTrailingZeros();
+		return value.signum() == 0 ? "0" : value.toPlainString();
+	}
+
+	/**
+	 * The local date of the first daily or hourly data point.
+	 */
+	private static LocalDate date(DsResponse response) {
+		DsDataBlock block = response.daily();
+		if (block == null || block.data().isEmpty()) {
+			block = response.hourly();
+		}
+		if (block == null || block.data().isEmpty()) {
+			throw new IllegalArgumentException(
+					"The response contains neither a hourly nor a daily block");
+		}
+		return Instant.ofEpochSecond(block.data().get(0).time())
+				.atZone(ZoneId.of(response.timezone())).toLocalDate();
+	}
+
+}
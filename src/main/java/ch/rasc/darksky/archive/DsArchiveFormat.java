@@ -0,0 +1,317 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.binary.BinaryReader;
+import ch.rasc.darksky.binary.BinaryWriter;
+import ch.rasc.darksky.model.DsBlock;
+import ch.rasc.darksky.model.DsColumnarDataBlock;
+import ch.rasc.darksky.model.DsDataBlock;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsIcon;
+import ch.rasc.darksky.model.DsPrecipType;
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * Binary layout of an archive file.
+ *
+ * <pre>
+ * file:    magic (int) version (byte) timezone (string) hourly (section) daily (section)
+ * section: length (varint, 0 if the block is missing) block
+ * block:   summary (string) icon (enum) size (varint)
+ *          time (zigzag delta to the previous time, the first to 0)
+ *          icon, precipType: present (byte) enum per data point
+ *          dictionary: count (varint) strings
+ *          summary: present (byte) dictionary index + 1 per data point
+ *          numeric columns: count (varint), per column: field ordinal (varint)
+ *            presence bitmap ((size + 7) / 8 bytes)
+ *            present values quantized, zigzag delta to the previous value
+ * enum:    ordinal + 1 (varint), 0 for null
+ * </pre>
+ *
+ * Decimal values are quantized to 4 decimal places, integer and time values are stored
+ * exactly. The enum ordinals are part of the format, the version changes when
+ * constants are added or reordered.
+ */
+final class DsArchiveFormat {
+
+	private static final int MAGIC = 0x44534131; // DSA1
+
+	private static final int VERSION = 2;
+
+	private static final DsDataPointField[] FIELDS = DsDataPointField.values();
+
+	private static final DsIcon[] ICONS = DsIcon.values();
+
+	private static final DsPrecipType[] PRECIP_TYPES = DsPrecipType.values();
+
+	private static final double DECIMAL_SCALE = 10_000;
+
+	private DsArchiveFormat() {
+		// utility class
+	}
+
+	static byte[] encode(DsResponse response) {
+		BinaryWriter out = new BinaryWriter(4096);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeString(response.timezone());
+
+		BinaryWriter section = new BinaryWriter(2048);
+		writeSection(out, section, response.hourly());
+		writeSection(out, section, response.daily());
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes one block of an archive file. The other block is skipped.
+	 *
+	 * @return the block or null if the file does not contain the block
+	 */
+	@Nullable
+	static DsColumnarDataBlock decode(ByteBuffer file, DsBlock block)
+			throws IOException {
+		if (block != DsBlock.HOURLY && block != DsBlock.DAILY) {
+			throw new IllegalArgumentException(
+					"The archive only stores the hourly and daily blocks");
+		}
+
+		BinaryReader in = new BinaryReader(file);
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not an archive file");
+			}
+			int version = in.readByte();
+			if (version != VERSION) {
+				throw new IOException("Unsupported archive version " + version);
+			}
+			in.readString();
+
+			int length = in.readVarInt();
+			if (block == DsBlock.DAILY) {
+				in.skip(length);
+				length = in.readVarInt();
+			}
+			return length > 0 ? readBlock(new BinaryReader(in.slice(length))) : null;
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Corrupt archive file", e);
+		}
+	}
+
+	private static void writeSection(BinaryWriter out, BinaryWriter section,
+			@Nullable DsDataBlock block) {
+		if (block == null) {
+			out.writeVarInt(0);
+			return;
+		}
+		section.reset();
+		writeBlock(section, DsColumnarDataBlock.of(block));
+		out.writeVarInt(section.size());
+		out.writeBytes(section.toByteArray());
+	}
+
+	private static void writeBlock(BinaryWriter out, DsColumnarDataBlock block) {
+		int size = block.size();
+		out.writeString(block.summary());
+		out.writeVarInt(ordinal(block.icon()));
+		out.writeVarInt(size);
+
+		long previousTime = 0;
+		for (int i = 0; i < size; i++) {
+			out.writeZigZag(block.time(i) - previousTime);
+			previousTime = block.time(i);
+		}
+
+		int[] icons = new int[size];
+		int[] precipTypes = new int[size];
+		for (int i = 0; i < size; i++) {
+			icons[i] = ordinal(block.icon(i));
+			precipTypes[i] = ordinal(block.precipType(i));
+		}
+		writeIndexColumn(out, icons);
+		writeIndexColumn(out, precipTypes);
+
+		List<String> dictionary = new ArrayList<>();
+		Map<String, Integer> dictionaryIndex = new HashMap<>();
+		int[] summaries = new int[size];
+		for (int i = 0; i < size; i++) {
+			summaries[i] = lookup(block.summary(i), dictionary, dictionaryIndex);
+		}
+		out.writeVarInt(dictionary.size());
+		for (String value : dictionary) {
+			out.writeString(value);
+		}
+		writeIndexColumn(out, summaries);
+
+		int columns = 0;
+		for (DsDataPointField field : FIELDS) {
+			if (isNumericColumn(field) && block.count(field) > 0) {
+				columns++;
+			}
+		}
+		out.writeVarInt(columns);
+
+		byte[] bitmap = new byte[size + 7 >>> 3];
+		for (DsDataPointField field : FIELDS) {
+			if (!isNumericColumn(field) || block.count(field) == 0) {
+				continue;
+			}
+			out.writeVarInt(field.ordinal());
+
+			double[] column = block.column(field);
+			Arrays.fill(bitmap, (byte) 0);
+			for (int i = 0; i < size; i++) {
+				if (!Double.isNaN(column[i])) {
+					bitmap[i >>> 3] |= 1 << (i & 7);
+				}
+			}
+			out.writeBytes(bitmap);
+
+			double scale = scale(field);
+			long previous = 0;
+			for (int i = 0; i < size; i++) {
+				if (!Double.isNaN(column[i])) {
+					long quantized = Math.round(column[i] * scale);
+					out.writeZigZag(quantized - previous);
+					previous = quantized;
+				}
+			}
+		}
+	}
+
+	private static DsColumnarDataBlock readBlock(BinaryReader in) {
+		String summary = in.readString();
+		DsIcon icon = constant(ICONS, in.readVarInt());
+		int size = in.readVarInt();
+
+		DsColumnarDataBlock.Builder builder = DsColumnarDataBlock.builder(size)
+				.summary(summary).icon(icon);
+
+		long time = 0;
+		for (int i = 0; i < size; i++) {
+			time += in.readZigZag();
+			builder.time(i, time);
+		}
+
+		if (in.readByte() != 0) {
+			for (int i = 0; i < size; i++) {
+				builder.icon(i, constant(ICONS, in.readVarInt()));
+			}
+		}
+		if (in.readByte() != 0) {
+			for (int i = 0; i < size; i++) {
+				builder.precipType(i, constant(PRECIP_TYPES, in.readVarInt()));
+			}
+		}
+
+		String[] dictionary = new String[in.readVarInt()];
+		for (int i = 0; i < dictionary.length; i++) {
+			dictionary[i] = in.readString();
+		}
+		if (in.readByte() != 0) {
+			for (int i = 0; i < size; i++) {
+				builder.summary(i, entry(dictionary, in.readVarInt()));
+			}
+		}
+
+		int columns = in.readVarInt();
+		byte[] bitmap = new byte[size + 7 >>> 3];
+		for (int c = 0; c < columns; c++) {
+			DsDataPointField field = FIELDS[in.readVarInt()];
+			if (!isNumericColumn(field)) {
+				throw new IllegalStateException(field + " is not a numeric column");
+			}
+			for (int i = 0; i < bitmap.length; i++) {
+				bitmap[i] = (byte) in.readByte();
+			}
+
+			double scale = scale(field);
+			long value = 0;
+			for (int i = 0; i < size; i++) {
+				if ((bitmap[i >>> 3] & 1 << (i & 7)) != 0) {
+					value += in.readZigZag();
+					builder.value(field, i, value / scale);
+				}
+			}
+		}
+
+		return builder.build();
+	}
+
+	private static int lookup(@Nullable String value, List<String> dictionary,
+			Map<String, Integer> dictionaryIndex) {
+		if (value == null) {
+			return 0;
+		}
+		Integer index = dictionaryIndex.get(value);
+		if (index == null) {
+			index = dictionary.size();
+			dictionary.add(value);
+			dictionaryIndex.put(value, index);
+		}
+		return index + 1;
+	}
+
+	@Nullable
+	private static String entry(String[] dictionary, int index) {
+		return index == 0 ? null : dictionary[index - 1];
+	}
+
+	private static int ordinal(@Nullable Enum<?> value) {
+		return value != null ? value.ordinal() + 1 : 0;
+	}
+
+	@Nullable
+	private static <E extends Enum<E>> E constant(E[] values, int ordinal) {
+		return ordinal == 0 ? null : values[ordinal - 1];
+	}
+
+	private static void writeIndexColumn(BinaryWriter out, int[] indexes) {
+		boolean present = false;
+		for (int index : indexes) {
+			if (index != 0) {
+				present = true;
+				break;
+			}
+		}
+		out.writeByte(present ? 1 : 0);
+		if (present) {
+			for (int index : indexes) {
+				out.writeVarInt(index);
+			}
+		}
+	}
+
+	private static boolean isNumericColumn(DsDataPointField field) {
+		return field.isNumeric() && field != DsDataPointField.TIME;
+	}
+
+	private static double scale(DsDataPointField field) {
+		return field.getType() == DsDataPointField.Type.DECIMAL ? DECIMAL_SCALE : 1;
+	}
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.backfill;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.binary.BinaryReader;
+import ch.rasc.darksky.binary.BinaryWriter;
+
+/**
+ * Progress of a backfill: the finished tasks and the requests sent on the current UTC
+ * day. Stored in a file that is replaced atomically.
+ */
+final class BackfillCheckpoint {
+
+	private static final int MAGIC = 0x44534246; // DSBF
+
+	@Nullable
+	private final Path file;
+
+	private final long fingerprint;
+
+	private final BitSet done;
+
+	private long quotaDay;
+
+	private int quotaUsed;
+
+	private BackfillCheckpoint(@Nullable Path file, long fingerprint, BitSet done,
+			long quotaDay, int quotaUsed) {
+		this.file = file;
+		this.fingerprint = fingerprint;
+		this.done = done;
+		this.quotaDay = quotaDay;
+		this.quotaUsed = quotaUsed;
+	}
+
+	/**
+	 * Loads the checkpoint. Starts with an empty checkpoint if the file does not exist or
+	 * belongs to a backfill with other locations or another date range.
+	 *
+	 * @param file null for a backfill without checkpoint file
+	 */
+	static BackfillCheckpoint load(@Nullable Path file, long fingerprint)
+			throws IOException {
+		if (file != null) {
+			try {
+				BinaryReader in = new BinaryReader(Files.readAllBytes(file));
+				if (in.readInt() == MAGIC && in.readVarLong() == fingerprint) {
+					long quotaDay = in.readVarLong();
+					int quotaUsed = in.readVarInt();
+					byte[] bits = new byte[in.readVarInt()];
+					for (int i = 0; i < bits.length; i++) {
+						bits[i] = (byte) in.readByte();
+					}
+					return new BackfillCheckpoint(file, fingerprint, BitSet.valueOf(bits),
+							quotaDay, quotaUsed);
+				}
+			}
+			catch (NoSuchFileException e) {
+				// first run
+			}
+			catch (RuntimeException e) {
+				throw new IOException("Corrupt checkpoint " + file, e);
+			}
+		}
+		return new BackfillCheckpoint(file, fingerprint, new BitSet(), 0, 0);
+	}
+
+	synchronized boolean isDone(int task) {
+		return this.done.get(task);
+	}
+
+	synchronized void markDone(int task) {
+		this.done.set(task);
+	}
+
+	synchronized int doneCount() {
+		return this.done.cardinality();
+	}
+
+	/**
+	 * The number of requests sent on the day
+	 */
+	synchronized int quotaUsed(long epochDay) {
+		return this.quotaDay == epochDay ? this.quotaUsed : 0;
+	}
+
+	synchronized void incrementQuotaUsed(long epochDay) {
+		if (this.quotaDay != epochDay) {
+			this.quotaDay = epochDay;
+			this.quotaUsed = 0;
+		}
+		this.quotaUsed++;
+	}
+
+	void save() throws IOException {
+		if (this.file == null) {
+			return;
+		}
+		BinaryWriter out = new BinaryWriter();
+		synchronized (this) {
+			byte[] bits = this.done.toByteArray();
+			out.writeInt(MAGIC).writeVarLong(this.fingerprint)
+					.writeVarLong(this.quotaDay).writeVarInt(this.quotaUsed)
+					.writeVarInt(bits.length).writeBytes(bits);
+		}
+		Path tmp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+		Files.write(tmp, out.toByteArray());
+		Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
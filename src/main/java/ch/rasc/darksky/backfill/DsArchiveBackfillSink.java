@@ -0,0 +1,50 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.backfill;
+
+import java.io.IOException;
+
+import ch.rasc.darksky.archive.DsArchive;
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * Stores the responses of a backfill in a {@link DsArchive}.
+ */
+public class DsArchiveBackfillSink implements DsBackfillSink {
+
+	private final DsArchive archive;
+
+	public DsArchiveBackfillSink(DsArchive archive) {
+		this.archive = archive;
+	}
+
+	@Override
+	public boolean contains(DsBackfillTask task) {
+		return this.archive.contains(task.location().latitude(),
+				task.location().longitude(), task.date());
+	}
+
+	/**
+	 * Stores the response under the location and date of the task, the same key
+	 * {@link #contains(DsBackfillTask)} checks.
+	 */
+	@Override
+	public void accept(DsBackfillTask task, DsResponse response) throws IOException {
+		this.archive.store(task.location().latitude(), task.location().longitude(),
+				task.date(), response);
+	}
+
+}
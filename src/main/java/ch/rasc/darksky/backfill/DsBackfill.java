@@ -0,0 +1,366 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.backfill;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.DsClient;
+import ch.rasc.darksky.model.DsTimeMachineRequest;
+
+/**
+ * Loads the Time Machine responses for a set of locations and a date range into a
+ * {@link DsBackfillSink}.
+ * <p>
+ * A run sends at most <code>maxInFlight</code> requests at the same time and stops when
+ * the daily quota is used up. Progress is saved in a checkpoint file, the next run
+ * continues with the unfinished tasks. Days the sink already contains are skipped
+ * without a request, so even without a checkpoint file a repeated run only requests
+ * the missing days.
+ *
+ * <pre>
+ * DsBackfill backfill = DsBackfill.builder(client)
+ *         .locations(locations)
+ *         .dates(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31))
+ *         .sink(new DsArchiveBackfillSink(archive))
+ *         .checkpoint(Paths.get("backfill.checkpoint"))
+ *         .dailyQuota(1000)
+ *         .build();
+ * DsBackfillResult result = backfill.run();
+ * </pre>
+ */
+public class DsBackfill {
+
+	private final DsClient client;
+
+	private final List<DsBackfillLocation> locations;
+
+	private final LocalDate from;
+
+	private final int days;
+
+	private final DsBackfillSink sink;
+
+	@Nullable
+	private final Path checkpoint;
+
+	private final int dailyQuota;
+
+	private final int maxInFlight;
+
+	private final int checkpointInterval;
+
+	@Nullable
+	private final Consumer<DsTimeMachineRequest.Builder> requestCustomizer;
+
+	private DsBackfill(Builder builder) {
+		this.client = builder.client;
+		this.locations = new ArrayList<>(
+				Objects.requireNonNull(builder.locations, "locations"));
+		this.from = Objects.requireNonNull(builder.from, "from");
+		LocalDate to = Objects.requireNonNull(builder.to, "to");
+		if (to.isBefore(this.from)) {
+			throw new IllegalArgumentException("from must not be after to");
+		}
+		long days = ChronoUnit.DAYS.between(this.from, to) + 1;
+		if (days * this.locations.size() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many tasks");
+		}
+		this.days = (int) days;
+		this.sink = Objects.requireNonNull(builder.sink, "sink");
+		this.checkpoint = builder.checkpoint;
+		this.dailyQuota = builder.dailyQuota;
+		this.maxInFlight = builder.maxInFlight;
+		this.checkpointInterval = builder.checkpointInterval;
+		this.requestCustomizer = builder.requestCustomizer;
+	}
+
+	public static Builder builder(DsClient client) {
+		return new Builder(client);
+	}
+
+	/**
+	 * The number of tasks (locations * days)
+	 */
+	public int size() {
+		return this.locations.size() * this.days;
+	}
+
+	/**
+	 * Sends the requests of the unfinished tasks until all tasks are finished or the
+	 * daily quota is used up. Failed requests are counted and retried in the next run.
+	 *
+	 * @throws IOException if the sink or the checkpoint file fails. The progress up to
+	 * the failure is saved.
+	 * @throws InterruptedException if the thread is interrupted while waiting for a
+	 * request. The progress up to the interruption is saved.
+	 */
+	public DsBackfillResult run() throws IOException, InterruptedException {
+		BackfillCheckpoint progress = BackfillCheckpoint.load(this.checkpoint,
+				fingerprint());
+
+		Semaphore permits = new Semaphore(this.maxInFlight);
+		AtomicInteger stored = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		AtomicReference<IOException> sinkFailure = new AtomicReference<>();
+		int skipped = 0;
+		boolean quotaExhausted = false;
+		int unsaved = 0;
+
+		try {
+			for (int i = 0; i < size() && sinkFailure.get() == null; i++) {
+				if (progress.isDone(i)) {
+					continue;
+				}
+
+				DsBackfillTask task = task(i);
+				if (this.sink.contains(task)) {
+					progress.markDone(i);
+					skipped++;
+					continue;
+				}
+
+				long today = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+				if (quotaUsed(progress, today) >= this.dailyQuota) {
+					quotaExhausted = true;
+					break;
+				}
+
+				permits.acquire();
+				progress.incrementQuotaUsed(today);
+				int taskIndex = i;
+				this.client.sendTimeMachineRequestAsync(request(task, task.time()))
+						.thenCompose(response -> {
+							if (response == null || task.matches(response)) {
+								return CompletableFuture.completedFuture(response);
+							}
+							// noon solar time is on another day in the time zone of
+							// the location, request noon of the time zone
+							progress.incrementQuotaUsed(today);
+							return this.client.sendTimeMachineRequestAsync(request(task,
+									task.time(DsBackfillTask.zone(response))));
+						}).whenComplete((response, e) -> {
+							try {
+								if (e != null
+										|| response != null && !task.matches(response)) {
+									failed.incrementAndGet();
+									return;
+								}
+								if (response != null) {
+									synchronized (this.sink) {
+										this.sink.accept(task, response);
+									}
+									stored.incrementAndGet();
+								}
+								progress.markDone(taskIndex);
+							}
+							catch (IOException | RuntimeException ex) {
+								failed.incrementAndGet();
+								sinkFailure.compareAndSet(null, ex instanceof IOException
+										? (IOException) ex
+										: new IOException(ex));
+							}
+							finally {
+								permits.release();
+							}
+						});
+
+				if (++unsaved >= this.checkpointInterval) {
+					progress.save();
+					unsaved = 0;
+				}
+			}
+
+			// wait for the running requests
+			permits.acquire(this.maxInFlight);
+			permits.release(this.maxInFlight);
+		}
+		finally {
+			progress.save();
+		}
+
+		IOException failure = sinkFailure.get();
+		if (failure != null) {
+			throw failure;
+		}
+		return new DsBackfillResult(stored.get(), skipped, failed.get(),
+				size() - progress.doneCount(), quotaExhausted);
+	}
+
+	/**
+	 * Requests sent today. The X-Forecast-API-Calls header also counts the requests
+	 * other applications sent with the same API key.
+	 */
+	private int quotaUsed(BackfillCheckpoint progress, long today) {
+		int used = progress.quotaUsed(today);
+		Integer apiCalls = this.client.apiCalls();
+		if (apiCalls != null) {
+			used = Math.max(used, apiCalls.intValue());
+		}
+		return used;
+	}
+
+	private DsBackfillTask task(int index) {
+		return new DsBackfillTask(this.locations.get(index / this.days),
+				this.from.plusDays(index % this.days));
+	}
+
+	private DsTimeMachineRequest request(DsBackfillTask task, long time) {
+		DsTimeMachineRequest.Builder builder = DsTimeMachineRequest.builder();
+		if (this.requestCustomizer != null) {
+			this.requestCustomizer.accept(builder);
+		}
+		builder.latitude(task.location().latitude())
+				.longitude(task.location().longitude()).time(time);
+		return builder.build();
+	}
+
+	/**
+	 * Identifies the task list. A checkpoint of another task list is ignored.
+	 */
+	private long fingerprint() {
+		long hash = 0xcbf29ce484222325L;
+		StringBuilder sb = new StringBuilder();
+		sb.append(this.from).append('/').append(this.days);
+		for (DsBackfillLocation location : this.locations) {
+			sb.append(';').append(location);
+		}
+		for (byte b : sb.toString().getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	public static final class Builder {
+		private final DsClient client;
+
+		private Collection<DsBackfillLocation> locations;
+
+		private LocalDate from;
+
+		private LocalDate to;
+
+		private DsBackfillSink sink;
+
+		private Path checkpoint;
+
+		private int dailyQuota = Integer.MAX_VALUE;
+
+		private int maxInFlight = 5;
+
+		private int checkpointInterval = 100;
+
+		private Consumer<DsTimeMachineRequest.Builder> requestCustomizer;
+
+		Builder(DsClient client) {
+			this.client = Objects.requireNonNull(client, "client");
+		}
+
+		public Builder locations(Collection<DsBackfillLocation> backfillLocations) {
+			this.locations = backfillLocations;
+			return this;
+		}
+
+		/**
+		 * The local dates of the locations, both inclusive
+		 */
+		public Builder dates(LocalDate fromDate, LocalDate toDate) {
+			this.from = fromDate;
+			this.to = toDate;
+			return this;
+		}
+
+		public Builder sink(DsBackfillSink backfillSink) {
+			this.sink = backfillSink;
+			return this;
+		}
+
+		/**
+		 * File that stores the progress.
+		 * <p>
+		 * Default: no checkpoint file. A run starts with the first task and relies on
+		 * {@link DsBackfillSink#contains(DsBackfillTask)} to skip finished tasks.
+		 */
+		public Builder checkpoint(Path file) {
+			this.checkpoint = file;
+			return this;
+		}
+
+		/**
+		 * Maximum number of requests per UTC day.
+		 * <p>
+		 * Default: unlimited
+		 */
+		public Builder dailyQuota(int quota) {
+			this.dailyQuota = quota;
+			return this;
+		}
+
+		/**
+		 * Maximum number of concurrently running requests. The
+		 * {@link okhttp3.Dispatcher} of the client limits the concurrency as well.
+		 * <p>
+		 * Default: 5
+		 */
+		public Builder maxInFlight(int max) {
+			if (max < 1) {
+				throw new IllegalArgumentException("maxInFlight must be at least 1");
+			}
+			this.maxInFlight = max;
+			return this;
+		}
+
+		/**
+		 * Number of requests between two checkpoint saves.
+		 * <p>
+		 * Default: 100
+		 */
+		public Builder checkpointInterval(int interval) {
+			this.checkpointInterval = interval;
+			return this;
+		}
+
+		/**
+		 * Sets request options like units, language and excluded blocks. Latitude,
+		 * longitude and time are set by the backfill.
+		 */
+		public Builder request(Consumer<DsTimeMachineRequest.Builder> customizer) {
+			this.requestCustomizer = customizer;
+			return this;
+		}
+
+		public DsBackfill build() {
+			return new DsBackfill(this);
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.backfill;
+
+/**
+ * The outcome of a {@link DsBackfill#run()}.
+ */
+public final class DsBackfillResult {
+
+	private final int stored;
+
+	private final int skipped;
+
+	private final int failed;
+
+	private final int remaining;
+
+	private final boolean quotaExhausted;
+
+	DsBackfillResult(int stored, int skipped, int failed, int remaining,
+			boolean quotaExhausted) {
+		this.stored = stored;
+		this.skipped = skipped;
+		this.failed = failed;
+		this.remaining = remaining;
+		this.quotaExhausted = quotaExhausted;
+	}
+
+	/**
+	 * The number of responses this run passed to the sink
+	 */
+	public int stored() {
+		return this.stored;
+	}
+
+	/**
+	 * The number of tasks this run skipped because the sink already contained them
+	 */
+	public int skipped() {
+		return this.skipped;
+	}
+
+	/**
+	 * The number of failed requests. They are sent again in the next run.
+	 */
+	public int failed() {
+		return this.failed;
+	}
+
+	/**
+	 * The number of tasks that are not finished yet
+	 */
+	public int remaining() {
+		return this.remaining;
+	}
+
+	/**
+	 * True if the run stopped because the daily quota is used up
+	 */
+	public boolean quotaExhausted() {
+		return this.quotaExhausted;
+	}
+
+	public boolean isComplete() {
+		return this.remaining == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "DsBackfillResult{stored=" + this.stored + ", skipped=" + this.skipped
+				+ ", failed=" + this.failed + ", remaining=" + this.remaining
+				+ ", quotaExhausted=" + this.quotaExhausted + "}";
+	}
+
+}
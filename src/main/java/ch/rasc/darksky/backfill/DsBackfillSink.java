@@ -0,0 +1,42 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.backfill;
+
+import java.io.IOException;
+
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * Receives the responses of a backfill.
+ * <p>
+ * {@link DsBackfill} calls {@link #contains(DsBackfillTask)} before it sends a request
+ * and does not call {@link #accept(DsBackfillTask, DsResponse)} concurrently.
+ */
+public interface DsBackfillSink {
+
+	/**
+	 * True if the sink already stores the day. The backfill does not send a request for
+	 * the task.
+	 */
+	boolean contains(DsBackfillTask task) throws IOException;
+
+	/**
+	 * Stores a response. The response covers the local day of the task. An exception
+	 * stops the backfill, the task is sent again in the next run.
+	 */
+	void accept(DsBackfillTask task, DsResponse response) throws IOException;
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.backfill;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.model.DsDataBlock;
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * One Time Machine request of a backfill: a location and a day.
+ */
+public final class DsBackfillTask {
+
+	private static final long SECONDS_PER_DAY = 86_400;
+
+	private final DsBackfillLocation location;
+
+	private final LocalDate date;
+
+	DsBackfillTask(DsBackfillLocation location, LocalDate date) {
+		this.location = location;
+		this.date = date;
+	}
+
+	public DsBackfillLocation location() {
+		return this.location;
+	}
+
+	/**
+	 * The local date of the location
+	 */
+	public LocalDate date() {
+		return this.date;
+	}
+
+	/**
+	 * The UNIX time sent to the API: the approximate local noon of the day, derived from
+	 * the longitude. The hourly and daily blocks of a Time Machine response cover the
+	 * local day of the time. In most time zones noon solar time is inside the day, but
+	 * not in zones that are more than 12 hours away from solar time (for example
+	 * Kiribati and Samoa). The backfill checks the day of the response with
+	 * {@link #matches(DsResponse)} and requests the day again with
+	 * {@link #time(ZoneId)}.
+	 */
+	public long time() {
+		double longitude = Double.parseDouble(this.location.longitude());
+		long utcNoon = this.date.toEpochDay() * SECONDS_PER_DAY + SECONDS_PER_DAY / 2;
+		return utcNoon - Math.round(longitude / 360 * SECONDS_PER_DAY);
+	}
+
+	/**
+	 * The UNIX time of noon of the day in the time zone.
+	 */
+	public long time(ZoneId zone) {
+		return this.date.atTime(LocalTime.NOON).atZone(zone).toEpochSecond();
+	}
+
+	/**
+	 * True if the response covers the day of the task, or if the response does not
+	 * contain a time.
+	 */
+	public boolean matches(DsResponse response) {
+		LocalDate responseDate = date(response);
+		return responseDate == null || responseDate.equals(this.date);
+	}
+
+	/**
+	 * The local day a Time Machine response covers: the day of the first daily or
+	 * hourly data point, or of the currently data point, in the time zone of the
+	 * response.
+	 */
+	@Nullable
+	static LocalDate date(DsResponse response) {
+		Long time = firstTime(response.daily());
+		if (time == null) {
+			time = firstTime(response.hourly());
+		}
+		if (time == null && response.currently() != null) {
+			time = response.currently().time();
+		}
+		if (time == null) {
+			return null;
+		}
+		return Instant.ofEpochSecond(time).atZone(zone(response)).toLocalDate();
+	}
+
+	/**
+	 * The time zone of the response, the current offset if the zone name is unknown.
+	 */
+	@SuppressWarnings("deprecation")
+	static ZoneId zone(DsResponse response) {
+		try {
+			return ZoneId.of(response.timezone());
+		}
+		catch (DateTimeException e) {
+			return ZoneOffset.ofHours(response.offset());
+		}
+	}
+
+	@Nullable
+	private static Long firstTime(@Nullable DsDataBlock block) {
+		if (block != null) {
+			List<DsDataPoint> data = block.data();
+			if (!data.isEmpty()) {
+				return data.get(0).time();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return this.location + " " + this.date;
+	}
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.binary;
+
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads the values written by {@link BinaryWriter} from a {@link ByteBuffer}. Reading
+ * past the end of the buffer throws a {@link BufferUnderflowException}, a malformed
+ * varint an {@link IllegalStateException}.
+ */
+public final class BinaryReader {
+
+	private final ByteBuffer buffer;
+
+	public BinaryReader(byte[] bytes) {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Reads from the position to the limit of the buffer. Advances the position of the
+	 * buffer.
+	 */
+	public BinaryReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	public int readByte() {
+		return this.buffer.get() & 0xFF;
+	}
+
+	/**
+	 * Reads a fixed length big-endian int.
+	 */
+	public int readInt() {
+		return this.buffer.getInt();
+	}
+
+	public long readVarLong() {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = this.buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Malformed varint");
+	}
+
+	public int readVarInt() {
+		long value = readVarLong();
+		if (value >>> 32 != 0) {
+			throw new IllegalStateException("Varint exceeds 32 bits: " + value);
+		}
+		return (int) value;
+	}
+
+	public long readZigZag() {
+		long value = readVarLong();
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	@Nullable
+	public String readString() {
+		int length = readVarInt();
+		if (length == 0) {
+			return null;
+		}
+		length--;
+		String value;
+		if (this.buffer.hasArray()) {
+			value = new String(this.buffer.array(),
+					this.buffer.arrayOffset() + this.buffer.position(), length,
+					StandardCharsets.UTF_8);
+			skip(length);
+		}
+		else {
+			byte[] bytes = new byte[length];
+			this.buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns a view of the next <code>length</code> bytes and advances the position
+	 * past them.
+	 */
+	public ByteBuffer slice(int length) {
+		ByteBuffer slice = this.buffer.slice();
+		// through Buffer, the ByteBuffer overloads of Java 9 are missing on Java 8
+		((Buffer) slice).limit(length);
+		skip(length);
+		return slice;
+	}
+
+	public void skip(int length) {
+		if (length > this.buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		((Buffer) this.buffer).position(this.buffer.position() + length);
+	}
+
+	public int remaining() {
+		return this.buffer.remaining();
+	}
+
+	public boolean hasRemaining() {
+		return this.buffer.hasRemaining();
+	}
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * Growable byte buffer with variable length integer encoding. Unsigned values are
+ * written as LEB128 varints, signed values are zigzag encoded first so that small
+ * negative numbers stay small.
+ */
+public final class BinaryWriter {
+
+	private byte[] buffer;
+
+	private int size;
+
+	public BinaryWriter() {
+		this(256);
+	}
+
+	public BinaryWriter(int initialCapacity) {
+		this.buffer = new byte[Math.max(initialCapacity, 16)];
+	}
+
+	public BinaryWriter writeByte(int value) {
+		ensureCapacity(1);
+		this.buffer[this.size++] = (byte) value;
+		return this;
+	}
+
+	public BinaryWriter writeBytes(byte[] bytes) {
+		return writeBytes(bytes, 0, bytes.length);
+	}
+
+	public BinaryWriter writeBytes(byte[] bytes, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, this.buffer, this.size, length);
+		this.size += length;
+		return this;
+	}
+
+	/**
+	 * Writes a fixed length big-endian int.
+	 */
+	public BinaryWriter writeInt(int value) {
+		ensureCapacity(4);
+		this.buffer[this.size++] = (byte) (value >>> 24);
+		this.buffer[this.size++] = (byte) (value >>> 16);
+		this.buffer[this.size++] = (byte) (value >>> 8);
+		this.buffer[this.size++] = (byte) value;
+		return this;
+	}
+
+	/**
+	 * Writes an unsigned varint. Negative values take 10 bytes.
+	 */
+	public BinaryWriter writeVarLong(long value) {
+		ensureCapacity(10);
+		long v = value;
+		while ((v & ~0x7FL) != 0) {
+			this.buffer[this.size++] = (byte) (v & 0x7F | 0x80);
+			v >>>= 7;
+		}
+		this.buffer[this.size++] = (byte) v;
+		return this;
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 */
+	public BinaryWriter writeVarInt(int value) {
+		return writeVarLong(value & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Writes a signed value as zigzag encoded varint.
+	 */
+	public BinaryWriter writeZigZag(long value) {
+		return writeVarLong(value << 1 ^ value >> 63);
+	}
+
+	/**
+	 * Writes a UTF-8 string prefixed with its length + 1. A length of 0 stands for
+	 * null.
+	 */
+	public BinaryWriter writeString(@Nullable String value) {
+		if (value == null) {
+			return writeVarInt(0);
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length + 1);
+		return writeBytes(bytes);
+	}
+
+	/**
+	 * The number of bytes written
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public void reset() {
+		this.size = 0;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(this.buffer, this.size);
+	}
+
+	private void ensureCapacity(int additional) {
+		int required = this.size + additional;
+		if (required > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer,
+					Math.max(required, this.buffer.length << 1));
+		}
+	}
+
+}
@@ -0,0 +1,567 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.binary;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.json.DsNumberMode;
+import ch.rasc.darksky.json.DsStringTable;
+import ch.rasc.darksky.model.DsAlert;
+import ch.rasc.darksky.model.DsAlertSeverity;
+import ch.rasc.darksky.model.DsDataBlock;
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsDoubleDataPoint;
+import ch.rasc.darksky.model.DsFlag;
+import ch.rasc.darksky.model.DsIcon;
+import ch.rasc.darksky.model.DsPrecipType;
+import ch.rasc.darksky.model.DsResponse;
+import ch.rasc.darksky.model.DsUnit;
+import ch.rasc.darksky.model.ImmutableDsAlert;
+import ch.rasc.darksky.model.ImmutableDsDataBlock;
+import ch.rasc.darksky.model.ImmutableDsDataPoint;
+import ch.rasc.darksky.model.ImmutableDsFlag;
+import ch.rasc.darksky.model.ImmutableDsResponse;
+
+/**
+ * Compact binary representation of a {@link DsResponse}, for example for storing
+ * responses in a distributed cache. Unlike the archive format the encoding is lossless,
+ * decoding returns a response that is equal to the encoded one.
+ *
+ * <pre>
+ * response: magic (int) version (byte) latitude longitude (decimal) timezone (string)
+ *           offset (zigzag) present blocks (byte: currently 1, minutely 2, hourly 4,
+ *           daily 8, flags 16) currently minutely hourly daily (if present)
+ *           alerts: count (varint) alerts, flags (if present)
+ * block:    summary (string) icon (enum) size (varint) data points
+ * point:    time (zigzag delta to the previous data point of the block)
+ *           present fields (varlong, bit per field ordinal) values in ordinal order
+ * value:    decimal, integer (zigzag), time (zigzag delta to the point time),
+ *           icon and precipType (enum), summary (string)
+ * alert:    title description uri (string) time (zigzag) expires (zigzag delta to time)
+ *           severity (enum) regions: count (varint) strings
+ * flags:    units (enum) nearestStation (decimal or 0) sources: count (varint) strings
+ *           darkskyUnavailable (tagged value)
+ * decimal:  zigzag scale &lt;&lt; 1 | 1 if the unscaled value does not fit into a long,
+ *           followed by the unscaled value as zigzag or string
+ * enum:     ordinal + 1 (varint), 0 for null
+ * </pre>
+ *
+ * The enum ordinals are part of the format, the version changes when constants are
+ * added or reordered. Strings are read directly from the array behind the buffer.
+ */
+public final class DsResponseCodec {
+
+	private static final int MAGIC = 0x44535231; // DSR1
+
+	private static final int VERSION = 1;
+
+	private static final DsDataPointField[] FIELDS = DsDataPointField.values();
+
+	private static final DsIcon[] ICONS = DsIcon.values();
+
+	private static final DsPrecipType[] PRECIP_TYPES = DsPrecipType.values();
+
+	private static final DsAlertSeverity[] SEVERITIES = DsAlertSeverity.values();
+
+	private static final DsUnit[] UNITS = DsUnit.values();
+
+	private static final int CURRENTLY = 1;
+
+	private static final int MINUTELY = 2;
+
+	private static final int HOURLY = 4;
+
+	private static final int DAILY = 8;
+
+	private static final int FLAGS = 16;
+
+	private static final int TAG_NULL = 0;
+
+	private static final int TAG_FALSE = 1;
+
+	private static final int TAG_TRUE = 2;
+
+	private static final int TAG_STRING = 3;
+
+	private static final int TAG_INTEGER = 4;
+
+	private static final int TAG_DOUBLE = 5;
+
+	private static final int TAG_DECIMAL = 6;
+
+	private static final int TAG_LIST = 7;
+
+	private static final int TAG_MAP = 8;
+
+	private DsResponseCodec() {
+		// utility class
+	}
+
+	public static byte[] encode(DsResponse response) {
+		BinaryWriter out = new BinaryWriter(4096);
+		encode(response, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Appends the encoded response to the writer.
+	 */
+	@SuppressWarnings("deprecation")
+	public static void encode(DsResponse response, BinaryWriter out) {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		writeDecimal(out, response.latitude());
+		writeDecimal(out, response.longitude());
+		out.writeString(response.timezone());
+		out.writeZigZag(response.offset());
+
+		DsDataPoint currently = response.currently();
+		DsDataBlock minutely = response.minutely();
+		DsDataBlock hourly = response.hourly();
+		DsDataBlock daily = response.daily();
+		DsFlag flags = response.flags();
+		out.writeByte((currently != null ? CURRENTLY : 0)
+				| (minutely != null ? MINUTELY : 0) | (hourly != null ? HOURLY : 0)
+				| (daily != null ? DAILY : 0) | (flags != null ? FLAGS : 0));
+		if (currently != null) {
+			writeDataPoint(out, currently, 0);
+		}
+		if (minutely != null) {
+			writeDataBlock(out, minutely);
+		}
+		if (hourly != null) {
+			writeDataBlock(out, hourly);
+		}
+		if (daily != null) {
+			writeDataBlock(out, daily);
+		}
+
+		out.writeVarInt(response.alerts().size());
+		for (DsAlert alert : response.alerts()) {
+			writeAlert(out, alert);
+		}
+		if (flags != null) {
+			writeFlag(out, flags);
+		}
+	}
+
+	public static DsResponse decode(byte[] bytes) throws IOException {
+		return decode(ByteBuffer.wrap(bytes), DsNumberMode.BIG_DECIMAL);
+	}
+
+	public static DsResponse decode(ByteBuffer buffer) throws IOException {
+		return decode(buffer, DsNumberMode.BIG_DECIMAL);
+	}
+
+	/**
+	 * Decodes a response from the position of the buffer and advances the position past
+	 * the response.
+	 *
+	 * @param numberMode {@link DsNumberMode#DOUBLE} creates {@link DsDoubleDataPoint}
+	 * instances
+	 * @throws IOException if the buffer does not contain a response in a supported
+	 * version
+	 */
+	public static DsResponse decode(ByteBuffer buffer, DsNumberMode numberMode)
+			throws IOException {
+		return decode(buffer, numberMode, null);
+	}
+
+	/**
+	 * Decodes a response and shares the instances of the timezone, summary, flag
+	 * source, alert title and region strings through the table.
+	 *
+	 * @see #decode(ByteBuffer, DsNumberMode)
+	 */
+	public static DsResponse decode(ByteBuffer buffer, DsNumberMode numberMode,
+			@Nullable DsStringTable stringTable) throws IOException {
+		BinaryReader in = new BinaryReader(buffer);
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not an encoded response");
+			}
+			int version = in.readByte();
+			if (version != VERSION) {
+				throw new IOException("Unsupported response version " + version);
+			}
+			return readResponse(in, numberMode == DsNumberMode.DOUBLE, stringTable);
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Corrupt response", e);
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private static DsResponse readResponse(BinaryReader in, boolean doubles,
+			@Nullable DsStringTable table) {
+		ImmutableDsResponse.Builder builder = ImmutableDsResponse.builder()
+				.latitude(readDecimal(in)).longitude(readDecimal(in))
+				.timezone(readString(in, table)).offset((int) in.readZigZag());
+
+		int present = in.readByte();
+		if ((present & CURRENTLY) != 0) {
+			builder.currently(readDataPoint(in, 0, doubles, table));
+		}
+		if ((present & MINUTELY) != 0) {
+			builder.minutely(readDataBlock(in, doubles, table));
+		}
+		if ((present & HOURLY) != 0) {
+			builder.hourly(readDataBlock(in, doubles, table));
+		}
+		if ((present & DAILY) != 0) {
+			builder.daily(readDataBlock(in, doubles, table));
+		}
+
+		int alerts = in.readVarInt();
+		for (int i = 0; i < alerts; i++) {
+			builder.addAlerts(readAlert(in, table));
+		}
+		if ((present & FLAGS) != 0) {
+			builder.flags(readFlag(in, table));
+		}
+		return builder.build();
+	}
+
+	private static void writeDataBlock(BinaryWriter out, DsDataBlock block) {
+		out.writeString(block.summary());
+		writeEnum(out, block.icon());
+		List<DsDataPoint> data = block.data();
+		out.writeVarInt(data.size());
+		long previousTime = 0;
+		for (DsDataPoint dataPoint : data) {
+			writeDataPoint(out, dataPoint, previousTime);
+			previousTime = dataPoint.time();
+		}
+	}
+
+	private static DsDataBlock readDataBlock(BinaryReader in, boolean doubles,
+			@Nullable DsStringTable table) {
+		ImmutableDsDataBlock.Builder builder = ImmutableDsDataBlock.builder()
+				.summary(readString(in, table)).icon(readEnum(in, ICONS));
+		int size = in.readVarInt();
+		long previousTime = 0;
+		for (int i = 0; i < size; i++) {
+			DsDataPoint dataPoint = readDataPoint(in, previousTime, doubles,
+					table);
+			builder.addData(dataPoint);
+			previousTime = dataPoint.time();
+		}
+		return builder.build();
+	}
+
+	private static void writeDataPoint(BinaryWriter out, DsDataPoint dataPoint,
+			long previousTime) {
+		long time = dataPoint.time();
+		out.writeZigZag(time - previousTime);
+
+		long present = 0;
+		for (DsDataPointField field : FIELDS) {
+			if (field != DsDataPointField.TIME && field.get(dataPoint) != null) {
+				present |= 1L << field.ordinal();
+			}
+		}
+		out.writeVarLong(present);
+
+		for (DsDataPointField field : FIELDS) {
+			if ((present & 1L << field.ordinal()) == 0) {
+				continue;
+			}
+			Object value = field.get(dataPoint);
+			switch (field.getType()) {
+			case DECIMAL:
+				writeDecimal(out, (BigDecimal) value);
+				break;
+			case LONG:
+				out.writeZigZag((Long) value - time);
+				break;
+			case INTEGER:
+				out.writeZigZag((Integer) value);
+				break;
+			case ICON:
+			case PRECIP_TYPE:
+				writeEnum(out, (Enum<?>) value);
+				break;
+			case STRING:
+				out.writeString((String) value);
+				break;
+			}
+		}
+	}
+
+	private static DsDataPoint readDataPoint(BinaryReader in, long previousTime,
+			boolean doubles, @Nullable DsStringTable table) {
+		long time = previousTime + in.readZigZag();
+		long present = in.readVarLong();
+		if (doubles) {
+			return readDoubleDataPoint(in, time, present, table);
+		}
+
+		ImmutableDsDataPoint.Builder builder = ImmutableDsDataPoint.builder().time(time);
+		for (DsDataPointField field : FIELDS) {
+			if ((present & 1L << field.ordinal()) == 0) {
+				continue;
+			}
+			switch (field.getType()) {
+			case DECIMAL:
+				field.set(builder, readDecimal(in));
+				break;
+			case LONG:
+				field.set(builder, time + in.readZigZag());
+				break;
+			case INTEGER:
+				field.set(builder, (int) in.readZigZag());
+				break;
+			case ICON:
+				field.set(builder, readEnum(in, ICONS));
+				break;
+			case PRECIP_TYPE:
+				field.set(builder, readEnum(in, PRECIP_TYPES));
+				break;
+			case STRING:
+				field.set(builder, readString(in, table));
+				break;
+			}
+		}
+		return builder.build();
+	}
+
+	private static DsDataPoint readDoubleDataPoint(BinaryReader in, long time,
+			long present, @Nullable DsStringTable table) {
+		DsDoubleDataPoint.Builder builder = DsDoubleDataPoint.builder().time(time);
+		for (DsDataPointField field : FIELDS) {
+			if ((present & 1L << field.ordinal()) == 0) {
+				continue;
+			}
+			switch (field.getType()) {
+			case DECIMAL:
+				builder.value(field, readDecimal(in).doubleValue());
+				break;
+			case LONG:
+				builder.value(field, time + in.readZigZag());
+				break;
+			case INTEGER:
+				builder.value(field, in.readZigZag());
+				break;
+			case ICON:
+				builder.icon(readEnum(in, ICONS));
+				break;
+			case PRECIP_TYPE:
+				builder.precipType(readEnum(in, PRECIP_TYPES));
+				break;
+			case STRING:
+				builder.summary(readString(in, table));
+				break;
+			}
+		}
+		return builder.build();
+	}
+
+	private static void writeAlert(BinaryWriter out, DsAlert alert) {
+		out.writeString(alert.title());
+		out.writeString(alert.description());
+		out.writeString(alert.uri());
+		out.writeZigZag(alert.time());
+		out.writeZigZag(alert.expires() - alert.time());
+		writeEnum(out, alert.severity());
+		writeStrings(out, alert.regions());
+	}
+
+	private static DsAlert readAlert(BinaryReader in, @Nullable DsStringTable table) {
+		ImmutableDsAlert.Builder builder = ImmutableDsAlert.builder()
+				.title(readString(in, table)).description(in.readString())
+				.uri(in.readString());
+		long time = in.readZigZag();
+		return builder.time(time).expires(time + in.readZigZag())
+				.severity(readEnum(in, SEVERITIES)).regions(readStrings(in, table))
+				.build();
+	}
+
+	private static void writeFlag(BinaryWriter out, DsFlag flag) {
+		writeEnum(out, flag.units());
+		BigDecimal nearestStation = flag.nearestStation();
+		if (nearestStation != null) {
+			out.writeByte(1);
+			writeDecimal(out, nearestStation);
+		}
+		else {
+			out.writeByte(0);
+		}
+		writeStrings(out, flag.sources());
+		writeValue(out, flag.darkskyUnavailable());
+	}
+
+	private static DsFlag readFlag(BinaryReader in, @Nullable DsStringTable table) {
+		ImmutableDsFlag.Builder builder = ImmutableDsFlag.builder()
+				.units(readEnum(in, UNITS));
+		if (in.readByte() != 0) {
+			builder.nearestStation(readDecimal(in));
+		}
+		return builder.sources(readStrings(in, table)).darkskyUnavailable(readValue(in))
+				.build();
+	}
+
+	private static void writeStrings(BinaryWriter out, List<String> values) {
+		out.writeVarInt(values.size());
+		for (String value : values) {
+			out.writeString(value);
+		}
+	}
+
+	private static List<String> readStrings(BinaryReader in,
+			@Nullable DsStringTable table) {
+		int size = in.readVarInt();
+		List<String> values = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			values.add(readString(in, table));
+		}
+		return values;
+	}
+
+	@Nullable
+	private static String readString(BinaryReader in, @Nullable DsStringTable table) {
+		String value = in.readString();
+		return table != null ? table.canonicalize(value) : value;
+	}
+
+	private static void writeDecimal(BinaryWriter out, BigDecimal value) {
+		BigInteger unscaled = value.unscaledValue();
+		long scale = value.scale();
+		if (unscaled.bitLength() < 64) {
+			out.writeZigZag(scale << 1);
+			out.writeZigZag(unscaled.longValue());
+		}
+		else {
+			out.writeZigZag(scale << 1 | 1);
+			out.writeString(unscaled.toString());
+		}
+	}
+
+	private static BigDecimal readDecimal(BinaryReader in) {
+		long header = in.readZigZag();
+		int scale = (int) (header >> 1);
+		if ((header & 1) == 0) {
+			return BigDecimal.valueOf(in.readZigZag(), scale);
+		}
+		return new BigDecimal(new BigInteger(in.readString()), scale);
+	}
+
+	private static void writeEnum(BinaryWriter out, @Nullable Enum<?> value) {
+		out.writeVarInt(value != null ? value.ordinal() + 1 : 0);
+	}
+
+	@Nullable
+	private static <E extends Enum<E>> E readEnum(BinaryReader in, E[] values) {
+		int index = in.readVarInt();
+		return index == 0 ? null : values[index - 1];
+	}
+
+	/**
+	 * Writes a value of unknown type, as created by Jackson for properties of type
+	 * Object.
+	 */
+	private static void writeValue(BinaryWriter out, @Nullable Object value) {
+		if (value == null) {
+			out.writeByte(TAG_NULL);
+		}
+		else if (value instanceof Boolean) {
+			out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+		}
+		else if (value instanceof String) {
+			out.writeByte(TAG_STRING).writeString((String) value);
+		}
+		else if (value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte) {
+			out.writeByte(TAG_INTEGER).writeZigZag(((Number) value).longValue());
+		}
+		else if (value instanceof Double || value instanceof Float) {
+			double doubleValue = ((Number) value).doubleValue();
+			out.writeByte(TAG_DOUBLE).writeVarLong(Double.doubleToLongBits(doubleValue));
+		}
+		else if (value instanceof Number) {
+			out.writeByte(TAG_DECIMAL).writeString(value.toString());
+		}
+		else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			out.writeByte(TAG_LIST).writeVarInt(list.size());
+			for (Object element : list) {
+				writeValue(out, element);
+			}
+		}
+		else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			out.writeByte(TAG_MAP).writeVarInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				out.writeString(String.valueOf(entry.getKey()));
+				writeValue(out, entry.getValue());
+			}
+		}
+		else {
+			out.writeByte(TAG_STRING).writeString(value.toString());
+		}
+	}
+
+	@Nullable
+	private static Object readValue(BinaryReader in) {
+		int tag = in.readByte();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_FALSE:
+			return Boolean.FALSE;
+		case TAG_TRUE:
+			return Boolean.TRUE;
+		case TAG_STRING:
+			return in.readString();
+		case TAG_INTEGER:
+			long value = in.readZigZag();
+			if (value == (int) value) {
+				return (int) value;
+			}
+			return value;
+		case TAG_DOUBLE:
+			return Double.longBitsToDouble(in.readVarLong());
+		case TAG_DECIMAL:
+			return new BigDecimal(in.readString());
+		case TAG_LIST:
+			int size = in.readVarInt();
+			List<Object> list = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				list.add(readValue(in));
+			}
+			return list;
+		case TAG_MAP:
+			int entries = in.readVarInt();
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (int i = 0; i < entries; i++) {
+				map.put(in.readString(), readValue(in));
+			}
+			return map;
+		default:
+			throw new IllegalStateException("Unknown value tag " + tag);
+		}
+	}
+
+}
@@ -0,0 +1,556 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.model.DsBlock;
+
+/**
+ * Persistent cache for the raw response bodies. Survives restarts of the application.
+ * <p>
+ * The entries are appended to a log file. When the cache is opened the log is scanned
+ * and an in-memory index of the newest entry per key is built, the bodies stay on disk
+ * until they are requested. A partially written entry at the end of the file (after a
+ * crash) is discarded. {@link #compact()} rewrites the file without expired,
+ * overwritten and invalidated entries. Invalidations are appended as tombstone records
+ * so they survive a restart.
+ * <p>
+ * When the file grows beyond its maximum size it is compacted automatically. If the
+ * fresh entries alone do not fit into three quarters of the maximum size, the entries
+ * fetched longest ago are dropped.
+ * <p>
+ * Time Machine responses for past days never change and are stored without expiration.
+ * <p>
+ * Instances are thread safe. Only one instance may open a file at the same time.
+ */
+public class DsDiskCache implements Closeable {
+
+	private static final int MAGIC = 0x44534331; // DSC1
+
+	private static final int FILE_HEADER_LENGTH = 4;
+
+	/**
+	 * keyLength (int), fetchedAt (long), expiresAt (long), bodyLength (int), crc (int)
+	 */
+	private static final int RECORD_HEADER_LENGTH = 4 + 8 + 8 + 4 + 4;
+
+	private static final long NEVER = Long.MAX_VALUE;
+
+	/**
+	 * expiresAt of a record that removes the key
+	 */
+	private static final long TOMBSTONE = Long.MIN_VALUE;
+
+	/**
+	 * 256 MiB
+	 */
+	public static final long DEFAULT_MAX_FILE_SIZE = 256L * 1024 * 1024;
+
+	private final Path file;
+
+	private final Map<DsBlock, Duration> ttls;
+
+	private final Clock clock;
+
+	private final long maxFileSize;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<String, Location> index = new HashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private FileChannel channel;
+
+	private long end;
+
+	public DsDiskCache(Path file) throws IOException {
+		this(file, DsResponseCache.defaultTtls());
+	}
+
+	public DsDiskCache(Path file, Map<DsBlock, Duration> ttls) throws IOException {
+		this(file, ttls, Clock.systemUTC());
+	}
+
+	/**
+	 * @param file the log file, created if it does not exist
+	 * @param ttls time to live per block. Blocks without an entry in this map are never
+	 * cached.
+	 * @param clock clock for computing the expiration time
+	 */
+	public DsDiskCache(Path file, Map<DsBlock, Duration> ttls, Clock clock)
+			throws IOException {
+		this(file, ttls, DEFAULT_MAX_FILE_SIZE, clock);
+	}
+
+	/**
+	 * @param file the log file, created if it does not exist
+	 * @param ttls time to live per block. Blocks without an entry in this map are never
+	 * cached.
+	 * @param maxFileSize the file is compacted when it grows beyond this size in bytes
+	 * @param clock clock for computing the expiration time
+	 */
+	public DsDiskCache(Path file, Map<DsBlock, Duration> ttls, long maxFileSize,
+			Clock clock) throws IOException {
+		if (maxFileSize <= FILE_HEADER_LENGTH) {
+			throw new IllegalArgumentException("maxFileSize is too small");
+		}
+		this.file = file;
+		this.ttls = Collections.unmodifiableMap(new EnumMap<>(ttls));
+		this.maxFileSize = maxFileSize;
+		this.clock = clock;
+		this.channel = open(file);
+		load();
+	}
+
+	private static FileChannel open(Path file) throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Returns the cached response body or null if the cache does not contain a fresh
+	 * body for the key.
+	 */
+	@Nullable
+	public byte[] get(String key) throws IOException {
+		Entry entry = getEntry(key);
+		return entry != null ? entry.body() : null;
+	}
+
+	/**
+	 * Like {@link #get(String)} but returns the body together with the time it was
+	 * fetched and its expiration time.
+	 */
+	@Nullable
+	public Entry getEntry(String key) throws IOException {
+		this.lock.readLock().lock();
+		try {
+			Location location;
+			synchronized (this.index) {
+				location = this.index.get(key);
+			}
+			if (location != null && location.expiresAt > this.clock.millis()) {
+				ByteBuffer body = ByteBuffer.allocate(location.length);
+				readFully(this.channel, body, location.offset);
+				this.hits.increment();
+				return new Entry(body.array(), location.fetchedAt, location.expiresAt);
+			}
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+		this.misses.increment();
+		return null;
+	}
+
+	/**
+	 * Returns the cached response body even if it is expired. Expired bodies are kept
+	 * until the next {@link #compact()}. Used when a request fails.
+	 */
+	@Nullable
+	public byte[] getStale(String key) throws IOException {
+		this.lock.readLock().lock();
+		try {
+			Location location;
+			synchronized (this.index) {
+				location = this.index.get(key);
+			}
+			if (location == null) {
+				return null;
+			}
+			ByteBuffer body = ByteBuffer.allocate(location.length);
+			readFully(this.channel, body, location.offset);
+			return body.array();
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stores a response body.
+	 *
+	 * @param key the request key
+	 * @param body the response body
+	 * @param blocks the blocks the request asked for
+	 */
+	public void put(String key, byte[] body, Set<DsBlock> blocks) throws IOException {
+		Duration ttl = DsResponseCache.ttl(this.ttls, blocks);
+		if (ttl.isZero() || ttl.isNegative()) {
+			return;
+		}
+		long now = this.clock.millis();
+		append(key, body, now, now + ttl.toMillis());
+	}
+
+	/**
+	 * Stores a response body that never expires.
+	 */
+	public void putHistorical(String key, byte[] body) throws IOException {
+		append(key, body, this.clock.millis(), NEVER);
+	}
+
+	/**
+	 * Removes the entry. Appends a tombstone record, the entry stays removed after a
+	 * restart.
+	 */
+	public void invalidate(String key) throws IOException {
+		synchronized (this.index) {
+			if (!this.index.containsKey(key)) {
+				return;
+			}
+		}
+		append(key, new byte[0], this.clock.millis(), TOMBSTONE);
+	}
+
+	/**
+	 * The number of entries, including expired entries.
+	 */
+	public int size() {
+		synchronized (this.index) {
+			return this.index.size();
+		}
+	}
+
+	/**
+	 * The size of the log file in bytes.
+	 */
+	public long fileSize() {
+		this.lock.readLock().lock();
+		try {
+			synchronized (this) {
+				return this.end;
+			}
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	public long hitCount() {
+		return this.hits.sum();
+	}
+
+	public long missCount() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Rewrites the log file with the fresh entries only.
+	 */
+	public void compact() throws IOException {
+		compact(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Rewrites the log file with the fresh entries, newest first, as long as the file
+	 * stays within the maximum size.
+	 */
+	private void compact(long maxSize) throws IOException {
+		this.lock.writeLock().lock();
+		try {
+			Path tmp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+			Map<String, Location> compacted = new HashMap<>();
+			long now = this.clock.millis();
+			try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				long position = writeFileHeader(out);
+				List<Map.Entry<String, Location>> live;
+				synchronized (this.index) {
+					live = new ArrayList<>(this.index.entrySet());
+				}
+				live.sort(Comparator.comparingLong(
+						(Map.Entry<String, Location> e) -> e.getValue().fetchedAt)
+						.reversed());
+				for (Map.Entry<String, Location> entry : live) {
+					Location location = entry.getValue();
+					if (location.expiresAt <= now) {
+						continue;
+					}
+					long recordLength = RECORD_HEADER_LENGTH
+							+ entry.getKey().getBytes(StandardCharsets.UTF_8).length
+							+ location.length;
+					if (position + recordLength > maxSize) {
+						break;
+					}
+					ByteBuffer body = ByteBuffer.allocate(location.length);
+					readFully(this.channel, body, location.offset);
+					Location newLocation = writeRecord(out, position, entry.getKey(),
+							body.array(), location.fetchedAt, location.expiresAt);
+					compacted.put(entry.getKey(), newLocation);
+					position = newLocation.offset + newLocation.length;
+				}
+				out.force(true);
+			}
+
+			this.channel.close();
+			Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			this.channel = open(this.file);
+			synchronized (this) {
+				this.end = this.channel.size();
+			}
+			synchronized (this.index) {
+				this.index.clear();
+				this.index.putAll(compacted);
+			}
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.lock.writeLock().lock();
+		try {
+			this.channel.close();
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	private void append(String key, byte[] body, long fetchedAt, long expiresAt)
+			throws IOException {
+		boolean full;
+		this.lock.readLock().lock();
+		try {
+			synchronized (this) {
+				Location location = writeRecord(this.channel, this.end, key, body,
+						fetchedAt, expiresAt);
+				this.end = location.offset + location.length;
+				full = this.end > this.maxFileSize;
+				// update the index in the order of the records in the file
+				synchronized (this.index) {
+					if (expiresAt == TOMBSTONE) {
+						this.index.remove(key);
+					}
+					else {
+						this.index.put(key, location);
+					}
+				}
+			}
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+
+		if (full) {
+			this.lock.writeLock().lock();
+			try {
+				// another thread may have compacted the file in the meantime
+				if (this.end > this.maxFileSize) {
+					compact(this.maxFileSize / 4 * 3);
+				}
+			}
+			finally {
+				this.lock.writeLock().unlock();
+			}
+		}
+	}
+
+	private void load() throws IOException {
+		long size = this.channel.size();
+		if (size < FILE_HEADER_LENGTH) {
+			this.channel.truncate(0);
+			this.end = writeFileHeader(this.channel);
+			return;
+		}
+
+		ByteBuffer magic = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+		readFully(this.channel, magic, 0);
+		if (magic.getInt(0) != MAGIC) {
+			throw new IOException(this.file + " is not a DsDiskCache file");
+		}
+
+		long position = FILE_HEADER_LENGTH;
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+		while (position + RECORD_HEADER_LENGTH <= size) {
+			// through Buffer, the ByteBuffer overloads of Java 9 are missing on Java 8
+			((Buffer) header).clear();
+			readFully(this.channel, header, position);
+			int keyLength = header.getInt(0);
+			long fetchedAt = header.getLong(4);
+			long expiresAt = header.getLong(12);
+			int bodyLength = header.getInt(20);
+			int crc = header.getInt(24);
+
+			long bodyOffset = position + RECORD_HEADER_LENGTH + keyLength;
+			if (keyLength < 0 || bodyLength < 0 || bodyOffset + bodyLength > size) {
+				break;
+			}
+
+			ByteBuffer keyAndBody = ByteBuffer.allocate(keyLength + bodyLength);
+			readFully(this.channel, keyAndBody, position + RECORD_HEADER_LENGTH);
+			if (crc(keyAndBody.array()) != crc) {
+				break;
+			}
+
+			String key = new String(keyAndBody.array(), 0, keyLength,
+					StandardCharsets.UTF_8);
+			if (expiresAt == TOMBSTONE) {
+				this.index.remove(key);
+			}
+			else {
+				this.index.put(key,
+						new Location(bodyOffset, bodyLength, fetchedAt, expiresAt));
+			}
+			position = bodyOffset + bodyLength;
+		}
+
+		// discard a partially written record
+		if (position < size) {
+			this.channel.truncate(position);
+		}
+		this.end = position;
+	}
+
+	private static long writeFileHeader(FileChannel channel) throws IOException {
+		ByteBuffer magic = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+		magic.putInt(MAGIC);
+		((Buffer) magic).flip();
+		writeFully(channel, magic, 0);
+		return FILE_HEADER_LENGTH;
+	}
+
+	private static Location writeRecord(FileChannel channel, long position, String key,
+			byte[] body, long fetchedAt, long expiresAt) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer
+				.allocate(RECORD_HEADER_LENGTH + keyBytes.length + body.length);
+		record.putInt(keyBytes.length).putLong(fetchedAt).putLong(expiresAt)
+				.putInt(body.length).putInt(0).put(keyBytes).put(body);
+
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), RECORD_HEADER_LENGTH, keyBytes.length + body.length);
+		record.putInt(24, (int) crc.getValue());
+		((Buffer) record).flip();
+
+		writeFully(channel, record, position);
+		return new Location(position + RECORD_HEADER_LENGTH + keyBytes.length,
+				body.length, fetchedAt, expiresAt);
+	}
+
+	private static int crc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return (int) crc.getValue();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+			throws IOException {
+		long pos = position;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, pos);
+			if (read == -1) {
+				throw new IOException("Unexpected end of file");
+			}
+			pos += read;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+			throws IOException {
+		long pos = position;
+		while (buffer.hasRemaining()) {
+			pos += channel.write(buffer, pos);
+		}
+	}
+
+	/**
+	 * A cached response body returned by {@link DsDiskCache#getEntry(String)}.
+	 */
+	public static final class Entry {
+		private final byte[] body;
+
+		private final long fetchedAt;
+
+		private final long expiresAt;
+
+		Entry(byte[] body, long fetchedAt, long expiresAt) {
+			this.body = body;
+			this.fetchedAt = fetchedAt;
+			this.expiresAt = expiresAt;
+		}
+
+		public byte[] body() {
+			return this.body;
+		}
+
+		/**
+		 * Milliseconds since the epoch when the body was stored.
+		 */
+		public long fetchedAt() {
+			return this.fetchedAt;
+		}
+
+		/**
+		 * Milliseconds since the epoch when the body expires, {@link Long#MAX_VALUE}
+		 * for bodies stored with {@link DsDiskCache#putHistorical(String, byte[])}.
+		 */
+		public long expiresAt() {
+			return this.expiresAt;
+		}
+	}
+
+	private static final class Location {
+		final long offset;
+
+		final int length;
+
+		final long fetchedAt;
+
+		final long expiresAt;
+
+		Location(long offset, int length, long fetchedAt, long expiresAt) {
+			this.offset = offset;
+			this.length = length;
+			this.fetchedAt = fetchedAt;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
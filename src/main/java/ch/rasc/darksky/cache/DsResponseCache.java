@@ -0,0 +1,416 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.model.DsBlock;
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * Size bounded in-memory cache for {@link DsResponse} objects. Least recently used
+ * entries are evicted when the cache is full.
+ * <p>
+ * The time to live of an entry depends on the blocks the response contains. Every
+ * block has its own time to live (for example {@link DsBlock#MINUTELY} changes faster
+ * than {@link DsBlock#DAILY}) and an entry expires with the shortest time to live of its
+ * blocks.
+ * <p>
+ * Instances are thread safe and can be shared between multiple
+ * {@link ch.rasc.darksky.DsClient} instances with the same settings.
+ */
+public class DsResponseCache {
+
+	private final int maxEntries;
+
+	private final Map<DsBlock, Duration> ttls;
+
+	private final long maxStaleMillis;
+
+	private final Clock clock;
+
+	private final LinkedHashMap<String, CacheEntry> entries;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final CopyOnWriteArrayList<Consumer<String>> removalListeners;
+
+	public DsResponseCache(int maxEntries) {
+		this(maxEntries, defaultTtls());
+	}
+
+	public DsResponseCache(int maxEntries, Map<DsBlock, Duration> ttls) {
+		this(maxEntries, ttls, Clock.systemUTC());
+	}
+
+	public DsResponseCache(int maxEntries, Map<DsBlock, Duration> ttls, Clock clock) {
+		this(maxEntries, ttls, Duration.ZERO, clock);
+	}
+
+	public DsResponseCache(int maxEntries, Map<DsBlock, Duration> ttls,
+			Duration maxStale) {
+		this(maxEntries, ttls, maxStale, Clock.systemUTC());
+	}
+
+	/**
+	 * @param maxEntries maximum number of cached responses
+	 * @param ttls time to live per block. Blocks without an entry in this map are never
+	 * cached.
+	 * @param maxStale how long an expired response is kept for {@link #getStale(String)}
+	 * @param clock clock for computing the expiration time
+	 */
+	public DsResponseCache(int maxEntries, Map<DsBlock, Duration> ttls,
+			Duration maxStale, Clock clock) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be greater than 0");
+		}
+		this.maxEntries = maxEntries;
+		this.ttls = Collections.unmodifiableMap(new EnumMap<>(ttls));
+		this.maxStaleMillis = maxStale.toMillis();
+		this.clock = clock;
+		this.removalListeners = new CopyOnWriteArrayList<>();
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				if (size() > DsResponseCache.this.maxEntries) {
+					removed(eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * The default time to live of the blocks: 1 minute for {@link DsBlock#MINUTELY}, 2
+	 * minutes for {@link DsBlock#CURRENTLY}, 5 minutes for {@link DsBlock#ALERTS}, 15
+	 * minutes for {@link DsBlock#HOURLY}, 1 hour for {@link DsBlock#DAILY} and 1 day for
+	 * {@link DsBlock#FLAGS}.
+	 */
+	public static Map<DsBlock, Duration> defaultTtls() {
+		Map<DsBlock, Duration> ttls = new EnumMap<>(DsBlock.class);
+		ttls.put(DsBlock.MINUTELY, Duration.ofMinutes(1));
+		ttls.put(DsBlock.CURRENTLY, Duration.ofMinutes(2));
+		ttls.put(DsBlock.ALERTS, Duration.ofMinutes(5));
+		ttls.put(DsBlock.HOURLY, Duration.ofMinutes(15));
+		ttls.put(DsBlock.DAILY, Duration.ofHours(1));
+		ttls.put(DsBlock.FLAGS, Duration.ofDays(1));
+		return ttls;
+	}
+
+	/**
+	 * Returns the cached response or null if the cache does not contain a fresh response
+	 * for the key.
+	 */
+	@Nullable
+	public DsResponse get(String key) {
+		long now = this.clock.millis();
+		synchronized (this.entries) {
+			CacheEntry entry = this.entries.get(key);
+			if (entry != null) {
+				if (entry.expiresAt > now) {
+					entry.hits++;
+					this.hits.increment();
+					return entry.response;
+				}
+				if (now - this.maxStaleMillis >= entry.expiresAt) {
+					this.entries.remove(key);
+					removed(key);
+				}
+			}
+		}
+		this.misses.increment();
+		return null;
+	}
+
+	/**
+	 * Returns the cached response together with its age and access count, or null if
+	 * the cache does not contain a response for the key or the response expired more
+	 * than <code>maxStale</code> ago. Used for refreshing responses before and after
+	 * they expire. Counts as a hit when the response is fresh, otherwise as a miss.
+	 */
+	@Nullable
+	public Lookup lookup(String key) {
+		long now = this.clock.millis();
+		Lookup lookup = null;
+		synchronized (this.entries) {
+			CacheEntry entry = this.entries.get(key);
+			if (entry != null) {
+				if (now - this.maxStaleMillis < entry.expiresAt) {
+					entry.hits++;
+					lookup = new Lookup(entry, now);
+				}
+				else {
+					this.entries.remove(key);
+					removed(key);
+				}
+			}
+		}
+		if (lookup != null && !lookup.isExpired()) {
+			this.hits.increment();
+		}
+		else {
+			this.misses.increment();
+		}
+		return lookup;
+	}
+
+	/**
+	 * Returns the cached response even if it is expired, as long as it did not expire
+	 * more than <code>maxStale</code> ago. Used when a request fails.
+	 */
+	@Nullable
+	public DsResponse getStale(String key) {
+		long now = this.clock.millis();
+		synchronized (this.entries) {
+			CacheEntry entry = this.entries.get(key);
+			if (entry != null && now - this.maxStaleMillis < entry.expiresAt) {
+				return entry.response;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stores a response in the cache.
+	 *
+	 * @param key the request key
+	 * @param response the response
+	 * @param blocks the blocks the request asked for
+	 */
+	public void put(String key, DsResponse response, Set<DsBlock> blocks) {
+		Duration ttl = ttl(blocks);
+		if (ttl.isZero() || ttl.isNegative()) {
+			return;
+		}
+		long now = this.clock.millis();
+		store(key, new CacheEntry(response, now, now + ttl.toMillis()));
+	}
+
+	/**
+	 * Stores a response that was fetched earlier, for example a response loaded from the
+	 * {@link DsDiskCache}. The response keeps its original age and expiration time.
+	 * Expired responses are not stored.
+	 *
+	 * @param storedAt milliseconds since the epoch when the response was fetched
+	 * @param expiresAt milliseconds since the epoch when the response expires,
+	 * {@link Long#MAX_VALUE} for a response that never expires
+	 */
+	public void put(String key, DsResponse response, long storedAt, long expiresAt) {
+		if (expiresAt <= this.clock.millis()) {
+			return;
+		}
+		store(key, new CacheEntry(response, storedAt, expiresAt));
+	}
+
+	/**
+	 * Stores a response that never expires. Used for Time Machine responses of past days,
+	 * they do not change anymore.
+	 */
+	public void putHistorical(String key, DsResponse response) {
+		store(key, new CacheEntry(response, this.clock.millis(), Long.MAX_VALUE));
+	}
+
+	private void store(String key, CacheEntry entry) {
+		synchronized (this.entries) {
+			CacheEntry previous = this.entries.put(key, entry);
+			if (previous != null) {
+				// keep half of the access count, a refreshed popular key stays popular
+				entry.hits = previous.hits / 2;
+			}
+		}
+	}
+
+	/**
+	 * The time to live of a response containing the given blocks.
+	 */
+	public Duration ttl(Set<DsBlock> blocks) {
+		return ttl(this.ttls, blocks);
+	}
+
+	static Duration ttl(Map<DsBlock, Duration> ttls, Set<DsBlock> blocks) {
+		Duration ttl = null;
+		for (DsBlock block : blocks) {
+			Duration blockTtl = ttls.getOrDefault(block, Duration.ZERO);
+			if (ttl == null || blockTtl.compareTo(ttl) < 0) {
+				ttl = blockTtl;
+			}
+		}
+		return ttl != null ? ttl : Duration.ZERO;
+	}
+
+	public void invalidate(String key) {
+		synchronized (this.entries) {
+			if (this.entries.remove(key) != null) {
+				removed(key);
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (this.entries) {
+			for (String key : this.entries.keySet()) {
+				removed(key);
+			}
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * Adds a listener that is called with the key of every entry that is evicted,
+	 * invalidated or removed after it expired. Not called when an entry is replaced.
+	 * <p>
+	 * Listeners are called while the cache is locked, they must not call methods of
+	 * the cache.
+	 */
+	public void addRemovalListener(Consumer<String> listener) {
+		this.removalListeners.add(listener);
+	}
+
+	private void removed(String key) {
+		for (Consumer<String> listener : this.removalListeners) {
+			listener.accept(key);
+		}
+	}
+
+	/**
+	 * The number of entries in the cache, including expired entries that are not yet
+	 * evicted.
+	 */
+	public int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	/**
+	 * The number of {@link #get(String)} and {@link #lookup(String)} calls that found a
+	 * fresh response. {@link ch.rasc.darksky.DsClient} uses lookup when it refreshes
+	 * responses or serves stale responses.
+	 */
+	public long hitCount() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * The number of {@link #get(String)} and {@link #lookup(String)} calls that did not
+	 * find a fresh response, including lookups that returned an expired response.
+	 * {@link #getStale(String)} is not counted.
+	 */
+	public long missCount() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * A cached response returned by {@link DsResponseCache#lookup(String)}.
+	 */
+	public static final class Lookup {
+		private final DsResponse response;
+
+		private final long ageMillis;
+
+		private final long ttlMillis;
+
+		private final int hits;
+
+		Lookup(CacheEntry entry, long now) {
+			this.response = entry.response;
+			this.ageMillis = Math.max(0, now - entry.storedAt);
+			this.ttlMillis = entry.expiresAt == Long.MAX_VALUE ? Long.MAX_VALUE
+					: entry.expiresAt - entry.storedAt;
+			this.hits = entry.hits;
+		}
+
+		public DsResponse response() {
+			return this.response;
+		}
+
+		/**
+		 * Milliseconds since the response was stored in the cache.
+		 */
+		public long ageMillis() {
+			return this.ageMillis;
+		}
+
+		/**
+		 * The time to live of the response in milliseconds. {@link Long#MAX_VALUE} for
+		 * responses stored with
+		 * {@link DsResponseCache#putHistorical(String, DsResponse)}.
+		 */
+		public long ttlMillis() {
+			return this.ttlMillis;
+		}
+
+		/**
+		 * Number of lookups of the key, including this one. Half of the count is carried
+		 * over when the response is replaced.
+		 */
+		public int hits() {
+			return this.hits;
+		}
+
+		public boolean isExpired() {
+			return this.ageMillis >= this.ttlMillis;
+		}
+
+		/**
+		 * The part of the time to live that has elapsed, greater than or equal to 1 when
+		 * the response is expired.
+		 */
+		public double lifetimeUsed() {
+			if (this.ttlMillis == Long.MAX_VALUE) {
+				return 0;
+			}
+			return this.ttlMillis > 0 ? (double) this.ageMillis / this.ttlMillis
+					: Double.POSITIVE_INFINITY;
+		}
+	}
+
+	private static final class CacheEntry {
+		final DsResponse response;
+
+		final long storedAt;
+
+		final long expiresAt;
+
+		/**
+		 * Guarded by the entries lock.
+		 */
+		int hits;
+
+		CacheEntry(DsResponse response, long storedAt, long expiresAt) {
+			this.response = response;
+			this.storedAt = storedAt;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
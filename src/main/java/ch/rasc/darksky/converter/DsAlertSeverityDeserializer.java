@@ -19,6 +19,7 @@ import java.io.IOException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
@@ -29,6 +30,10 @@ public class DsAlertSeverityDeserializer extends JsonDeserializer<DsAlertSeverit
 	@Override
 	public DsAlertSeverity deserialize(JsonParser jp, DeserializationContext ctxt)
 			throws IOException, JsonProcessingException {
+		if (jp.hasToken(JsonToken.VALUE_STRING)) {
+			return DsAlertSeverity.findByJsonValue(jp.getTextCharacters(),
+					jp.getTextOffset(), jp.getTextLength());
+		}
 		return DsAlertSeverity.findByJsonValue(jp.getText());
 	}
 
@@ -19,6 +19,7 @@ import java.io.IOException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
@@ -29,6 +30,10 @@ public class DsUnitDeserializer extends JsonDeserializer<DsUnit> {
 	@Override
 	public DsUnit deserialize(JsonParser jp, DeserializationContext ctxt)
 			throws IOException, JsonProcessingException {
+		if (jp.hasToken(JsonToken.VALUE_STRING)) {
+			return DsUnit.findByJsonValue(jp.getTextCharacters(), jp.getTextOffset(),
+					jp.getTextLength());
+		}
 		return DsUnit.findByJsonValue(jp.getText());
 	}
 
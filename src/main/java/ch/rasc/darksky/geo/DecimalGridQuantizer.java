@@ -0,0 +1,47 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.geo;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Rounds coordinates to a fixed number of decimal places.
+ */
+final class DecimalGridQuantizer implements DsCoordinateQuantizer {
+
+	private final int places;
+
+	DecimalGridQuantizer(int places) {
+		if (places < 0) {
+			throw new IllegalArgumentException("places must not be negative");
+		}
+		this.places = places;
+	}
+
+	@Override
+	public DsCoordinate quantize(DsCoordinate coordinate) {
+		return DsCoordinate.of(round(coordinate.latitude()),
+				round(coordinate.longitude()));
+	}
+
+	private String round(String degrees) {
+		BigDecimal value = new BigDecimal(degrees).setScale(this.places,
+				RoundingMode.HALF_UP);
+		return DsGeohash.format(value);
+	}
+
+}
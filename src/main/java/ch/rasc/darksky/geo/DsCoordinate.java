@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.geo;
+
+import java.util.Objects;
+
+/**
+ * Latitude and longitude of a location in decimal degrees, as sent to the API.
+ */
+public final class DsCoordinate {
+
+	private final String latitude;
+
+	private final String longitude;
+
+	private DsCoordinate(String latitude, String longitude) {
+		this.latitude = Objects.requireNonNull(latitude, "latitude");
+		this.longitude = Objects.requireNonNull(longitude, "longitude");
+	}
+
+	public static DsCoordinate of(String latitude, String longitude) {
+		return new DsCoordinate(latitude, longitude);
+	}
+
+	public String latitude() {
+		return this.latitude;
+	}
+
+	public String longitude() {
+		return this.longitude;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof DsCoordinate)) {
+			return false;
+		}
+		DsCoordinate other = (DsCoordinate) obj;
+		return this.latitude.equals(other.latitude)
+				&& this.longitude.equals(other.longitude);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.latitude.hashCode() + this.longitude.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return this.latitude + "," + this.longitude;
+	}
+
+}
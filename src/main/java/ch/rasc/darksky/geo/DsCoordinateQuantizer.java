@@ -0,0 +1,49 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.geo;
+
+/**
+ * Snaps the coordinates of a request to a grid before the request is sent. Nearby
+ * locations are mapped to the same coordinate, share one cache entry and one API call.
+ * <p>
+ * The response contains the snapped coordinates, not the coordinates of the request.
+ *
+ * @see ch.rasc.darksky.DsClient.Builder#coordinateQuantizer(DsCoordinateQuantizer)
+ */
+@FunctionalInterface
+public interface DsCoordinateQuantizer {
+
+	DsCoordinate quantize(DsCoordinate coordinate);
+
+	/**
+	 * Rounds latitude and longitude half up to the given number of decimal places. Two
+	 * decimal places are a grid of about 1.1 km, one decimal place about 11 km.
+	 */
+	static DsCoordinateQuantizer decimalPlaces(int places) {
+		return new DecimalGridQuantizer(places);
+	}
+
+	/**
+	 * Replaces the coordinate with the center of its geohash cell. A precision of 5 is
+	 * a cell of about 4.9 x 4.9 km, 6 about 1.2 x 0.6 km.
+	 *
+	 * @see DsGeohash
+	 */
+	static DsCoordinateQuantizer geohash(int precision) {
+		return new GeohashQuantizer(precision);
+	}
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.geo;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Geohash encoding. A geohash is a base 32 string that identifies a rectangular cell,
+ * every additional character divides the cell into 32 smaller cells.
+ */
+public final class DsGeohash {
+
+	public static final int MAX_PRECISION = 12;
+
+	private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz"
+			.toCharArray();
+
+	private static final int[] DECODE = new int['z' + 1];
+
+	static {
+		Arrays.fill(DECODE, -1);
+		for (int i = 0; i < BASE32.length; i++) {
+			DECODE[BASE32[i]] = i;
+		}
+	}
+
+	private DsGeohash() {
+		// utility class
+	}
+
+	/**
+	 * Returns the geohash with <code>precision</code> characters of the cell that
+	 * contains the coordinate.
+	 */
+	public static String encode(double latitude, double longitude, int precision) {
+		if (precision < 1 || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException(
+					"precision must be between 1 and " + MAX_PRECISION);
+		}
+		double minLat = -90, maxLat = 90;
+		double minLon = -180, maxLon = 180;
+		char[] hash = new char[precision];
+		boolean even = true;
+		for (int i = 0; i < precision; i++) {
+			int index = 0;
+			for (int bit = 0; bit < 5; bit++) {
+				index <<= 1;
+				if (even) {
+					double mid = (minLon + maxLon) / 2;
+					if (longitude >= mid) {
+						index |= 1;
+						minLon = mid;
+					}
+					else {
+						maxLon = mid;
+					}
+				}
+				else {
+					double mid = (minLat + maxLat) / 2;
+					if (latitude >= mid) {
+						index |= 1;
+						minLat = mid;
+					}
+					else {
+						maxLat = mid;
+					}
+				}
+				even = !even;
+			}
+			hash[i] = BASE32[index];
+		}
+		return new String(hash);
+	}
+
+	/**
+	 * Returns the center of the cell, rounded to the number of decimal places that
+	 * distinguishes cells of this precision.
+	 */
+	public static DsCoordinate center(String geohash) {
+		double[] bounds = bounds(geohash);
+		double latHeight = bounds[1] - bounds[0];
+		double lonWidth = bounds[3] - bounds[2];
+		return DsCoordinate.of(
+				round((bounds[0] + bounds[1]) / 2, latHeight),
+				round((bounds[2] + bounds[3]) / 2, lonWidth));
+	}
+
+	/**
+	 * The bounds of the cell: minimum latitude, maximum latitude, minimum longitude and
+	 * maximum longitude.
+	 */
+	static double[] bounds(String geohash) {
+		double minLat = -90, maxLat = 90;
+		double minLon = -180, maxLon = 180;
+		boolean even = true;
+		for (int i = 0; i < geohash.length(); i++) {
+			char c = geohash.charAt(i);
+			int index = c < DECODE.length ? DECODE[c] : -1;
+			if (index == -1) {
+				throw new IllegalArgumentException("invalid geohash: " + geohash);
+			}
+			for (int bit = 4; bit >= 0; bit--) {
+				boolean set = (index >> bit & 1) == 1;
+				if (even) {
+					double mid = (minLon + maxLon) / 2;
+					if (set) {
+						minLon = mid;
+					}
+					else {
+						maxLon = mid;
+					}
+				}
+				else {
+					double mid = (minLat + maxLat) / 2;
+					if (set) {
+						minLat = mid;
+					}
+					else {
+						maxLat = mid;
+					}
+				}
+				even = !even;
+			}
+		}
+		return new double[] { minLat, maxLat, minLon, maxLon };
+	}
+
+	/**
+	 * Rounds to one decimal place more than the cell size needs.
+	 */
+	private static String round(double degrees, double cellSize) {
+		int places = Math.max(0, (int) Math.ceil(-Math.log10(cellSize)) + 1);
+		return format(BigDecimal.valueOf(degrees).setScale(places, RoundingMode.HALF_UP));
+	}
+
+	/**
+	 * Formats a coordinate without trailing zeros and without exponent.
+	 */
+	static String format(BigDecimal degrees) {
+		if (degrees.signum() == 0) {
+			return "0";
+		}
+		return degrees.stripTrailingZeros().toPlainString();
+	}
+
+}
@@ -0,0 +1,421 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.geo;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * Spatial index over {@link DsResponse} objects, located by
+ * {@link DsResponse#latitude()} and {@link DsResponse#longitude()}. Answers the
+ * question "which fresh response is closest to this coordinate" without calling the
+ * API.
+ * <p>
+ * Responses are grouped by a variant, for example the units, language and blocks of the
+ * request. A lookup only returns responses of the same variant. Inside a variant the
+ * responses are stored in grid cells of <code>cellDegrees</code> x
+ * <code>cellDegrees</code>, a lookup only visits the cells that intersect the search
+ * radius.
+ * <p>
+ * An entry expires at the given expiration time, but at the latest <code>maxAge</code>
+ * after it was added. Expired responses are skipped by lookups and removed when a
+ * response is added to their cell. When the index contains <code>maxEntries</code>
+ * responses, adding a new location removes expired responses and, if none expired,
+ * the response that was added first.
+ * <p>
+ * Lookups do not block, changes are serialized. Instances are thread safe.
+ *
+ * @see ch.rasc.darksky.DsClient.Builder#spatialIndex(DsSpatialIndex, double)
+ */
+public class DsSpatialIndex {
+
+	private static final double EARTH_RADIUS_KM = 6371.0088;
+
+	private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+	/**
+	 * Number of the oldest entries checked for expiration before the oldest entry is
+	 * evicted from a full index.
+	 */
+	private static final int EVICTION_SCAN = 64;
+
+	private final double cellDegrees;
+
+	private final int lonCells;
+
+	private final int maxEntries;
+
+	private final long maxAgeMillis;
+
+	private final Clock clock;
+
+	private final ConcurrentHashMap<Cell, Map<String, Entry>> cells;
+
+	/**
+	 * All entries in the order they were added. Guarded by this.
+	 */
+	private final LinkedHashSet<Entry> entries = new LinkedHashSet<>();
+
+	/**
+	 * Entries by the key they were added with. Guarded by this.
+	 */
+	private final Map<String, Entry> keys = new HashMap<>();
+
+	/**
+	 * Creates an index with cells of 0.1 degrees (about 11 km), at most 100,000 entries
+	 * and a maximum age of 1 day.
+	 */
+	public DsSpatialIndex() {
+		this(0.1, 100_000, Clock.systemUTC());
+	}
+
+	/**
+	 * Creates an index with a maximum age of 1 day.
+	 *
+	 * @see #DsSpatialIndex(double, int, Duration, Clock)
+	 */
+	public DsSpatialIndex(double cellDegrees, int maxEntries, Clock clock) {
+		this(cellDegrees, maxEntries, Duration.ofDays(1), clock);
+	}
+
+	/**
+	 * @param cellDegrees size of a grid cell in degrees. Should be in the order of the
+	 * typical search radius.
+	 * @param maxEntries maximum number of indexed responses
+	 * @param maxAge how long a response is returned at most, also when it was added
+	 * with a later expiration time
+	 * @param clock clock for checking the expiration time
+	 */
+	public DsSpatialIndex(double cellDegrees, int maxEntries, Duration maxAge,
+			Clock clock) {
+		if (cellDegrees <= 0 || cellDegrees > 180) {
+			throw new IllegalArgumentException("cellDegrees must be in (0, 180]");
+		}
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be greater than 0");
+		}
+		this.cellDegrees = cellDegrees;
+		this.lonCells = (int) Math.ceil(360 / cellDegrees);
+		this.maxEntries = maxEntries;
+		this.maxAgeMillis = maxAge.toMillis();
+		this.clock = clock;
+		this.cells = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Adds a response or replaces the response of the same variant and location.
+	 *
+	 * @param variant the request parameters except the location
+	 * @param response the response
+	 * @param expiresAt epoch milliseconds after which the response is not returned
+	 * anymore
+	 */
+	public void put(String variant, DsResponse response, long expiresAt) {
+		put(null, variant, response, expiresAt);
+	}
+
+	/**
+	 * Adds a response or replaces the response of the same variant and location. The
+	 * response can be removed with {@link #invalidate(String)}.
+	 *
+	 * @param key the key of the request, for example the key of the response in a
+	 * {@link ch.rasc.darksky.cache.DsResponseCache}
+	 * @param variant the request parameters except the location
+	 * @param response the response
+	 * @param expiresAt epoch milliseconds after which the response is not returned
+	 * anymore
+	 */
+	public synchronized void put(@Nullable String key, String variant,
+			DsResponse response, long expiresAt) {
+		long now = this.clock.millis();
+		long maxExpiresAt = now + this.maxAgeMillis;
+		if (maxExpiresAt < now) {
+			maxExpiresAt = Long.MAX_VALUE;
+		}
+		expiresAt = Math.min(expiresAt, maxExpiresAt);
+
+		double latitude = response.latitude().doubleValue();
+		double longitude = response.longitude().doubleValue();
+		Cell cellKey = cell(variant, latitude, longitude);
+		String location = location(response.latitude(), response.longitude());
+
+		Map<String, Entry> cell = this.cells.get(cellKey);
+		if (cell != null) {
+			for (Entry entry : cell.values().toArray(new Entry[0])) {
+				if (entry.expiresAt <= now || entry.location.equals(location)) {
+					remove(entry);
+				}
+			}
+		}
+		if (key != null) {
+			Entry previous = this.keys.get(key);
+			if (previous != null) {
+				remove(previous);
+			}
+		}
+		if (expiresAt <= now) {
+			return;
+		}
+		if (this.entries.size() >= this.maxEntries) {
+			evict(now);
+		}
+
+		Entry entry = new Entry(cellKey, location, key, response, latitude, longitude,
+				expiresAt);
+		this.cells.computeIfAbsent(cellKey, k -> new ConcurrentHashMap<>())
+				.put(location, entry);
+		this.entries.add(entry);
+		if (key != null) {
+			this.keys.put(key, entry);
+		}
+	}
+
+	/**
+	 * Returns the fresh response of the variant closest to the coordinate, or null if
+	 * there is no fresh response within <code>maxDistanceKm</code>.
+	 */
+	@Nullable
+	public DsResponse nearest(String variant, double latitude, double longitude,
+			double maxDistanceKm) {
+		int latCell = latCell(latitude);
+		int lonCell = lonCell(longitude);
+		int latRange = (int) Math
+				.ceil(maxDistanceKm / (KM_PER_DEGREE * this.cellDegrees));
+		double maxLat = Math.min(90,
+				Math.abs(latitude) + maxDistanceKm / KM_PER_DEGREE);
+		double cos = Math.cos(Math.toRadians(maxLat));
+		int lonRange = cos < 1e-6 ? this.lonCells
+				: (int) Math.ceil(
+						maxDistanceKm / (KM_PER_DEGREE * this.cellDegrees * cos));
+		lonRange = Math.min(lonRange, this.lonCells / 2);
+
+		long now = this.clock.millis();
+		DsResponse nearest = null;
+		double nearestDistance = maxDistanceKm;
+		for (int lat = latCell - latRange; lat <= latCell + latRange; lat++) {
+			for (int lon = lonCell - lonRange; lon <= lonCell + lonRange; lon++) {
+				Map<String, Entry> cell = this.cells.get(
+						new Cell(variant, lat, Math.floorMod(lon, this.lonCells)));
+				if (cell == null) {
+					continue;
+				}
+				for (Entry entry : cell.values()) {
+					if (entry.expiresAt <= now) {
+						continue;
+					}
+					double distance = distanceKm(latitude, longitude, entry.latitude,
+							entry.longitude);
+					if (distance <= nearestDistance) {
+						nearest = entry.response;
+						nearestDistance = distance;
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Removes the response of the variant at the location of the response.
+	 */
+	public synchronized void remove(String variant, DsResponse response) {
+		Map<String, Entry> cell = this.cells.get(cell(variant,
+				response.latitude().doubleValue(), response.longitude().doubleValue()));
+		if (cell != null) {
+			Entry entry = cell.get(location(response.latitude(), response.longitude()));
+			if (entry != null) {
+				remove(entry);
+			}
+		}
+	}
+
+	/**
+	 * Removes the response that was added with the key.
+	 *
+	 * @see #put(String, String, DsResponse, long)
+	 */
+	public synchronized void invalidate(String key) {
+		Entry entry = this.keys.get(key);
+		if (entry != null) {
+			remove(entry);
+		}
+	}
+
+	/**
+	 * Removes all responses.
+	 */
+	public synchronized void invalidateAll() {
+		this.cells.clear();
+		this.entries.clear();
+		this.keys.clear();
+	}
+
+	/**
+	 * The number of indexed responses, including expired responses that are not yet
+	 * removed.
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Removes expired entries among the oldest entries and the oldest entry if none
+	 * expired. Called with the lock held.
+	 */
+	private void evict(long now) {
+		int scanned = 0;
+		for (Iterator<Entry> it = this.entries.iterator(); it.hasNext()
+				&& scanned < EVICTION_SCAN; scanned++) {
+			Entry entry = it.next();
+			if (entry.expiresAt <= now) {
+				it.remove();
+				unlink(entry);
+			}
+		}
+		if (this.entries.size() >= this.maxEntries) {
+			Iterator<Entry> it = this.entries.iterator();
+			Entry eldest = it.next();
+			it.remove();
+			unlink(eldest);
+		}
+	}
+
+	/**
+	 * Called with the lock held.
+	 */
+	private void remove(Entry entry) {
+		this.entries.remove(entry);
+		unlink(entry);
+	}
+
+	/**
+	 * Removes the entry from its cell and the key map, and removes the cell when it is
+	 * empty. Called with the lock held.
+	 */
+	private void unlink(Entry entry) {
+		Map<String, Entry> cell = this.cells.get(entry.cell);
+		if (cell != null && cell.remove(entry.location, entry) && cell.isEmpty()) {
+			this.cells.remove(entry.cell, cell);
+		}
+		if (entry.key != null) {
+			this.keys.remove(entry.key, entry);
+		}
+	}
+
+	/**
+	 * Great-circle distance between two coordinates (haversine formula).
+	 */
+	public static double distanceKm(double latitude1, double longitude1,
+			double latitude2, double longitude2) {
+		double dLat = Math.toRadians(latitude2 - latitude1);
+		double dLon = Math.toRadians(longitude2 - longitude1);
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+				+ Math.cos(Math.toRadians(latitude1))
+						* Math.cos(Math.toRadians(latitude2)) * Math.sin(dLon / 2)
+						* Math.sin(dLon / 2);
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+
+	private Cell cell(String variant, double latitude, double longitude) {
+		return new Cell(variant, latCell(latitude), lonCell(longitude));
+	}
+
+	private int latCell(double latitude) {
+		return (int) Math.floor((latitude + 90) / this.cellDegrees);
+	}
+
+	private int lonCell(double longitude) {
+		return Math.floorMod((int) Math.floor((longitude + 180) / this.cellDegrees),
+				this.lonCells);
+	}
+
+	private static String location(BigDecimal latitude, BigDecimal longitude) {
+		return latitude.stripTrailingZeros().toPlainString() + ","
+				+ longitude.stripTrailingZeros().toPlainString();
+	}
+
+	private static final class Cell {
+		private final String variant;
+
+		private final int lat;
+
+		private final int lon;
+
+		Cell(String variant, int lat, int lon) {
+			this.variant = variant;
+			this.lat = lat;
+			this.lon = lon;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Cell)) {
+				return false;
+			}
+			Cell other = (Cell) obj;
+			return this.lat == other.lat && this.lon == other.lon
+					&& this.variant.equals(other.variant);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.variant, this.lat, this.lon);
+		}
+	}
+
+	private static final class Entry {
+		final Cell cell;
+
+		final String location;
+
+		@Nullable
+		final String key;
+
+		final DsResponse response;
+
+		final double latitude;
+
+		final double longitude;
+
+		final long expiresAt;
+
+		Entry(Cell cell, String location, @Nullable String key, DsResponse response,
+				double latitude, double longitude, long expiresAt) {
+			this.cell = cell;
+			this.location = location;
+			this.key = key;
+			this.response = response;
+			this.latitude = latitude;
+			this.longitude = longitude;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.geo;
+
+/**
+ * Replaces coordinates with the center of their geohash cell.
+ */
+final class GeohashQuantizer implements DsCoordinateQuantizer {
+
+	private final int precision;
+
+	GeohashQuantizer(int precision) {
+		if (precision < 1 || precision > DsGeohash.MAX_PRECISION) {
+			throw new IllegalArgumentException(
+					"precision must be between 1 and " + DsGeohash.MAX_PRECISION);
+		}
+		this.precision = precision;
+	}
+
+	@Override
+	public DsCoordinate quantize(DsCoordinate coordinate) {
+		String hash = DsGeohash.encode(Double.parseDouble(coordinate.latitude()),
+				Double.parseDouble(coordinate.longitude()), this.precision);
+		return DsGeohash.center(hash);
+	}
+
+}
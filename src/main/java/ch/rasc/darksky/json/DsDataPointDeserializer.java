@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.json;
+
+import java.io.IOException;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsDoubleDataPoint;
+import ch.rasc.darksky.model.DsIcon;
+import ch.rasc.darksky.model.DsPrecipType;
+
+/**
+ * Reads a data point object token by token into a {@link DsDoubleDataPoint}.
+ */
+class DsDataPointDeserializer extends StdDeserializer<DsDataPoint> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Indexed by the field ordinal, false for fields that are skipped.
+	 */
+	private final boolean[] projection;
+
+	DsDataPointDeserializer(Set<DsDataPointField> fields) {
+		super(DsDataPoint.class);
+		this.projection = new boolean[DsDataPointField.values().length];
+		for (DsDataPointField field : fields) {
+			this.projection[field.ordinal()] = true;
+		}
+	}
+
+	@Override
+	public DsDataPoint deserialize(JsonParser jp, DeserializationContext ctxt)
+			throws IOException {
+		JsonToken token = jp.currentToken();
+		if (token == JsonToken.START_OBJECT) {
+			token = jp.nextToken();
+		}
+		else if (token != JsonToken.FIELD_NAME) {
+			return (DsDataPoint) ctxt.handleUnexpectedToken(DsDataPoint.class, jp);
+		}
+
+		DsDoubleDataPoint.Builder builder = DsDoubleDataPoint.builder();
+		for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+			DsDataPointField field = DsDataPointField.findByJsonName(jp.getCurrentName());
+			JsonToken value = jp.nextToken();
+			if (field == null || value == JsonToken.VALUE_NULL
+					|| !this.projection[field.ordinal()]) {
+				jp.skipChildren();
+				continue;
+			}
+
+			switch (field.getType()) {
+			case ICON:
+				builder.icon(DsIcon.findByJsonValue(jp.getTextCharacters(),
+						jp.getTextOffset(), jp.getTextLength()));
+				break;
+			case PRECIP_TYPE:
+				builder.precipType(DsPrecipType.findByJsonValue(
+						jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength()));
+				break;
+			case STRING:
+				builder.summary(jp.getText());
+				break;
+			default:
+				if (field == DsDataPointField.TIME) {
+					builder.time(jp.getValueAsLong());
+				}
+				else {
+					builder.value(field, jp.getValueAsDouble(Double.NaN));
+				}
+				break;
+			}
+		}
+
+		try {
+			return builder.build();
+		}
+		catch (IllegalStateException e) {
+			return (DsDataPoint) ctxt.handleInstantiationProblem(DsDataPoint.class, null,
+					e);
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.PropertyName;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBuilder;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsDataPointField;
+
+/**
+ * Jackson module that configures how {@link DsDataPoint} objects are deserialized.
+ *
+ * <pre>
+ * ObjectMapper mapper = new ObjectMapper();
+ * mapper.registerModule(new DsDataPointModule(DsNumberMode.DOUBLE));
+ * JsonConverter converter = new JacksonJsonConverter(mapper);
+ * </pre>
+ * <p>
+ * With a projection only the given properties are read, the values of all other
+ * properties are skipped without being parsed. {@link DsDataPointField#TIME} is always
+ * read.
+ */
+public class DsDataPointModule extends SimpleModule {
+
+	private static final long serialVersionUID = 1L;
+
+	private final DsNumberMode numberMode;
+
+	private final Set<DsDataPointField> fields;
+
+	public DsDataPointModule(DsNumberMode numberMode) {
+		this(numberMode, EnumSet.allOf(DsDataPointField.class));
+	}
+
+	/**
+	 * @param numberMode how the numeric properties are stored
+	 * @param fields the properties that are read, all other properties of the data
+	 * points are <code>null</code>
+	 */
+	public DsDataPointModule(DsNumberMode numberMode, Set<DsDataPointField> fields) {
+		super(DsDataPointModule.class.getSimpleName());
+		this.numberMode = numberMode;
+		EnumSet<DsDataPointField> projection = EnumSet.of(DsDataPointField.TIME);
+		projection.addAll(fields);
+		this.fields = Collections.unmodifiableSet(projection);
+	}
+
+	@Override
+	public void setupModule(SetupContext context) {
+		super.setupModule(context);
+
+		if (this.numberMode == DsNumberMode.DOUBLE) {
+			DsDataPointDeserializer deserializer = new DsDataPointDeserializer(
+					this.fields);
+			context.addDeserializers(new Deserializers.Base() {
+				@Override
+				public JsonDeserializer<?> findBeanDeserializer(JavaType type,
+						DeserializationConfig config, BeanDescription beanDesc) {
+					// DsDataPoint and the ImmutableDsDataPoint from @JsonDeserialize(as)
+					if (DsDataPoint.class.isAssignableFrom(type.getRawClass())) {
+						return deserializer;
+					}
+					return null;
+				}
+			});
+		}
+		else if (this.fields.size() < DsDataPointField.values().length) {
+			context.addBeanDeserializerModifier(new ProjectionModifier(this.fields));
+		}
+	}
+
+	/**
+	 * Removes the properties that are not part of the projection from the bean
+	 * deserializer of the data points. Jackson skips the values of ignored properties.
+	 */
+	private static final class ProjectionModifier extends BeanDeserializerModifier {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Set<DsDataPointField> fields;
+
+		ProjectionModifier(Set<DsDataPointField> fields) {
+			this.fields = fields;
+		}
+
+		@Override
+		public BeanDeserializerBuilder updateBuilder(DeserializationConfig config,
+				BeanDescription beanDesc, BeanDeserializerBuilder builder) {
+			// ImmutableDsDataPoint.Json, the delegate of ImmutableDsDataPoint
+			if (!DsDataPoint.class.isAssignableFrom(beanDesc.getBeanClass())) {
+				return builder;
+			}
+
+			List<String> ignored = new ArrayList<>();
+			for (Iterator<SettableBeanProperty> it = builder.getProperties(); it
+					.hasNext();) {
+				String name = it.next().getName();
+				DsDataPointField field = DsDataPointField.findByJsonName(name);
+				if (field != null && !this.fields.contains(field)) {
+					ignored.add(name);
+				}
+			}
+			for (String name : ignored) {
+				builder.removeProperty(new PropertyName(name));
+				builder.addIgnorable(name);
+			}
+			return builder;
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.json;
+
+/**
+ * How the numeric properties of a {@link ch.rasc.darksky.model.DsDataPoint} are stored.
+ */
+public enum DsNumberMode {
+
+	/**
+	 * Exact decimal values in {@link ch.rasc.darksky.model.ImmutableDsDataPoint}
+	 * (default)
+	 */
+	BIG_DECIMAL,
+
+	/**
+	 * Primitive double values in {@link ch.rasc.darksky.model.DsDoubleDataPoint}. Needs
+	 * less heap and is faster to parse, but the values are not exact decimals.
+	 */
+	DOUBLE
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.json;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * Bounded table that maps equal strings to one shared instance. Decoders use it for
+ * values that repeat across many responses, like the timezone, the flag sources and
+ * the summaries, so cached responses do not retain a copy per response.
+ * <p>
+ * The table is a fixed size array indexed by the hash of the string. A new string
+ * replaces the string in its slot, the table never grows and never blocks. Strings
+ * longer than the maximum length are returned unchanged. Instances are thread-safe
+ * and can be shared between converters.
+ */
+public final class DsStringTable {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	public static final int DEFAULT_MAX_LENGTH = 128;
+
+	private final AtomicReferenceArray<String> table;
+
+	private final int mask;
+
+	private final int maxLength;
+
+	public DsStringTable() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * @param capacity number of slots, rounded up to the next power of two
+	 * @param maxLength strings with more characters are not added to the table
+	 */
+	public DsStringTable(int capacity, int maxLength) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.table = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Returns the instance in the table that is equal to the value, or adds the value
+	 * to the table and returns it.
+	 */
+	@Nullable
+	public String canonicalize(@Nullable String value) {
+		if (value == null || value.length() > this.maxLength) {
+			return value;
+		}
+		int index = index(value.hashCode());
+		String existing = this.table.get(index);
+		if (value.equals(existing)) {
+			return existing;
+		}
+		this.table.lazySet(index, value);
+		return value;
+	}
+
+	/**
+	 * Like {@link #canonicalize(String)} for a string given as characters. Does not
+	 * create a String if the table already contains the value.
+	 */
+	public String canonicalize(char[] chars, int offset, int length) {
+		if (length > this.maxLength) {
+			return new String(chars, offset, length);
+		}
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + chars[offset + i];
+		}
+		int index = index(hash);
+		String existing = this.table.get(index);
+		if (existing != null && matches(existing, chars, offset, length)) {
+			return existing;
+		}
+		String value = new String(chars, offset, length);
+		this.table.lazySet(index, value);
+		return value;
+	}
+
+	/**
+	 * The number of slots
+	 */
+	public int capacity() {
+		return this.table.length();
+	}
+
+	/**
+	 * Removes all strings from the table.
+	 */
+	public void clear() {
+		for (int i = 0; i < this.table.length(); i++) {
+			this.table.set(i, null);
+		}
+	}
+
+	private int index(int hash) {
+		return (hash ^ hash >>> 16) & this.mask;
+	}
+
+	private static boolean matches(String value, char[] chars, int offset, int length) {
+		if (value.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (value.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
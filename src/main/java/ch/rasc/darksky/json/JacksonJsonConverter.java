@@ -16,9 +16,13 @@
 package ch.rasc.darksky.json;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import ch.rasc.darksky.model.DsDataPointField;
 import ch.rasc.darksky.model.DsResponse;
 
 public class JacksonJsonConverter implements JsonConverter {
@@ -29,6 +33,24 @@ public class JacksonJsonConverter implements JsonConverter {
 		this(new ObjectMapper());
 	}
 
+	/**
+	 * Creates a converter that stores the numeric properties of the data points as
+	 * {@link DsNumberMode#BIG_DECIMAL} or {@link DsNumberMode#DOUBLE}.
+	 */
+	public JacksonJsonConverter(DsNumberMode numberMode) {
+		this(new ObjectMapper().registerModule(new DsDataPointModule(numberMode)));
+	}
+
+	/**
+	 * Creates a converter that only reads the given properties of the data points. The
+	 * values of all other properties are skipped without being parsed and are
+	 * <code>null</code>. {@link DsDataPointField#TIME} is always read.
+	 */
+	public JacksonJsonConverter(DsNumberMode numberMode, Set<DsDataPointField> fields) {
+		this(new ObjectMapper()
+				.registerModule(new DsDataPointModule(numberMode, fields)));
+	}
+
 	public JacksonJsonConverter(ObjectMapper objectMapper) {
 		this.objectMapper = objectMapper;
 	}
@@ -38,4 +60,13 @@ public class JacksonJsonConverter implements JsonConverter {
 		return this.objectMapper.readValue(json, DsResponse.class);
 	}
 
+	@Override
+	public DsResponse deserialize(InputStream json) throws IOException {
+		try (JsonParser jp = this.objectMapper.getFactory().createParser(json)) {
+			// the caller closes the stream
+			jp.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+			return this.objectMapper.readValue(jp, DsResponse.class);
+		}
+	}
+
 }
@@ -15,10 +15,31 @@
  */
 package ch.rasc.darksky.json;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import ch.rasc.darksky.model.DsResponse;
 
 public interface JsonConverter {
 	DsResponse deserialize(String json) throws IOException;
+
+	/**
+	 * Deserializes the UTF-8 encoded JSON from the stream. The caller is responsible for
+	 * closing the stream, implementations must not close it.
+	 * <p>
+	 * The default implementation reads the whole stream into a String and calls
+	 * {@link #deserialize(String)}. Implementations should override this method and
+	 * parse directly from the stream.
+	 */
+	default DsResponse deserialize(InputStream json) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = json.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return deserialize(new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
 }
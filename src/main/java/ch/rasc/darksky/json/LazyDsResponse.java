@@ -0,0 +1,211 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import ch.rasc.darksky.model.DsAlert;
+import ch.rasc.darksky.model.DsDataBlock;
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsFlag;
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * {@link DsResponse} created by the {@link LazyJsonConverter}.
+ */
+final class LazyDsResponse implements DsResponse {
+
+	private final BigDecimal latitude;
+
+	private final BigDecimal longitude;
+
+	private final String timezone;
+
+	private final int offset;
+
+	@Nullable
+	private final Part<DsDataPoint> currently;
+
+	@Nullable
+	private final Part<DsDataBlock> minutely;
+
+	@Nullable
+	private final Part<DsDataBlock> hourly;
+
+	@Nullable
+	private final Part<DsDataBlock> daily;
+
+	@Nullable
+	private final Part<List<DsAlert>> alerts;
+
+	@Nullable
+	private final Part<DsFlag> flags;
+
+	private LazyDsResponse(Builder builder) {
+		this.latitude = builder.latitude;
+		this.longitude = builder.longitude;
+		this.timezone = builder.timezone;
+		this.offset = builder.offset;
+		this.currently = builder.currently;
+		this.minutely = builder.minutely;
+		this.hourly = builder.hourly;
+		this.daily = builder.daily;
+		this.alerts = builder.alerts;
+		this.flags = builder.flags;
+	}
+
+	@Override
+	public BigDecimal latitude() {
+		return this.latitude;
+	}
+
+	@Override
+	public BigDecimal longitude() {
+		return this.longitude;
+	}
+
+	@Override
+	public String timezone() {
+		return this.timezone;
+	}
+
+	@Override
+	@Deprecated
+	public int offset() {
+		return this.offset;
+	}
+
+	@Override
+	@Nullable
+	public DsDataPoint currently() {
+		return this.currently != null ? this.currently.get() : null;
+	}
+
+	@Override
+	@Nullable
+	public DsDataBlock minutely() {
+		return this.minutely != null ? this.minutely.get() : null;
+	}
+
+	@Override
+	@Nullable
+	public DsDataBlock hourly() {
+		return this.hourly != null ? this.hourly.get() : null;
+	}
+
+	@Override
+	@Nullable
+	public DsDataBlock daily() {
+		return this.daily != null ? this.daily.get() : null;
+	}
+
+	@Override
+	public List<DsAlert> alerts() {
+		return this.alerts != null ? this.alerts.get() : Collections.emptyList();
+	}
+
+	@Override
+	@Nullable
+	public DsFlag flags() {
+		return this.flags != null ? this.flags.get() : null;
+	}
+
+	@Override
+	public String toString() {
+		return "LazyDsResponse{latitude=" + this.latitude + ", longitude="
+				+ this.longitude + ", timezone=" + this.timezone + "}";
+	}
+
+	/**
+	 * A nested object of the payload, deserialized on first access.
+	 */
+	static final class Part<T> {
+		private final ObjectReader reader;
+
+		private final int offset;
+
+		private final int length;
+
+		@Nullable
+		private byte[] json;
+
+		@Nullable
+		private volatile T value;
+
+		Part(ObjectReader reader, byte[] json, int offset, int length) {
+			this.reader = reader;
+			this.json = json;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		T get() {
+			T result = this.value;
+			if (result == null) {
+				synchronized (this) {
+					result = this.value;
+					if (result == null) {
+						try {
+							result = this.reader.readValue(this.json, this.offset,
+									this.length);
+						}
+						catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+						this.value = result;
+						this.json = null;
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	static final class Builder {
+		BigDecimal latitude;
+
+		BigDecimal longitude;
+
+		String timezone;
+
+		int offset;
+
+		Part<DsDataPoint> currently;
+
+		Part<DsDataBlock> minutely;
+
+		Part<DsDataBlock> hourly;
+
+		Part<DsDataBlock> daily;
+
+		Part<List<DsAlert>> alerts;
+
+		Part<DsFlag> flags;
+
+		LazyDsResponse build() {
+			return new LazyDsResponse(this);
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import ch.rasc.darksky.model.DsAlert;
+import ch.rasc.darksky.model.DsDataBlock;
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsFlag;
+import ch.rasc.darksky.model.DsResponse;
+
+/**
+ * Converter that returns a {@link DsResponse} whose data points, data blocks, alerts and
+ * flags are deserialized when their accessor is called for the first time.
+ * <p>
+ * The converter reads the top level properties and skips over the nested objects,
+ * remembering where each of them starts and ends in the payload. Applications that only
+ * read {@link DsResponse#currently()} never create the data points of the minutely,
+ * hourly and daily blocks.
+ * <p>
+ * The response keeps a reference to the payload until every part is deserialized. An
+ * accessor throws an
+ * {@link java.io.UncheckedIOException} if its part of the payload can not be
+ * deserialized. Lazy responses are equal to each other only if they are the same
+ * instance.
+ */
+public class LazyJsonConverter implements JsonConverter {
+
+	private final ObjectReader dataPointReader;
+
+	private final ObjectReader dataBlockReader;
+
+	private final ObjectReader alertsReader;
+
+	private final ObjectReader flagsReader;
+
+	private final ObjectMapper objectMapper;
+
+	public LazyJsonConverter() {
+		this(new ObjectMapper());
+	}
+
+	/**
+	 * Creates a converter that stores the numeric properties of the data points as
+	 * {@link DsNumberMode#BIG_DECIMAL} or {@link DsNumberMode#DOUBLE}.
+	 */
+	public LazyJsonConverter(DsNumberMode numberMode) {
+		this(new ObjectMapper().registerModule(new DsDataPointModule(numberMode)));
+	}
+
+	/**
+	 * Creates a converter that only reads the given properties of the data points. The
+	 * values of all other properties are skipped without being parsed and are
+	 * <code>null</code>. {@link DsDataPointField#TIME} is always read.
+	 */
+	public LazyJsonConverter(DsNumberMode numberMode, Set<DsDataPointField> fields) {
+		this(new ObjectMapper()
+				.registerModule(new DsDataPointModule(numberMode, fields)));
+	}
+
+	public LazyJsonConverter(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		this.dataPointReader = objectMapper.readerFor(DsDataPoint.class);
+		this.dataBlockReader = objectMapper.readerFor(DsDataBlock.class);
+		this.alertsReader = objectMapper.readerFor(new TypeReference<List<DsAlert>>() {
+			// type token
+		});
+		this.flagsReader = objectMapper.readerFor(DsFlag.class);
+	}
+
+	@Override
+	public DsResponse deserialize(String json) throws IOException {
+		return deserialize(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public DsResponse deserialize(InputStream json) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = json.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return deserialize(out.toByteArray());
+	}
+
+	/**
+	 * Deserializes the top level properties of the UTF-8 encoded JSON. The array must
+	 * not be modified afterwards, the response decodes its blocks from it.
+	 */
+	public DsResponse deserialize(byte[] json) throws IOException {
+		LazyDsResponse.Builder builder = new LazyDsResponse.Builder();
+		try (JsonParser jp = this.objectMapper.getFactory().createParser(json)) {
+			if (jp.nextToken() != JsonToken.START_OBJECT) {
+				throw JsonMappingException.from(jp, "Expected a JSON object");
+			}
+			while (jp.nextToken() == JsonToken.FIELD_NAME) {
+				String name = jp.getCurrentName();
+				JsonToken value = jp.nextToken();
+				if (value == JsonToken.VALUE_NULL) {
+					continue;
+				}
+				switch (name) {
+				case "latitude":
+					builder.latitude = decimal(jp);
+					break;
+				case "longitude":
+					builder.longitude = decimal(jp);
+					break;
+				case "timezone":
+					builder.timezone = jp.getText();
+					break;
+				case "offset":
+					builder.offset = jp.getValueAsInt();
+					break;
+				case "currently":
+					builder.currently = skip(jp, this.dataPointReader, json);
+					break;
+				case "minutely":
+					builder.minutely = skip(jp, this.dataBlockReader, json);
+					break;
+				case "hourly":
+					builder.hourly = skip(jp, this.dataBlockReader, json);
+					break;
+				case "daily":
+					builder.daily = skip(jp, this.dataBlockReader, json);
+					break;
+				case "alerts":
+					builder.alerts = skip(jp, this.alertsReader, json);
+					break;
+				case "flags":
+					builder.flags = skip(jp, this.flagsReader, json);
+					break;
+				default:
+					jp.skipChildren();
+					break;
+				}
+			}
+		}
+
+		if (builder.latitude == null || builder.longitude == null
+				|| builder.timezone == null) {
+			throw new JsonMappingException(null,
+					"Missing required property latitude, longitude or timezone");
+		}
+		return builder.build();
+	}
+
+	private static BigDecimal decimal(JsonParser jp) throws IOException {
+		if (jp.currentToken() == JsonToken.VALUE_STRING) {
+			return new BigDecimal(jp.getText());
+		}
+		return jp.getDecimalValue();
+	}
+
+	/**
+	 * Skips over an object or array and returns the part of the payload that contains
+	 * it.
+	 */
+	private static <T> LazyDsResponse.Part<T> skip(JsonParser jp, ObjectReader reader,
+			byte[] json) throws IOException {
+		int start = (int) jp.getTokenLocation().getByteOffset();
+		jp.skipChildren();
+		int end = (int) jp.getCurrentLocation().getByteOffset();
+		return new LazyDsResponse.Part<>(reader, json, start, end - start);
+	}
+
+}
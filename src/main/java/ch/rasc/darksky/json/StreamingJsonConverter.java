@@ -0,0 +1,514 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import ch.rasc.darksky.model.DsAlert;
+import ch.rasc.darksky.model.DsAlertSeverity;
+import ch.rasc.darksky.model.DsDataBlock;
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsDoubleDataPoint;
+import ch.rasc.darksky.model.DsFlag;
+import ch.rasc.darksky.model.DsIcon;
+import ch.rasc.darksky.model.DsPrecipType;
+import ch.rasc.darksky.model.DsResponse;
+import ch.rasc.darksky.model.DsUnit;
+import ch.rasc.darksky.model.ImmutableDsAlert;
+import ch.rasc.darksky.model.ImmutableDsDataBlock;
+import ch.rasc.darksky.model.ImmutableDsDataPoint;
+import ch.rasc.darksky.model.ImmutableDsFlag;
+import ch.rasc.darksky.model.ImmutableDsResponse;
+
+/**
+ * Converter that reads the response token by token with a {@link JsonParser} and fills
+ * the Immutables builders directly, without Jackson databind and reflection. Creates
+ * the same objects as {@link JacksonJsonConverter}.
+ * <p>
+ * Supports {@link DsNumberMode} and field projections like {@link DsDataPointModule}.
+ * Unknown properties are skipped.
+ */
+public class StreamingJsonConverter implements JsonConverter {
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	private final DsNumberMode numberMode;
+
+	/**
+	 * Indexed by the field ordinal, false for fields that are skipped.
+	 */
+	private final boolean[] projection;
+
+	@Nullable
+	private final DsStringTable stringTable;
+
+	public StreamingJsonConverter() {
+		this(DsNumberMode.BIG_DECIMAL);
+	}
+
+	public StreamingJsonConverter(DsNumberMode numberMode) {
+		this(numberMode, EnumSet.allOf(DsDataPointField.class));
+	}
+
+	/**
+	 * Creates a converter that only reads the given properties of the data points.
+	 *
+	 * @see JacksonJsonConverter#JacksonJsonConverter(DsNumberMode, Set)
+	 */
+	public StreamingJsonConverter(DsNumberMode numberMode,
+			Set<DsDataPointField> fields) {
+		this(numberMode, fields, null);
+	}
+
+	/**
+	 * Creates a converter that shares the instances of the timezone, summary, flag
+	 * source, alert title and region strings through the table.
+	 */
+	public StreamingJsonConverter(DsNumberMode numberMode, Set<DsDataPointField> fields,
+			@Nullable DsStringTable stringTable) {
+		this.numberMode = numberMode;
+		this.stringTable = stringTable;
+		this.projection = new boolean[DsDataPointField.values().length];
+		this.projection[DsDataPointField.TIME.ordinal()] = true;
+		for (DsDataPointField field : fields) {
+			this.projection[field.ordinal()] = true;
+		}
+	}
+
+	@Override
+	public DsResponse deserialize(String json) throws IOException {
+		try (JsonParser jp = this.jsonFactory.createParser(json)) {
+			return read(jp);
+		}
+	}
+
+	@Override
+	public DsResponse deserialize(InputStream json) throws IOException {
+		try (JsonParser jp = this.jsonFactory.createParser(json)) {
+			// the caller closes the stream
+			jp.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+			return read(jp);
+		}
+	}
+
+	private DsResponse read(JsonParser jp) throws IOException {
+		jp.nextToken();
+		DsResponse response = readResponse(jp);
+		if (response == null) {
+			throw new JsonParseException(jp, "Expected a JSON object");
+		}
+		return response;
+	}
+
+	@SuppressWarnings("deprecation")
+	@Nullable
+	private DsResponse readResponse(JsonParser jp) throws IOException {
+		if (!startObject(jp)) {
+			return null;
+		}
+		ImmutableDsResponse.Builder builder = ImmutableDsResponse.builder();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String name = jp.getCurrentName();
+			if (jp.nextToken() == JsonToken.VALUE_NULL) {
+				continue;
+			}
+			switch (name) {
+			case "latitude":
+				builder.latitude(decimal(jp));
+				break;
+			case "longitude":
+				builder.longitude(decimal(jp));
+				break;
+			case "timezone":
+				builder.timezone(text(jp));
+				break;
+			case "offset":
+				builder.offset(jp.getValueAsInt());
+				break;
+			case "currently":
+				builder.currently(readDataPoint(jp));
+				break;
+			case "minutely":
+				builder.minutely(readDataBlock(jp));
+				break;
+			case "hourly":
+				builder.hourly(readDataBlock(jp));
+				break;
+			case "daily":
+				builder.daily(readDataBlock(jp));
+				break;
+			case "alerts":
+				builder.alerts(readAlerts(jp));
+				break;
+			case "flags":
+				builder.flags(readFlag(jp));
+				break;
+			default:
+				jp.skipChildren();
+				break;
+			}
+		}
+		return build(jp, builder::build);
+	}
+
+	@Nullable
+	private DsDataBlock readDataBlock(JsonParser jp) throws IOException {
+		if (!startObject(jp)) {
+			return null;
+		}
+		ImmutableDsDataBlock.Builder builder = ImmutableDsDataBlock.builder();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String name = jp.getCurrentName();
+			if (jp.nextToken() == JsonToken.VALUE_NULL) {
+				continue;
+			}
+			switch (name) {
+			case "summary":
+				builder.summary(text(jp));
+				break;
+			case "icon":
+				builder.icon(icon(jp));
+				break;
+			case "data":
+				if (jp.currentToken() != JsonToken.START_ARRAY) {
+					throw new JsonParseException(jp, "Expected an array");
+				}
+				while (jp.nextToken() != JsonToken.END_ARRAY) {
+					DsDataPoint dataPoint = readDataPoint(jp);
+					if (dataPoint != null) {
+						builder.addData(dataPoint);
+					}
+				}
+				break;
+			default:
+				jp.skipChildren();
+				break;
+			}
+		}
+		return build(jp, builder::build);
+	}
+
+	@Nullable
+	private DsDataPoint readDataPoint(JsonParser jp) throws IOException {
+		if (!startObject(jp)) {
+			return null;
+		}
+		if (this.numberMode == DsNumberMode.DOUBLE) {
+			return readDoubleDataPoint(jp);
+		}
+
+		ImmutableDsDataPoint.Builder builder = ImmutableDsDataPoint.builder();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			DsDataPointField field = DsDataPointField.findByJsonName(jp.getCurrentName());
+			JsonToken value = jp.nextToken();
+			if (field == null || value == JsonToken.VALUE_NULL
+					|| !this.projection[field.ordinal()]) {
+				jp.skipChildren();
+				continue;
+			}
+
+			switch (field) {
+			case ICON:
+				builder.icon(icon(jp));
+				break;
+			case PRECIP_TYPE:
+				builder.precipType(precipType(jp));
+				break;
+			case SUMMARY:
+				builder.summary(text(jp));
+				break;
+			case TIME:
+				builder.time(jp.getValueAsLong());
+				break;
+			default:
+				setNumber(builder, field, jp);
+				break;
+			}
+		}
+		return build(jp, builder::build);
+	}
+
+	private DsDataPoint readDoubleDataPoint(JsonParser jp) throws IOException {
+		DsDoubleDataPoint.Builder builder = DsDoubleDataPoint.builder();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			DsDataPointField field = DsDataPointField.findByJsonName(jp.getCurrentName());
+			JsonToken value = jp.nextToken();
+			if (field == null || value == JsonToken.VALUE_NULL
+					|| !this.projection[field.ordinal()]) {
+				jp.skipChildren();
+				continue;
+			}
+
+			switch (field) {
+			case ICON:
+				builder.icon(icon(jp));
+				break;
+			case PRECIP_TYPE:
+				builder.precipType(precipType(jp));
+				break;
+			case SUMMARY:
+				builder.summary(text(jp));
+				break;
+			case TIME:
+				builder.time(jp.getValueAsLong());
+				break;
+			default:
+				builder.value(field, jp.getValueAsDouble(Double.NaN));
+				break;
+			}
+		}
+		return build(jp, builder::build);
+	}
+
+	private static void setNumber(ImmutableDsDataPoint.Builder builder,
+			DsDataPointField field, JsonParser jp) throws IOException {
+		switch (field.getType()) {
+		case DECIMAL:
+			field.set(builder, decimal(jp));
+			break;
+		case LONG:
+			field.set(builder, jp.getValueAsLong());
+			break;
+		case INTEGER:
+			field.set(builder, jp.getValueAsInt());
+			break;
+		default:
+			jp.skipChildren();
+			break;
+		}
+	}
+
+	private List<DsAlert> readAlerts(JsonParser jp) throws IOException {
+		if (jp.currentToken() != JsonToken.START_ARRAY) {
+			throw new JsonParseException(jp, "Expected an array");
+		}
+		List<DsAlert> alerts = new ArrayList<>();
+		while (jp.nextToken() != JsonToken.END_ARRAY) {
+			DsAlert alert = readAlert(jp);
+			if (alert != null) {
+				alerts.add(alert);
+			}
+		}
+		return alerts;
+	}
+
+	@Nullable
+	private DsAlert readAlert(JsonParser jp) throws IOException {
+		if (!startObject(jp)) {
+			return null;
+		}
+		ImmutableDsAlert.Builder builder = ImmutableDsAlert.builder();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String name = jp.getCurrentName();
+			if (jp.nextToken() == JsonToken.VALUE_NULL) {
+				continue;
+			}
+			switch (name) {
+			case "description":
+				builder.description(jp.getText());
+				break;
+			case "expires":
+				builder.expires(jp.getValueAsLong());
+				break;
+			case "regions":
+				builder.regions(readStrings(jp));
+				break;
+			case "severity":
+				builder.severity(DsAlertSeverity.findByJsonValue(jp.getTextCharacters(),
+						jp.getTextOffset(), jp.getTextLength()));
+				break;
+			case "time":
+				builder.time(jp.getValueAsLong());
+				break;
+			case "title":
+				builder.title(text(jp));
+				break;
+			case "uri":
+				builder.uri(jp.getText());
+				break;
+			default:
+				jp.skipChildren();
+				break;
+			}
+		}
+		return build(jp, builder::build);
+	}
+
+	@Nullable
+	private DsFlag readFlag(JsonParser jp) throws IOException {
+		if (!startObject(jp)) {
+			return null;
+		}
+		ImmutableDsFlag.Builder builder = ImmutableDsFlag.builder();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String name = jp.getCurrentName();
+			if (jp.nextToken() == JsonToken.VALUE_NULL) {
+				continue;
+			}
+			switch (name) {
+			case "darksky-unavailable":
+				builder.darkskyUnavailable(readAny(jp));
+				break;
+			case "nearest-station":
+				builder.nearestStation(decimal(jp));
+				break;
+			case "sources":
+				builder.sources(readStrings(jp));
+				break;
+			case "units":
+				builder.units(DsUnit.findByJsonValue(jp.getTextCharacters(),
+						jp.getTextOffset(), jp.getTextLength()));
+				break;
+			default:
+				jp.skipChildren();
+				break;
+			}
+		}
+		return build(jp, builder::build);
+	}
+
+	private List<String> readStrings(JsonParser jp) throws IOException {
+		if (jp.currentToken() != JsonToken.START_ARRAY) {
+			throw new JsonParseException(jp, "Expected an array");
+		}
+		List<String> values = new ArrayList<>();
+		while (jp.nextToken() != JsonToken.END_ARRAY) {
+			if (jp.currentToken() != JsonToken.VALUE_NULL) {
+				values.add(text(jp));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Reads a value of unknown type like Jackson reads a property of type Object.
+	 */
+	@Nullable
+	private static Object readAny(JsonParser jp) throws IOException {
+		switch (jp.currentToken()) {
+		case START_OBJECT:
+			Map<String, Object> map = new LinkedHashMap<>();
+			while (jp.nextToken() == JsonToken.FIELD_NAME) {
+				String name = jp.getCurrentName();
+				jp.nextToken();
+				map.put(name, readAny(jp));
+			}
+			return map;
+		case START_ARRAY:
+			List<Object> list = new ArrayList<>();
+			while (jp.nextToken() != JsonToken.END_ARRAY) {
+				list.add(readAny(jp));
+			}
+			return list;
+		case VALUE_STRING:
+			return jp.getText();
+		case VALUE_NUMBER_INT:
+		case VALUE_NUMBER_FLOAT:
+			return jp.getNumberValue();
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if the current token starts an object. Skips other values.
+	 */
+	private static boolean startObject(JsonParser jp) throws IOException {
+		if (jp.currentToken() == JsonToken.START_OBJECT) {
+			return true;
+		}
+		if (jp.currentToken() == null) {
+			throw new JsonParseException(jp, "Unexpected end of input");
+		}
+		jp.skipChildren();
+		return false;
+	}
+
+	private static DsIcon icon(JsonParser jp) throws IOException {
+		if (jp.hasToken(JsonToken.VALUE_STRING)) {
+			return DsIcon.findByJsonValue(jp.getTextCharacters(), jp.getTextOffset(),
+					jp.getTextLength());
+		}
+		return DsIcon.findByJsonValue(jp.getText());
+	}
+
+	private static DsPrecipType precipType(JsonParser jp) throws IOException {
+		if (jp.hasToken(JsonToken.VALUE_STRING)) {
+			return DsPrecipType.findByJsonValue(jp.getTextCharacters(),
+					jp.getTextOffset(), jp.getTextLength());
+		}
+		return DsPrecipType.findByJsonValue(jp.getText());
+	}
+
+	private String text(JsonParser jp) throws IOException {
+		if (this.stringTable == null || !jp.hasToken(JsonToken.VALUE_STRING)) {
+			return jp.getText();
+		}
+		return this.stringTable.canonicalize(jp.getTextCharacters(), jp.getTextOffset(),
+				jp.getTextLength());
+	}
+
+	private static BigDecimal decimal(JsonParser jp) throws IOException {
+		if (jp.hasToken(JsonToken.VALUE_STRING)) {
+			try {
+				return new BigDecimal(jp.getText().trim());
+			}
+			catch (NumberFormatException e) {
+				throw new JsonParseException(jp, "Not a number: " + jp.getText(), e);
+			}
+		}
+		return jp.getDecimalValue();
+	}
+
+	/**
+	 * Builds the object and reports missing required properties as parse errors.
+	 */
+	private static <T> T build(JsonParser jp, Builder<T> builder)
+			throws JsonParseException {
+		try {
+			return builder.build();
+		}
+		catch (IllegalStateException e) {
+			throw new JsonParseException(jp, e.getMessage(), e);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Builder<T> {
+		T build();
+	}
+
+}
@@ -18,6 +18,9 @@ package ch.rasc.darksky.model;
 public enum DsAlertSeverity {
 	ADVISORY("advisory"), WATCH("watch"), WARNING("warning"), UNKNOWN(null);
 
+	private static final JsonValueIndex<DsAlertSeverity> INDEX = new JsonValueIndex<>(
+			values(), DsAlertSeverity::getJsonValue);
+
 	private String jsonValue;
 
 	private DsAlertSeverity(String jsonValue) {
@@ -25,17 +28,20 @@ public enum DsAlertSeverity {
 	}
 
 	public static DsAlertSeverity findByJsonValue(String jsonValue) {
-		for (DsAlertSeverity en : DsAlertSeverity.values()) {
-			if (jsonValue.equals(en.jsonValue)) {
-				return en;
-			}
-		}
-
-		if (jsonValue != null) {
-			return UNKNOWN;
+		if (jsonValue == null) {
+			return null;
 		}
+		DsAlertSeverity value = INDEX.find(jsonValue);
+		return value != null ? value : UNKNOWN;
+	}
 
-		return null;
+	/**
+	 * Same as {@link #findByJsonValue(String)} for a value in a char array. Does not
+	 * allocate.
+	 */
+	public static DsAlertSeverity findByJsonValue(char[] chars, int offset, int length) {
+		DsAlertSeverity value = INDEX.find(chars, offset, length);
+		return value != null ? value : UNKNOWN;
 	}
 
 	public String getJsonValue() {
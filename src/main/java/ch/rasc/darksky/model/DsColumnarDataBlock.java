@@ -0,0 +1,416 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Column oriented copy of a {@link DsDataBlock}. Every numeric property of the data
+ * points is stored in a primitive array, together with a bitmap that records which data
+ * points contain the property.
+ * <p>
+ * Scanning a column (for example the minimum temperature of the next 168 hours) reads
+ * one contiguous array and does not allocate. The arrays returned by the column methods
+ * are not copied and must not be modified.
+ */
+public final class DsColumnarDataBlock {
+
+	private static final DsDataPointField[] FIELDS = DsDataPointField.values();
+
+	private static final double[] EMPTY_COLUMN = new double[0];
+
+	@Nullable
+	private final String summary;
+
+	@Nullable
+	private final DsIcon icon;
+
+	private final int size;
+
+	private final long[] time;
+
+	/**
+	 * Column per field ordinal, null if no data point contains the property.
+	 */
+	private final double[][] columns;
+
+	/**
+	 * Presence bitmap per field ordinal, null if no data point contains the property.
+	 */
+	private final long[][] present;
+
+	@Nullable
+	private final DsIcon[] icons;
+
+	@Nullable
+	private final DsPrecipType[] precipTypes;
+
+	@Nullable
+	private final String[] summaries;
+
+	private DsColumnarDataBlock(Builder builder) {
+		this.summary = builder.summary;
+		this.icon = builder.icon;
+		this.size = builder.size;
+		this.time = builder.time;
+		this.columns = builder.columns;
+		this.present = builder.present;
+		this.icons = builder.icons;
+		this.precipTypes = builder.precipTypes;
+		this.summaries = builder.summaries;
+	}
+
+	/**
+	 * Copies the data points of a block into columns.
+	 */
+	public static DsColumnarDataBlock of(DsDataBlock block) {
+		List<DsDataPoint> data = block.data();
+		Builder builder = builder(data.size()).summary(block.summary())
+				.icon(block.icon());
+
+		for (int i = 0; i < data.size(); i++) {
+			DsDataPoint point = data.get(i);
+			builder.time(i, point.time());
+			for (DsDataPointField field : FIELDS) {
+				if (field.isNumeric() && field != DsDataPointField.TIME) {
+					builder.value(field, i, point.doubleValue(field));
+				}
+			}
+			builder.icon(i, point.icon());
+			builder.precipType(i, point.precipType());
+			builder.summary(i, point.summary());
+		}
+
+		return builder.build();
+	}
+
+	public static Builder builder(int size) {
+		return new Builder(size);
+	}
+
+	/**
+	 * The summary of the block
+	 */
+	@Nullable
+	public String summary() {
+		return this.summary;
+	}
+
+	/**
+	 * The icon of the block
+	 */
+	@Nullable
+	public DsIcon icon() {
+		return this.icon;
+	}
+
+	/**
+	 * The number of data points
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * The {@link DsDataPoint#time()} column
+	 */
+	public long[] time() {
+		return this.time;
+	}
+
+	public long time(int index) {
+		return this.time[index];
+	}
+
+	/**
+	 * Returns a numeric column. Missing values are {@link Double#NaN}. If no data point
+	 * contains the property the returned array is empty.
+	 */
+	public double[] column(DsDataPointField field) {
+		if (field == DsDataPointField.TIME) {
+			throw new IllegalArgumentException("use time() for the TIME column");
+		}
+		double[] column = this.columns[numeric(field).ordinal()];
+		return column != null ? column : EMPTY_COLUMN;
+	}
+
+	/**
+	 * Returns the value of a numeric property or {@link Double#NaN} if the data point
+	 * does not contain the property.
+	 */
+	public double value(DsDataPointField field, int index) {
+		if (field == DsDataPointField.TIME) {
+			return this.time[index];
+		}
+		double[] column = this.columns[numeric(field).ordinal()];
+		return column != null ? column[index] : Double.NaN;
+	}
+
+	/**
+	 * True if the data point at the index contains the property.
+	 */
+	public boolean isPresent(DsDataPointField field, int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException(
+					"Index: " + index + ", Size: " + this.size);
+		}
+		switch (field) {
+		case TIME:
+			return true;
+		case ICON:
+			return this.icons != null && this.icons[index] != null;
+		case PRECIP_TYPE:
+			return this.precipTypes != null && this.precipTypes[index] != null;
+		case SUMMARY:
+			return this.summaries != null && this.summaries[index] != null;
+		default:
+			long[] bits = this.present[field.ordinal()];
+			return bits != null && (bits[index >>> 6] & 1L << index) != 0;
+		}
+	}
+
+	/**
+	 * The number of data points that contain the property.
+	 */
+	public int count(DsDataPointField field) {
+		if (field.isNumeric() && field != DsDataPointField.TIME) {
+			long[] bits = this.present[field.ordinal()];
+			int count = 0;
+			if (bits != null) {
+				for (long word : bits) {
+					count += Long.bitCount(word);
+				}
+			}
+			return count;
+		}
+		int count = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (isPresent(field, i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Nullable
+	public DsIcon icon(int index) {
+		return this.icons != null ? this.icons[index] : null;
+	}
+
+	@Nullable
+	public DsPrecipType precipType(int index) {
+		return this.precipTypes != null ? this.precipTypes[index] : null;
+	}
+
+	@Nullable
+	public String summary(int index) {
+		return this.summaries != null ? this.summaries[index] : null;
+	}
+
+	/**
+	 * The smallest value of a numeric property or {@link Double#NaN} if no data point
+	 * contains the property.
+	 */
+	public double min(DsDataPointField field) {
+		double min = Double.NaN;
+		for (double value : column(field)) {
+			if (value < min || Double.isNaN(min)) {
+				min = value;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * The largest value of a numeric property or {@link Double#NaN} if no data point
+	 * contains the property.
+	 */
+	public double max(DsDataPointField field) {
+		double max = Double.NaN;
+		for (double value : column(field)) {
+			if (value > max || Double.isNaN(max)) {
+				max = value;
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * The arithmetic mean of a numeric property over the data points that contain the
+	 * property or {@link Double#NaN} if no data point contains the property.
+	 */
+	public double mean(DsDataPointField field) {
+		double sum = 0;
+		int count = 0;
+		for (double value : column(field)) {
+			if (!Double.isNaN(value)) {
+				sum += value;
+				count++;
+			}
+		}
+		return count > 0 ? sum / count : Double.NaN;
+	}
+
+	/**
+	 * Creates the data point at the index.
+	 */
+	public DsDoubleDataPoint dataPoint(int index) {
+		DsDoubleDataPoint.Builder builder = DsDoubleDataPoint.builder()
+				.time(this.time[index]);
+		for (DsDataPointField field : FIELDS) {
+			if (field.isNumeric() && field != DsDataPointField.TIME) {
+				double[] column = this.columns[field.ordinal()];
+				if (column != null) {
+					builder.value(field, column[index]);
+				}
+			}
+		}
+		return builder.icon(icon(index)).precipType(precipType(index))
+				.summary(summary(index)).build();
+	}
+
+	/**
+	 * Creates a {@link DsDataBlock} with {@link DsDoubleDataPoint} data points.
+	 */
+	public DsDataBlock toDataBlock() {
+		List<DsDataPoint> data = new ArrayList<>(this.size);
+		for (int i = 0; i < this.size; i++) {
+			data.add(dataPoint(i));
+		}
+		return ImmutableDsDataBlock.builder().summary(this.summary).icon(this.icon)
+				.data(Collections.unmodifiableList(data)).build();
+	}
+
+	private static DsDataPointField numeric(DsDataPointField field) {
+		if (!field.isNumeric()) {
+			throw new IllegalArgumentException(field + " is not numeric");
+		}
+		return field;
+	}
+
+	public static final class Builder {
+		private final int size;
+
+		private final long[] time;
+
+		private final double[][] columns = new double[FIELDS.length][];
+
+		private final long[][] present = new long[FIELDS.length][];
+
+		private String summary;
+
+		private DsIcon icon;
+
+		private DsIcon[] icons;
+
+		private DsPrecipType[] precipTypes;
+
+		private String[] summaries;
+
+		Builder(int size) {
+			this.size = size;
+			this.time = new long[size];
+		}
+
+		/**
+		 * The summary of the block
+		 */
+		public Builder summary(@Nullable String value) {
+			this.summary = value;
+			return this;
+		}
+
+		/**
+		 * The icon of the block
+		 */
+		public Builder icon(@Nullable DsIcon value) {
+			this.icon = value;
+			return this;
+		}
+
+		public Builder time(int index, long value) {
+			this.time[index] = value;
+			return this;
+		}
+
+		/**
+		 * Sets a numeric value. {@link Double#NaN} is a missing value.
+		 */
+		public Builder value(DsDataPointField field, int index, double value) {
+			if (field == DsDataPointField.TIME) {
+				return time(index, (long) value);
+			}
+			if (Double.isNaN(value)) {
+				return this;
+			}
+			int ordinal = numeric(field).ordinal();
+			double[] column = this.columns[ordinal];
+			if (column == null) {
+				column = new double[this.size];
+				Arrays.fill(column, Double.NaN);
+				this.columns[ordinal] = column;
+				this.present[ordinal] = new long[(this.size + 63) >>> 6];
+			}
+			column[index] = value;
+			this.present[ordinal][index >>> 6] |= 1L << index;
+			return this;
+		}
+
+		public Builder icon(int index, @Nullable DsIcon value) {
+			if (value != null) {
+				if (this.icons == null) {
+					this.icons = new DsIcon[this.size];
+				}
+				this.icons[index] = value;
+			}
+			return this;
+		}
+
+		public Builder precipType(int index, @Nullable DsPrecipType value) {
+			if (value != null) {
+				if (this.precipTypes == null) {
+					this.precipTypes = new DsPrecipType[this.size];
+				}
+				this.precipTypes[index] = value;
+			}
+			return this;
+		}
+
+		public Builder summary(int index, @Nullable String value) {
+			if (value != null) {
+				if (this.summaries == null) {
+					this.summaries = new String[this.size];
+				}
+				this.summaries[index] = value;
+			}
+			return this;
+		}
+
+		/**
+		 * Creates the block. The builder hands its arrays to the block and must not be
+		 * used afterwards.
+		 */
+		public DsColumnarDataBlock build() {
+			return new DsColumnarDataBlock(this);
+		}
+	}
+
+}
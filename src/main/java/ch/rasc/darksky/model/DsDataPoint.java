@@ -395,4 +395,18 @@ public abstract class DsDataPoint {
 	@Nullable
 	public abstract BigDecimal windSpeed();
 
+	/**
+	 * Returns the value of a numeric property as double.
+	 *
+	 * @return the value or {@link Double#NaN} if the property is not set
+	 * @throws IllegalArgumentException if the property is not numeric
+	 */
+	public double doubleValue(DsDataPointField field) {
+		if (!field.isNumeric()) {
+			throw new IllegalArgumentException(field + " is not numeric");
+		}
+		Object value = field.get(this);
+		return value != null ? ((Number) value).doubleValue() : Double.NaN;
+	}
+
 }
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.model;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+/**
+ * The properties of a {@link DsDataPoint}.
+ * <p>
+ * The ordinals are stored in archive files. New constants must be added at the end.
+ */
+public enum DsDataPointField {
+	APPARENT_TEMPERATURE("apparentTemperature", Type.DECIMAL,
+			DsDataPoint::apparentTemperature),
+	APPARENT_TEMPERATURE_HIGH("apparentTemperatureHigh", Type.DECIMAL,
+			DsDataPoint::apparentTemperatureHigh),
+	APPARENT_TEMPERATURE_HIGH_TIME("apparentTemperatureHighTime", Type.LONG,
+			DsDataPoint::apparentTemperatureHighTime),
+	APPARENT_TEMPERATURE_LOW("apparentTemperatureLow", Type.DECIMAL,
+			DsDataPoint::apparentTemperatureLow),
+	APPARENT_TEMPERATURE_LOW_TIME("apparentTemperatureLowTime", Type.LONG,
+			DsDataPoint::apparentTemperatureLowTime),
+	APPARENT_TEMPERATURE_MAX("apparentTemperatureMax", Type.DECIMAL,
+			DsDataPoint::apparentTemperatureMax),
+	APPARENT_TEMPERATURE_MAX_TIME("apparentTemperatureMaxTime", Type.LONG,
+			DsDataPoint::apparentTemperatureMaxTime),
+	APPARENT_TEMPERATURE_MIN("apparentTemperatureMin", Type.DECIMAL,
+			DsDataPoint::apparentTemperatureMin),
+	APPARENT_TEMPERATURE_MIN_TIME("apparentTemperatureMinTime", Type.LONG,
+			DsDataPoint::apparentTemperatureMinTime),
+	CLOUD_COVER("cloudCover", Type.DECIMAL, DsDataPoint::cloudCover),
+	DEW_POINT("dewPoint", Type.DECIMAL, DsDataPoint::dewPoint),
+	HUMIDITY("humidity", Type.DECIMAL, DsDataPoint::humidity),
+	ICON("icon", Type.ICON, DsDataPoint::icon),
+	MOON_PHASE("moonPhase", Type.DECIMAL, DsDataPoint::moonPhase),
+	NEAREST_STORM_BEARING("nearestStormBearing", Type.DECIMAL,
+			DsDataPoint::nearestStormBearing),
+	NEAREST_STORM_DISTANCE("nearestStormDistance", Type.DECIMAL,
+			DsDataPoint::nearestStormDistance),
+	OZONE("ozone", Type.DECIMAL, DsDataPoint::ozone),
+	PRECIP_ACCUMULATION("precipAccumulation", Type.DECIMAL,
+			DsDataPoint::precipAccumulation),
+	PRECIP_INTENSITY("precipIntensity", Type.DECIMAL, DsDataPoint::precipIntensity),
+	PRECIP_INTENSITY_ERROR("precipIntensityError", Type.DECIMAL,
+			DsDataPoint::precipIntensityError),
+	PRECIP_INTENSITY_MAX("precipIntensityMax", Type.DECIMAL,
+			DsDataPoint::precipIntensityMax),
+	PRECIP_INTENSITY_MAX_TIME("precipIntensityMaxTime", Type.LONG,
+			DsDataPoint::precipIntensityMaxTime),
+	PRECIP_PROBABILITY("precipProbability", Type.DECIMAL, DsDataPoint::precipProbability),
+	PRECIP_TYPE("precipType", Type.PRECIP_TYPE, DsDataPoint::precipType),
+	PRESSURE("pressure", Type.DECIMAL, DsDataPoint::pressure),
+	SUMMARY("summary", Type.STRING, DsDataPoint::summary),
+	SUNRISE_TIME("sunriseTime", Type.LONG, DsDataPoint::sunriseTime),
+	SUNSET_TIME("sunsetTime", Type.LONG, DsDataPoint::sunsetTime),
+	TEMPERATURE("temperature", Type.DECIMAL, DsDataPoint::temperature),
+	TEMPERATURE_HIGH("temperatureHigh", Type.DECIMAL, DsDataPoint::temperatureHigh),
+	TEMPERATURE_HIGH_TIME("temperatureHighTime", Type.LONG,
+			DsDataPoint::temperatureHighTime),
+	TEMPERATURE_LOW("temperatureLow", Type.DECIMAL, DsDataPoint::temperatureLow),
+	TEMPERATURE_LOW_TIME("temperatureLowTime", Type.LONG,
+			DsDataPoint::temperatureLowTime),
+	TEMPERATURE_MAX("temperatureMax", Type.DECIMAL, DsDataPoint::temperatureMax),
+	TEMPERATURE_MAX_TIME("temperatureMaxTime", Type.LONG,
+			DsDataPoint::temperatureMaxTime),
+	TEMPERATURE_MIN("temperatureMin", Type.DECIMAL, DsDataPoint::temperatureMin),
+	TEMPERATURE_MIN_TIME("temperatureMinTime", Type.LONG,
+			DsDataPoint::temperatureMinTime),
+	TIME("time", Type.LONG, p -> p.time()),
+	UV_INDEX("uvIndex", Type.INTEGER, DsDataPoint::uvIndex),
+	UV_INDEX_TIME("uvIndexTime", Type.LONG, DsDataPoint::uvIndexTime),
+	VISIBILITY("visibility", Type.DECIMAL, DsDataPoint::visibility),
+	WIND_BEARING("windBearing", Type.DECIMAL, DsDataPoint::windBearing),
+	WIND_GUST("windGust", Type.DECIMAL, DsDataPoint::windGust),
+	WIND_GUST_TIME("windGustTime", Type.LONG, DsDataPoint::windGustTime),
+	WIND_SPEED("windSpeed", Type.DECIMAL, DsDataPoint::windSpeed);
+
+	/**
+	 * The Java type of a property.
+	 */
+	public enum Type {
+		/**
+		 * {@link java.math.BigDecimal}
+		 */
+		DECIMAL,
+		/**
+		 * {@link Long}, UNIX time values
+		 */
+		LONG,
+		/**
+		 * {@link Integer}
+		 */
+		INTEGER,
+		/**
+		 * {@link DsIcon}
+		 */
+		ICON,
+		/**
+		 * {@link DsPrecipType}
+		 */
+		PRECIP_TYPE,
+		/**
+		 * {@link String}
+		 */
+		STRING
+	}
+
+	private static final Map<String, DsDataPointField> BY_JSON_NAME = new HashMap<>();
+
+	static {
+		for (DsDataPointField field : values()) {
+			BY_JSON_NAME.put(field.jsonName, field);
+		}
+	}
+
+	private final String jsonName;
+
+	private final Type type;
+
+	private final Function<DsDataPoint, Object> accessor;
+
+	private DsDataPointField(String jsonName, Type type,
+			Function<DsDataPoint, Object> accessor) {
+		this.jsonName = jsonName;
+		this.type = type;
+		this.accessor = accessor;
+	}
+
+	/**
+	 * The property name in the Dark Sky JSON response.
+	 */
+	public String getJsonName() {
+		return this.jsonName;
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * True for the properties with a numeric value: {@link Type#DECIMAL},
+	 * {@link Type#LONG} and {@link Type#INTEGER}
+	 */
+	public boolean isNumeric() {
+		return this.type == Type.DECIMAL || this.type == Type.LONG
+				|| this.type == Type.INTEGER;
+	}
+
+	/**
+	 * Returns the value of this property. The type of the returned object depends on
+	 * {@link #getType()}.
+	 */
+	@Nullable
+	public Object get(DsDataPoint dataPoint) {
+		return this.accessor.apply(dataPoint);
+	}
+
+	/**
+	 * Sets this property on the builder. The value must have the type described by
+	 * {@link #getType()}. A null value is ignored for {@link #TIME}.
+	 */
+	public void set(ImmutableDsDataPoint.Builder builder, @Nullable Object value) {
+		switch (this) {
+		case ICON:
+			builder.icon((DsIcon) value);
+			break;
+		case PRECIP_TYPE:
+			builder.precipType((DsPrecipType) value);
+			break;
+		case SUMMARY:
+			builder.summary((String) value);
+			break;
+		case TIME:
+			if (value != null) {
+				builder.time((Long) value);
+			}
+			break;
+		case APPARENT_TEMPERATURE:
+			builder.apparentTemperature((BigDecimal) value);
+			break;
+		case APPARENT_TEMPERATURE_HIGH:
+			builder.apparentTemperatureHigh((BigDecimal) value);
+			break;
+		case APPARENT_TEMPERATURE_HIGH_TIME:
+			builder.apparentTemperatureHighTime((Long) value);
+			break;
+		case APPARENT_TEMPERATURE_LOW:
+			builder.apparentTemperatureLow((BigDecimal) value);
+			break;
+		case APPARENT_TEMPERATURE_LOW_TIME:
+			builder.apparentTemperatureLowTime((Long) value);
+			break;
+		case APPARENT_TEMPERATURE_MAX:
+			builder.apparentTemperatureMax((BigDecimal) value);
+			break;
+		case APPARENT_TEMPERATURE_MAX_TIME:
+			builder.apparentTemperatureMaxTime((Long) value);
+			break;
+		case APPARENT_TEMPERATURE_MIN:
+			builder.apparentTemperatureMin((BigDecimal) value);
+			break;
+		case APPARENT_TEMPERATURE_MIN_TIME:
+			builder.apparentTemperatureMinTime((Long) value);
+			break;
+		case CLOUD_COVER:
+			builder.cloudCover((BigDecimal) value);
+			break;
+		case DEW_POINT:
+			builder.dewPoint((BigDecimal) value);
+			break;
+		case HUMIDITY:
+			builder.humidity((BigDecimal) value);
+			break;
+		case MOON_PHASE:
+			builder.moonPhase((BigDecimal) value);
+			break;
+		case NEAREST_STORM_BEARING:
+			builder.nearestStormBearing((BigDecimal) value);
+			break;
+		case NEAREST_STORM_DISTANCE:
+			builder.nearestStormDistance((BigDecimal) value);
+			break;
+		case OZONE:
+			builder.ozone((BigDecimal) value);
+			break;
+		case PRECIP_ACCUMULATION:
+			builder.precipAccumulation((BigDecimal) value);
+			break;
+		case PRECIP_INTENSITY:
+			builder.precipIntensity((BigDecimal) value);
+			break;
+		case PRECIP_INTENSITY_ERROR:
+			builder.precipIntensityError((BigDecimal) value);
+			break;
+		case PRECIP_INTENSITY_MAX:
+			builder.precipIntensityMax((BigDecimal) value);
+			break;
+		case PRECIP_INTENSITY_MAX_TIME:
+			builder.precipIntensityMaxTime((Long) value);
+			break;
+		case PRECIP_PROBABILITY:
+			builder.precipProbability((BigDecimal) value);
+			break;
+		case PRESSURE:
+			builder.pressure((BigDecimal) value);
+			break;
+		case SUNRISE_TIME:
+			builder.sunriseTime((Long) value);
+			break;
+		case SUNSET_TIME:
+			builder.sunsetTime((Long) value);
+			break;
+		case TEMPERATURE:
+			builder.temperature((BigDecimal) value);
+			break;
+		case TEMPERATURE_HIGH:
+			builder.temperatureHigh((BigDecimal) value);
+			break;
+		case TEMPERATURE_HIGH_TIME:
+			builder.temperatureHighTime((Long) value);
+			break;
+		case TEMPERATURE_LOW:
+			builder.temperatureLow((BigDecimal) value);
+			break;
+		case TEMPERATURE_LOW_TIME:
+			builder.temperatureLowTime((Long) value);
+			break;
+		case TEMPERATURE_MAX:
+			builder.temperatureMax((BigDecimal) value);
+			break;
+		case TEMPERATURE_MAX_TIME:
+			builder.temperatureMaxTime((Long) value);
+			break;
+		case TEMPERATURE_MIN:
+			builder.temperatureMin((BigDecimal) value);
+			break;
+		case TEMPERATURE_MIN_TIME:
+			builder.temperatureMinTime((Long) value);
+			break;
+		case UV_INDEX:
+			builder.uvIndex((Integer) value);
+			break;
+		case UV_INDEX_TIME:
+			builder.uvIndexTime((Long) value);
+			break;
+		case VISIBILITY:
+			builder.visibility((BigDecimal) value);
+			break;
+		case WIND_BEARING:
+			builder.windBearing((BigDecimal) value);
+			break;
+		case WIND_GUST:
+			builder.windGust((BigDecimal) value);
+			break;
+		case WIND_GUST_TIME:
+			builder.windGustTime((Long) value);
+			break;
+		case WIND_SPEED:
+			builder.windSpeed((BigDecimal) value);
+			break;
+		}
+	}
+
+	@Nullable
+	public static DsDataPointField findByJsonName(String jsonName) {
+		return BY_JSON_NAME.get(jsonName);
+	}
+}
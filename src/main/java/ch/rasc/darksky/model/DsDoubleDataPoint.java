@@ -0,0 +1,494 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.model;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link DsDataPoint} that stores the numeric properties as primitive double values.
+ * Missing values are stored as {@link Double#NaN}.
+ * <p>
+ * Needs a fraction of the heap of {@link ImmutableDsDataPoint}, but the values are not
+ * exact decimals. The {@link BigDecimal} accessors create a new instance on every call
+ * with {@link BigDecimal#valueOf(double)}, a value of 10 is returned as 10.0. Use
+ * {@link #doubleValue(DsDataPointField)} to read the values without allocation.
+ */
+public final class DsDoubleDataPoint extends DsDataPoint {
+
+	private static final DsDataPointField[] FIELDS = DsDataPointField.values();
+
+	/**
+	 * Index into {@link #values} by field ordinal, -1 for non numeric fields and
+	 * {@link DsDataPointField#TIME}
+	 */
+	private static final int[] INDEX = new int[FIELDS.length];
+
+	private static final int NUMERIC_FIELDS;
+
+	static {
+		int ix = 0;
+		for (DsDataPointField field : FIELDS) {
+			if (field.isNumeric() && field != DsDataPointField.TIME) {
+				INDEX[field.ordinal()] = ix++;
+			}
+			else {
+				INDEX[field.ordinal()] = -1;
+			}
+		}
+		NUMERIC_FIELDS = ix;
+	}
+
+	private final long time;
+
+	private final double[] values;
+
+	@Nullable
+	private final DsIcon icon;
+
+	@Nullable
+	private final DsPrecipType precipType;
+
+	@Nullable
+	private final String summary;
+
+	private DsDoubleDataPoint(Builder builder) {
+		this.time = builder.time;
+		this.values = builder.values;
+		this.icon = builder.icon;
+		this.precipType = builder.precipType;
+		this.summary = builder.summary;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override
+	public double doubleValue(DsDataPointField field) {
+		if (field == DsDataPointField.TIME) {
+			return this.time;
+		}
+		int ix = INDEX[field.ordinal()];
+		if (ix == -1) {
+			throw new IllegalArgumentException(field + " is not numeric");
+		}
+		return this.values[ix];
+	}
+
+	@Nullable
+	private BigDecimal decimalValue(DsDataPointField field) {
+		double value = this.values[INDEX[field.ordinal()]];
+		return Double.isNaN(value) ? null : BigDecimal.valueOf(value);
+	}
+
+	@Nullable
+	private Long longValue(DsDataPointField field) {
+		double value = this.values[INDEX[field.ordinal()]];
+		return Double.isNaN(value) ? null : Long.valueOf((long) value);
+	}
+
+	@Nullable
+	private Integer integerValue(DsDataPointField field) {
+		double value = this.values[INDEX[field.ordinal()]];
+		return Double.isNaN(value) ? null : Integer.valueOf((int) value);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal apparentTemperature() {
+		return decimalValue(DsDataPointField.APPARENT_TEMPERATURE);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal apparentTemperatureHigh() {
+		return decimalValue(DsDataPointField.APPARENT_TEMPERATURE_HIGH);
+	}
+
+	@Override
+	@Nullable
+	public Long apparentTemperatureHighTime() {
+		return longValue(DsDataPointField.APPARENT_TEMPERATURE_HIGH_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal apparentTemperatureLow() {
+		return decimalValue(DsDataPointField.APPARENT_TEMPERATURE_LOW);
+	}
+
+	@Override
+	@Nullable
+	public Long apparentTemperatureLowTime() {
+		return longValue(DsDataPointField.APPARENT_TEMPERATURE_LOW_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal apparentTemperatureMax() {
+		return decimalValue(DsDataPointField.APPARENT_TEMPERATURE_MAX);
+	}
+
+	@Override
+	@Nullable
+	public Long apparentTemperatureMaxTime() {
+		return longValue(DsDataPointField.APPARENT_TEMPERATURE_MAX_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal apparentTemperatureMin() {
+		return decimalValue(DsDataPointField.APPARENT_TEMPERATURE_MIN);
+	}
+
+	@Override
+	@Nullable
+	public Long apparentTemperatureMinTime() {
+		return longValue(DsDataPointField.APPARENT_TEMPERATURE_MIN_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal cloudCover() {
+		return decimalValue(DsDataPointField.CLOUD_COVER);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal dewPoint() {
+		return decimalValue(DsDataPointField.DEW_POINT);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal humidity() {
+		return decimalValue(DsDataPointField.HUMIDITY);
+	}
+
+	@Override
+	@Nullable
+	public DsIcon icon() {
+		return this.icon;
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal moonPhase() {
+		return decimalValue(DsDataPointField.MOON_PHASE);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal nearestStormBearing() {
+		return decimalValue(DsDataPointField.NEAREST_STORM_BEARING);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal nearestStormDistance() {
+		return decimalValue(DsDataPointField.NEAREST_STORM_DISTANCE);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal ozone() {
+		return decimalValue(DsDataPointField.OZONE);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal precipAccumulation() {
+		return decimalValue(DsDataPointField.PRECIP_ACCUMULATION);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal precipIntensity() {
+		return decimalValue(DsDataPointField.PRECIP_INTENSITY);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal precipIntensityError() {
+		return decimalValue(DsDataPointField.PRECIP_INTENSITY_ERROR);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal precipIntensityMax() {
+		return decimalValue(DsDataPointField.PRECIP_INTENSITY_MAX);
+	}
+
+	@Override
+	@Nullable
+	public Long precipIntensityMaxTime() {
+		return longValue(DsDataPointField.PRECIP_INTENSITY_MAX_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal precipProbability() {
+		return decimalValue(DsDataPointField.PRECIP_PROBABILITY);
+	}
+
+	@Override
+	@Nullable
+	public DsPrecipType precipType() {
+		return this.precipType;
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal pressure() {
+		return decimalValue(DsDataPointField.PRESSURE);
+	}
+
+	@Override
+	@Nullable
+	public String summary() {
+		return this.summary;
+	}
+
+	@Override
+	@Nullable
+	public Long sunriseTime() {
+		return longValue(DsDataPointField.SUNRISE_TIME);
+	}
+
+	@Override
+	@Nullable
+	public Long sunsetTime() {
+		return longValue(DsDataPointField.SUNSET_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal temperature() {
+		return decimalValue(DsDataPointField.TEMPERATURE);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal temperatureHigh() {
+		return decimalValue(DsDataPointField.TEMPERATURE_HIGH);
+	}
+
+	@Override
+	@Nullable
+	public Long temperatureHighTime() {
+		return longValue(DsDataPointField.TEMPERATURE_HIGH_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal temperatureLow() {
+		return decimalValue(DsDataPointField.TEMPERATURE_LOW);
+	}
+
+	@Override
+	@Nullable
+	public Long temperatureLowTime() {
+		return longValue(DsDataPointField.TEMPERATURE_LOW_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal temperatureMax() {
+		return decimalValue(DsDataPointField.TEMPERATURE_MAX);
+	}
+
+	@Override
+	@Nullable
+	public Long temperatureMaxTime() {
+		return longValue(DsDataPointField.TEMPERATURE_MAX_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal temperatureMin() {
+		return decimalValue(DsDataPointField.TEMPERATURE_MIN);
+	}
+
+	@Override
+	@Nullable
+	public Long temperatureMinTime() {
+		return longValue(DsDataPointField.TEMPERATURE_MIN_TIME);
+	}
+
+	@Override
+	public long time() {
+		return this.time;
+	}
+
+	@Override
+	@Nullable
+	public Integer uvIndex() {
+		return integerValue(DsDataPointField.UV_INDEX);
+	}
+
+	@Override
+	@Nullable
+	public Long uvIndexTime() {
+		return longValue(DsDataPointField.UV_INDEX_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal visibility() {
+		return decimalValue(DsDataPointField.VISIBILITY);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal windBearing() {
+		return decimalValue(DsDataPointField.WIND_BEARING);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal windGust() {
+		return decimalValue(DsDataPointField.WIND_GUST);
+	}
+
+	@Override
+	@Nullable
+	public Long windGustTime() {
+		return longValue(DsDataPointField.WIND_GUST_TIME);
+	}
+
+	@Override
+	@Nullable
+	public BigDecimal windSpeed() {
+		return decimalValue(DsDataPointField.WIND_SPEED);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof DsDoubleDataPoint)) {
+			return false;
+		}
+		DsDoubleDataPoint other = (DsDoubleDataPoint) obj;
+		return this.time == other.time && Arrays.equals(this.values, other.values)
+				&& this.icon == other.icon && this.precipType == other.precipType
+				&& Objects.equals(this.summary, other.summary);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = Long.hashCode(this.time);
+		h = 31 * h + Arrays.hashCode(this.values);
+		h = 31 * h + Objects.hashCode(this.icon);
+		h = 31 * h + Objects.hashCode(this.precipType);
+		return 31 * h + Objects.hashCode(this.summary);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("DsDoubleDataPoint{");
+		for (DsDataPointField field : FIELDS) {
+			Object value = field.isNumeric() ? doubleValue(field) : field.get(this);
+			boolean missing = value == null
+					|| value instanceof Double && ((Double) value).isNaN();
+			if (!missing) {
+				if (sb.charAt(sb.length() - 1) != '{') {
+					sb.append(", ");
+				}
+				sb.append(field.getJsonName()).append('=').append(value);
+			}
+		}
+		return sb.append('}').toString();
+	}
+
+	public static final class Builder {
+		private long time;
+
+		private boolean timeSet;
+
+		private double[] values = new double[NUMERIC_FIELDS];
+
+		/**
+		 * True if {@link #values} is referenced by a built instance
+		 */
+		private boolean shared;
+
+		private DsIcon icon;
+
+		private DsPrecipType precipType;
+
+		private String summary;
+
+		Builder() {
+			Arrays.fill(this.values, Double.NaN);
+		}
+
+		public Builder time(long value) {
+			this.time = value;
+			this.timeSet = true;
+			return this;
+		}
+
+		/**
+		 * Sets a numeric property. {@link Double#NaN} removes the value.
+		 */
+		public Builder value(DsDataPointField field, double value) {
+			if (field == DsDataPointField.TIME) {
+				return time((long) value);
+			}
+			int ix = INDEX[field.ordinal()];
+			if (ix == -1) {
+				throw new IllegalArgumentException(field + " is not numeric");
+			}
+			if (this.shared) {
+				this.values = this.values.clone();
+				this.shared = false;
+			}
+			this.values[ix] = value;
+			return this;
+		}
+
+		public Builder icon(@Nullable DsIcon value) {
+			this.icon = value;
+			return this;
+		}
+
+		public Builder precipType(@Nullable DsPrecipType value) {
+			this.precipType = value;
+			return this;
+		}
+
+		public Builder summary(@Nullable String value) {
+			this.summary = value;
+			return this;
+		}
+
+		public DsDoubleDataPoint build() {
+			if (!this.timeSet) {
+				throw new IllegalStateException("Cannot build DsDoubleDataPoint, "
+						+ "required attribute time is not set");
+			}
+			this.shared = true;
+			return new DsDoubleDataPoint(this);
+		}
+	}
+
+}
@@ -81,6 +81,15 @@ public interface DsForecastRequest {
 	 */
 	Set<DsBlock> includeBlocks();
 
+	/**
+	 * Priority of the request when the client has a
+	 * {@link ch.rasc.darksky.DsRateLimiter}.
+	 * <p>
+	 * Default: {@link DsPriority#NORMAL}
+	 */
+	@Nullable
+	DsPriority priority();
+
 	public static Builder builder() {
 		return new Builder();
 	}
@@ -21,6 +21,9 @@ public enum DsIcon {
 	PARTLY_CLOUDY_DAY("partly-cloudy-day"), PARTLY_CLOUDY_NIGHT("partly-cloudy-night"),
 	UNKNOWN(null);
 
+	private static final JsonValueIndex<DsIcon> INDEX = new JsonValueIndex<>(values(),
+			DsIcon::getJsonValue);
+
 	private String jsonValue;
 
 	private DsIcon(String jsonValue) {
@@ -28,17 +31,20 @@ public enum DsIcon {
 	}
 
 	public static DsIcon findByJsonValue(String jsonValue) {
-		for (DsIcon en : DsIcon.values()) {
-			if (jsonValue.equals(en.jsonValue)) {
-				return en;
-			}
-		}
-
-		if (jsonValue != null) {
-			return UNKNOWN;
+		if (jsonValue == null) {
+			return null;
 		}
+		DsIcon value = INDEX.find(jsonValue);
+		return value != null ? value : UNKNOWN;
+	}
 
-		return null;
+	/**
+	 * Same as {@link #findByJsonValue(String)} for a value in a char array. Does not
+	 * allocate.
+	 */
+	public static DsIcon findByJsonValue(char[] chars, int offset, int length) {
+		DsIcon value = INDEX.find(chars, offset, length);
+		return value != null ? value : UNKNOWN;
 	}
 
 	public String getJsonValue() {
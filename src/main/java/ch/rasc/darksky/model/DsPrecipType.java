@@ -18,6 +18,9 @@ package ch.rasc.darksky.model;
 public enum DsPrecipType {
 	RAIN("rain"), SNOW("snow"), SLEET("sleet"), UNKNOWN(null);
 
+	private static final JsonValueIndex<DsPrecipType> INDEX = new JsonValueIndex<>(
+			values(), DsPrecipType::getJsonValue);
+
 	private String jsonValue;
 
 	private DsPrecipType(String jsonValue) {
@@ -25,17 +28,20 @@ public enum DsPrecipType {
 	}
 
 	public static DsPrecipType findByJsonValue(String jsonValue) {
-		for (DsPrecipType en : DsPrecipType.values()) {
-			if (jsonValue.equals(en.jsonValue)) {
-				return en;
-			}
-		}
-
-		if (jsonValue != null) {
-			return UNKNOWN;
+		if (jsonValue == null) {
+			return null;
 		}
+		DsPrecipType value = INDEX.find(jsonValue);
+		return value != null ? value : UNKNOWN;
+	}
 
-		return null;
+	/**
+	 * Same as {@link #findByJsonValue(String)} for a value in a char array. Does not
+	 * allocate.
+	 */
+	public static DsPrecipType findByJsonValue(char[] chars, int offset, int length) {
+		DsPrecipType value = INDEX.find(chars, offset, length);
+		return value != null ? value : UNKNOWN;
 	}
 
 	public String getJsonValue() {
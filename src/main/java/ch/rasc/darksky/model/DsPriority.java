@@ -0,0 +1,41 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.model;
+
+/**
+ * Priority of a request. Only used by a {@link ch.rasc.darksky.DsRateLimiter}, not sent
+ * to the API.
+ */
+public enum DsPriority {
+
+	/**
+	 * A user is waiting for the response. Served first and may use the whole daily
+	 * quota.
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Default priority
+	 */
+	NORMAL,
+
+	/**
+	 * Speculative requests that fill a cache. Served last and shed first when the daily
+	 * quota runs low.
+	 */
+	PREFETCH
+
+}
@@ -67,6 +67,9 @@ public enum DsUnit {
 
 	UNKNOWN(null);
 
+	private static final JsonValueIndex<DsUnit> INDEX = new JsonValueIndex<>(values(),
+			DsUnit::getJsonValue);
+
 	private String jsonValue;
 
 	private DsUnit(String jsonValue) {
@@ -78,16 +81,19 @@ public enum DsUnit {
 	}
 
 	public static DsUnit findByJsonValue(String jsonValue) {
-		for (DsUnit unit : DsUnit.values()) {
-			if (jsonValue.equals(unit.jsonValue)) {
-				return unit;
-			}
-		}
-
-		if (jsonValue != null) {
-			return UNKNOWN;
+		if (jsonValue == null) {
+			return null;
 		}
+		DsUnit value = INDEX.find(jsonValue);
+		return value != null ? value : UNKNOWN;
+	}
 
-		return null;
+	/**
+	 * Same as {@link #findByJsonValue(String)} for a value in a char array. Does not
+	 * allocate.
+	 */
+	public static DsUnit findByJsonValue(char[] chars, int offset, int length) {
+		DsUnit value = INDEX.find(chars, offset, length);
+		return value != null ? value : UNKNOWN;
 	}
 }
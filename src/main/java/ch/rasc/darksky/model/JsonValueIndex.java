@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.model;
+
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+/**
+ * Open addressing hash table that maps the JSON values of an enum to its constants.
+ * Lookups with a char array range compare the characters in place and do not create a
+ * String.
+ */
+final class JsonValueIndex<E extends Enum<E>> {
+
+	private final String[] keys;
+
+	private final Object[] values;
+
+	private final int mask;
+
+	JsonValueIndex(E[] constants, Function<E, String> jsonValue) {
+		int capacity = Integer.highestOneBit(Math.max(constants.length, 1) * 4);
+		this.keys = new String[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+
+		for (E constant : constants) {
+			String key = jsonValue.apply(constant);
+			if (key != null) {
+				int slot = key.hashCode() & this.mask;
+				while (this.keys[slot] != null) {
+					slot = slot + 1 & this.mask;
+				}
+				this.keys[slot] = key;
+				this.values[slot] = constant;
+			}
+		}
+	}
+
+	@Nullable
+	E find(String key) {
+		int slot = key.hashCode() & this.mask;
+		String candidate;
+		while ((candidate = this.keys[slot]) != null) {
+			if (candidate.equals(key)) {
+				return value(slot);
+			}
+			slot = slot + 1 & this.mask;
+		}
+		return null;
+	}
+
+	@Nullable
+	E find(char[] chars, int offset, int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+
+		int slot = hash & this.mask;
+		String candidate;
+		while ((candidate = this.keys[slot]) != null) {
+			if (equals(candidate, chars, offset, length)) {
+				return value(slot);
+			}
+			slot = slot + 1 & this.mask;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private E value(int slot) {
+		return (E) this.values[slot];
+	}
+
+	private static boolean equals(String candidate, char[] chars, int offset,
+			int length) {
+		if (candidate.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (candidate.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
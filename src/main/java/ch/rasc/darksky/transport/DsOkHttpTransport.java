@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Transport based on OkHttp. The default transport of the client.
+ * <p>
+ * Asynchronous requests are enqueued on the {@link okhttp3.Dispatcher} of the
+ * {@link OkHttpClient}, which limits the number of concurrent requests
+ * ({@link okhttp3.Dispatcher#getMaxRequestsPerHost()}, default 5).
+ */
+public class DsOkHttpTransport implements DsTransport {
+
+	private final OkHttpClient httpClient;
+
+	public DsOkHttpTransport() {
+		this(new OkHttpClient());
+	}
+
+	public DsOkHttpTransport(OkHttpClient httpClient) {
+		this.httpClient = httpClient;
+	}
+
+	@Override
+	public DsTransportResponse execute(String url) throws IOException {
+		return new OkHttpResponse(this.httpClient.newCall(request(url)).execute());
+	}
+
+	@Override
+	public CompletableFuture<DsTransportResponse> executeAsync(String url) {
+		CompletableFuture<DsTransportResponse> future = new CompletableFuture<>();
+		Call call = this.httpClient.newCall(request(url));
+		call.enqueue(new Callback() {
+			@Override
+			public void onFailure(Call c, IOException e) {
+				future.completeExceptionally(e);
+			}
+
+			@Override
+			public void onResponse(Call c, Response response) {
+				if (!future.complete(new OkHttpResponse(response))) {
+					response.close();
+				}
+			}
+		});
+
+		future.whenComplete((r, e) -> {
+			if (future.isCancelled()) {
+				call.cancel();
+			}
+		});
+		return future;
+	}
+
+	private static Request request(String url) {
+		return new Request.Builder().get().url(url).build();
+	}
+
+	private static final class OkHttpResponse implements DsTransportResponse {
+		private final Response response;
+
+		OkHttpResponse(Response response) {
+			this.response = response;
+		}
+
+		@Override
+		public int code() {
+			return this.response.code();
+		}
+
+		@Override
+		@Nullable
+		public String header(String name) {
+			return this.response.header(name);
+		}
+
+		@Override
+		public InputStream body() throws IOException {
+			// OkHttp always sets a body on responses passed to callbacks
+			return this.response.body().byteStream();
+		}
+
+		@Override
+		public void close() {
+			this.response.close();
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.transport;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the HTTP GET requests of a {@link ch.rasc.darksky.DsClient}. Implementations
+ * must be thread safe.
+ *
+ * @see DsOkHttpTransport
+ * @see DsUrlConnectionTransport
+ */
+public interface DsTransport {
+
+	/**
+	 * Sends a GET request and blocks until the response headers are received. The
+	 * caller closes the response.
+	 */
+	DsTransportResponse execute(String url) throws IOException;
+
+	/**
+	 * Sends a GET request without blocking the calling thread. Cancelling the returned
+	 * future cancels the request. The caller closes the response.
+	 */
+	CompletableFuture<DsTransportResponse> executeAsync(String url);
+
+}
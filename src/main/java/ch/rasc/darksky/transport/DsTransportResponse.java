@@ -0,0 +1,44 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * The status, headers and body of a response received by a {@link DsTransport}.
+ * Closing the response releases the connection.
+ */
+public interface DsTransportResponse extends Closeable {
+
+	int code();
+
+	default boolean isSuccessful() {
+		return code() >= 200 && code() < 300;
+	}
+
+	@Nullable
+	String header(String name);
+
+	/**
+	 * The decompressed response body.
+	 */
+	InputStream body() throws IOException;
+
+}
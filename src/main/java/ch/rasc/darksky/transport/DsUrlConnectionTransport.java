@@ -0,0 +1,206 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Transport based on {@link HttpURLConnection} of the JDK. Does not need OkHttp at
+ * runtime.
+ * <p>
+ * The JDK keeps idle connections alive as long as the response body is read to the end
+ * and closed. Requests are sent with <code>Accept-Encoding: gzip</code>. Asynchronous
+ * requests block a thread of the executor until the response headers are received,
+ * the executor therefore limits the number of concurrent requests.
+ */
+public class DsUrlConnectionTransport implements DsTransport {
+
+	private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+	private final Executor executor;
+
+	private final int connectTimeoutMillis;
+
+	private final int readTimeoutMillis;
+
+	/**
+	 * Creates a transport with 10 second timeouts and a pool of 5 daemon threads for
+	 * asynchronous requests.
+	 */
+	public DsUrlConnectionTransport() {
+		this(defaultExecutor(), Duration.ofSeconds(10), Duration.ofSeconds(10));
+	}
+
+	/**
+	 * @param executor runs the blocking calls of asynchronous requests
+	 * @param connectTimeout timeout for opening the connection
+	 * @param readTimeout timeout for reading from the connection
+	 */
+	public DsUrlConnectionTransport(Executor executor, Duration connectTimeout,
+			Duration readTimeout) {
+		this.executor = executor;
+		this.connectTimeoutMillis = (int) connectTimeout.toMillis();
+		this.readTimeoutMillis = (int) readTimeout.toMillis();
+	}
+
+	private static ExecutorService defaultExecutor() {
+		return Executors.newFixedThreadPool(5, r -> {
+			Thread thread = new Thread(r,
+					"darksky-transport-" + THREAD_NUMBER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public DsTransportResponse execute(String url) throws IOException {
+		return execute(url, new AtomicReference<>());
+	}
+
+	@Override
+	public CompletableFuture<DsTransportResponse> executeAsync(String url) {
+		AtomicReference<HttpURLConnection> connection = new AtomicReference<>();
+		CompletableFuture<DsTransportResponse> future = CompletableFuture
+				.supplyAsync(() -> {
+					try {
+						return execute(url, connection);
+					}
+					catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				}, this.executor);
+
+		CompletableFuture<DsTransportResponse> result = new CompletableFuture<>();
+		future.whenComplete((response, e) -> {
+			if (e != null) {
+				result.completeExceptionally(
+						e instanceof CompletionException && e.getCause() != null
+								? e.getCause()
+								: e);
+			}
+			else if (!result.complete(response)) {
+				// cancelled while the request was running
+				try {
+					response.close();
+				}
+				catch (IOException ioe) {
+					// ignore
+				}
+			}
+		});
+		result.whenComplete((r, e) -> {
+			if (result.isCancelled()) {
+				HttpURLConnection running = connection.get();
+				if (running != null) {
+					running.disconnect();
+				}
+			}
+		});
+		return result;
+	}
+
+	private DsTransportResponse execute(String url,
+			AtomicReference<HttpURLConnection> running) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url)
+				.openConnection();
+		running.set(connection);
+		connection.setConnectTimeout(this.connectTimeoutMillis);
+		connection.setReadTimeout(this.readTimeoutMillis);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		try {
+			connection.getResponseCode();
+		}
+		catch (IOException e) {
+			connection.disconnect();
+			throw e;
+		}
+		return new UrlConnectionResponse(connection);
+	}
+
+	private static final class UrlConnectionResponse implements DsTransportResponse {
+		private final HttpURLConnection connection;
+
+		private InputStream body;
+
+		UrlConnectionResponse(HttpURLConnection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public int code() {
+			try {
+				return this.connection.getResponseCode();
+			}
+			catch (IOException e) {
+				// the status line was read in execute
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		@Nullable
+		public String header(String name) {
+			return this.connection.getHeaderField(name);
+		}
+
+		@Override
+		public InputStream body() throws IOException {
+			if (this.body == null) {
+				InputStream in = isSuccessful() ? this.connection.getInputStream()
+						: this.connection.getErrorStream();
+				if (in == null) {
+					in = new ByteArrayInputStream(new byte[0]);
+				}
+				if ("gzip".equalsIgnoreCase(
+						this.connection.getHeaderField("Content-Encoding"))) {
+					in = new GZIPInputStream(in);
+				}
+				this.body = in;
+			}
+			return this.body;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.body != null) {
+				this.body.close();
+			}
+			else {
+				InputStream in = isSuccessful() ? this.connection.getInputStream()
+						: this.connection.getErrorStream();
+				if (in != null) {
+					in.close();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class BoundedExecutionTest {
+
+	@Test
+	public void limitsTasksInFlight() {
+		List<CompletableFuture<Integer>> pending = new ArrayList<>();
+		List<Integer> inputs = IntStream.range(0, 10).boxed()
+				.collect(Collectors.toList());
+
+		List<CompletableFuture<Integer>> results = BoundedExecution.run(inputs, i -> {
+			CompletableFuture<Integer> f = new CompletableFuture<>();
+			pending.add(f);
+			return f;
+		}, 3);
+
+		assertThat(results).hasSize(10);
+		assertThat(pending).hasSize(3);
+
+		// complete out of order
+		pending.get(2).complete(20);
+		assertThat(pending).hasSize(4);
+		pending.get(0).completeExceptionally(new IllegalStateException());
+		assertThat(pending).hasSize(5);
+
+		for (int i = 1; i < 10; i++) {
+			if (!pending.get(i).isDone()) {
+				pending.get(i).complete(i * 10);
+			}
+		}
+
+		assertThat(pending).hasSize(10);
+		assertThat(results.get(0)).isCompletedExceptionally();
+		assertThat(results.subList(1, 10).stream().map(CompletableFuture::join)
+				.collect(Collectors.toList()))
+						.containsExactly(10, 20, 30, 40, 50, 60, 70, 80, 90);
+	}
+
+	@Test
+	public void completedTasks() {
+		List<Integer> inputs = IntStream.range(0, 100_000).boxed()
+				.collect(Collectors.toList());
+
+		List<CompletableFuture<Integer>> results = BoundedExecution.run(inputs,
+				CompletableFuture::completedFuture, 2);
+
+		assertThat(results).hasSize(100_000);
+		assertThat(results.get(99_999).join()).isEqualTo(99_999);
+	}
+
+	@Test
+	public void failingTask() {
+		List<CompletableFuture<String>> results = BoundedExecution.run(
+				Arrays.asList("a", null, "c"), s -> CompletableFuture.completedFuture(
+						s.toUpperCase()), 1);
+
+		assertThat(results.get(0).join()).isEqualTo("A");
+		assertThatThrownBy(results.get(1)::join)
+				.hasCauseInstanceOf(NullPointerException.class);
+		assertThat(results.get(2).join()).isEqualTo("C");
+	}
+}
@@ -16,31 +16,55 @@
 package ch.rasc.darksky;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.core.JsonParseException;
+
+import ch.rasc.darksky.json.DsNumberMode;
 import ch.rasc.darksky.json.JacksonJsonConverter;
+import ch.rasc.darksky.json.JsonConverter;
+import ch.rasc.darksky.json.LazyJsonConverter;
+import ch.rasc.darksky.json.StreamingJsonConverter;
 import ch.rasc.darksky.model.DsDataBlock;
 import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsDoubleDataPoint;
 import ch.rasc.darksky.model.DsFlag;
 import ch.rasc.darksky.model.DsIcon;
 import ch.rasc.darksky.model.DsPrecipType;
 import ch.rasc.darksky.model.DsResponse;
 import ch.rasc.darksky.model.DsUnit;
+import ch.rasc.darksky.model.ImmutableDsResponse;
 
 public class DeserializeTest {
 
 	@Test
 	public void serializeForecast() throws IOException, URISyntaxException {
-		JacksonJsonConverter converter = new JacksonJsonConverter();
+		for (JsonConverter converter : converters()) {
+			assertSerializeForecast(converter);
+		}
+	}
 
+	private void assertSerializeForecast(JsonConverter converter)
+			throws IOException, URISyntaxException {
 		String json = new String(Files.readAllBytes(Paths.get(
 				this.getClass().getClassLoader().getResource("forecast.json").toURI())),
 				StandardCharsets.UTF_8);
@@ -265,8 +289,13 @@ public class DeserializeTest {
 
 	@Test
 	public void serializeForecastHourly() throws IOException, URISyntaxException {
-		JacksonJsonConverter converter = new JacksonJsonConverter();
+		for (JsonConverter converter : converters()) {
+			assertSerializeForecastHourly(converter);
+		}
+	}
 
+	private void assertSerializeForecastHourly(JsonConverter converter)
+			throws IOException, URISyntaxException {
 		String json = new String(
 				Files.readAllBytes(Paths.get(this.getClass().getClassLoader()
 						.getResource("forecast-hourly.json").toURI())),
@@ -310,4 +339,220 @@ public class DeserializeTest {
 		assertThat(daily.icon()).isEqualTo(DsIcon.RAIN);
 		assertThat(daily.data()).hasSize(8);
 	}
+
+	@Test
+	public void deserializeFromStream() throws IOException, URISyntaxException {
+		for (JsonConverter converter : converters()) {
+			assertDeserializeFromStream(converter);
+		}
+	}
+
+	private void assertDeserializeFromStream(JsonConverter converter)
+			throws IOException, URISyntaxException {
+		String json = new String(
+				Files.readAllBytes(Paths.get(this.getClass().getClassLoader()
+						.getResource("forecast-hourly.json").toURI())),
+				StandardCharsets.UTF_8);
+
+		try (InputStream in = this.getClass().getClassLoader()
+				.getResourceAsStream("forecast-hourly.json")) {
+			DsResponse response = converter.deserialize(in);
+			assertThat(response).isEqualTo(converter.deserialize(json));
+			assertThat(response.hourly().data()).hasSize(169);
+		}
+	}
+
+	@Test
+	public void deserializeDoesNotCloseStream() throws IOException {
+		byte[] json;
+		try (InputStream in = this.getClass().getClassLoader()
+				.getResourceAsStream("forecast-hourly.json")) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			json = out.toByteArray();
+		}
+
+		List<JsonConverter> converters = new ArrayList<>(Arrays.asList(converters()));
+		converters.add(new LazyJsonConverter());
+		converters.add(value -> new JacksonJsonConverter().deserialize(value));
+		for (JsonConverter converter : converters) {
+			AtomicBoolean closed = new AtomicBoolean();
+			InputStream in = new ByteArrayInputStream(json) {
+				@Override
+				public void close() {
+					closed.set(true);
+				}
+			};
+			assertThat(converter.deserialize(in)).isNotNull();
+			assertThat(closed).isFalse();
+		}
+	}
+
+	@Test
+	public void deserializeDoubleMode() throws IOException, URISyntaxException {
+		String json = new String(
+				Files.readAllBytes(Paths.get(this.getClass().getClassLoader()
+						.getResource("forecast-hourly.json").toURI())),
+				StandardCharsets.UTF_8);
+
+		DsResponse decimal = new JacksonJsonConverter().deserialize(json);
+		DsResponse response = new JacksonJsonConverter(DsNumberMode.DOUBLE)
+				.deserialize(json);
+
+		DsDataPoint currently = response.currently();
+		assertThat(currently).isInstanceOf(DsDoubleDataPoint.class);
+		assertThat(currently.time()).isEqualTo(1584723740);
+		assertThat(currently.summary()).isEqualTo("Clear");
+		assertThat(currently.icon()).isEqualTo(DsIcon.CLEAR_DAY);
+		assertThat(currently.temperature()).isEqualTo(new BigDecimal("52.37"));
+		assertThat(currently.doubleValue(DsDataPointField.TEMPERATURE)).isEqualTo(52.37);
+		assertThat(currently.uvIndex()).isEqualTo(2);
+		assertThat(currently.precipType()).isNull();
+		assertThat(currently.doubleValue(DsDataPointField.PRECIP_ACCUMULATION)).isNaN();
+
+		DsDataPoint day = response.daily().data().get(0);
+		assertThat(day.sunriseTime()).isEqualTo(1584713580);
+		assertThat(day.precipType()).isEqualTo(DsPrecipType.RAIN);
+
+		assertSameValues(decimal.currently(), currently);
+		assertSameValues(decimal.minutely().data(), response.minutely().data());
+		assertSameValues(decimal.hourly().data(), response.hourly().data());
+		assertSameValues(decimal.daily().data(), response.daily().data());
+		assertThat(response.flags()).isEqualTo(decimal.flags());
+	}
+
+	@Test
+	public void deserializeLazy() throws IOException, URISyntaxException {
+		for (String file : new String[] { "forecast.json", "forecast-hourly.json" }) {
+			byte[] json = Files.readAllBytes(Paths
+					.get(this.getClass().getClassLoader().getResource(file).toURI()));
+
+			DsResponse expected = new JacksonJsonConverter()
+					.deserialize(new String(json, StandardCharsets.UTF_8));
+			DsResponse response = new LazyJsonConverter().deserialize(json);
+
+			assertThat(response.latitude()).isEqualByComparingTo(expected.latitude());
+			assertThat(response.currently()).isEqualTo(expected.currently());
+			assertThat(response.currently()).isSameAs(response.currently());
+			assertThat(ImmutableDsResponse.copyOf(response)).isEqualTo(expected);
+		}
+
+		DsResponse doubles = new LazyJsonConverter(DsNumberMode.DOUBLE)
+				.deserialize("{\"latitude\":1,\"longitude\":2,\"timezone\":\"UTC\","
+						+ "\"offset\":0,\"hourly\":{\"data\":[{\"time\":1}]}}");
+		assertThat(doubles.hourly().data().get(0)).isInstanceOf(DsDoubleDataPoint.class);
+		assertThat(doubles.currently()).isNull();
+		assertThat(doubles.alerts()).isEmpty();
+	}
+
+	@Test
+	public void deserializeProjection() throws IOException, URISyntaxException {
+		String json = new String(
+				Files.readAllBytes(Paths.get(this.getClass().getClassLoader()
+						.getResource("forecast-hourly.json").toURI())),
+				StandardCharsets.UTF_8);
+		Set<DsDataPointField> fields = EnumSet.of(DsDataPointField.PRECIP_PROBABILITY,
+				DsDataPointField.PRECIP_INTENSITY, DsDataPointField.ICON);
+		DsResponse expected = new JacksonJsonConverter().deserialize(json);
+
+		for (DsNumberMode mode : DsNumberMode.values()) {
+			DsResponse response = new JacksonJsonConverter(mode, fields)
+					.deserialize(json);
+			assertThat(response.hourly().data()).hasSize(169);
+			for (int i = 0; i < 169; i++) {
+				DsDataPoint expectedPoint = expected.hourly().data().get(i);
+				DsDataPoint point = response.hourly().data().get(i);
+				for (DsDataPointField field : DsDataPointField.values()) {
+					Object value = field.get(point);
+					if (field == DsDataPointField.TIME || fields.contains(field)) {
+						Object expectedValue = field.get(expectedPoint);
+						if (value instanceof BigDecimal) {
+							assertThat((BigDecimal) value).as(field.name())
+									.isEqualByComparingTo((BigDecimal) expectedValue);
+						}
+						else {
+							assertThat(value).as(field.name()).isEqualTo(expectedValue);
+						}
+					}
+					else {
+						assertThat(value).as(field.name()).isNull();
+					}
+				}
+			}
+			assertThat(response.hourly().summary())
+					.isEqualTo(expected.hourly().summary());
+			assertThat(response.flags()).isEqualTo(expected.flags());
+		}
+	}
+
+	@Test
+	public void deserializeStreaming() throws IOException, URISyntaxException {
+		for (String file : new String[] { "forecast.json", "forecast-hourly.json" }) {
+			String json = new String(Files.readAllBytes(Paths
+					.get(this.getClass().getClassLoader().getResource(file).toURI())),
+					StandardCharsets.UTF_8);
+
+			assertThat(new StreamingJsonConverter().deserialize(json))
+					.isEqualTo(new JacksonJsonConverter().deserialize(json));
+
+			DsResponse expected = new JacksonJsonConverter(DsNumberMode.DOUBLE)
+					.deserialize(json);
+			DsResponse response = new StreamingJsonConverter(DsNumberMode.DOUBLE)
+					.deserialize(json);
+			assertThat(response.currently()).isInstanceOf(DsDoubleDataPoint.class);
+			assertThat(response).isEqualTo(expected);
+
+			Set<DsDataPointField> fields = EnumSet.of(DsDataPointField.TEMPERATURE,
+					DsDataPointField.SUMMARY);
+			for (DsNumberMode mode : DsNumberMode.values()) {
+				DsResponse projected = new JacksonJsonConverter(mode, fields)
+						.deserialize(json);
+				assertThat(new StreamingJsonConverter(mode, fields).deserialize(json))
+						.isEqualTo(projected);
+			}
+		}
+
+		DsResponse response = new StreamingJsonConverter().deserialize(
+				"{\"latitude\":\"1.5\",\"longitude\":2,\"timezone\":\"UTC\","
+						+ "\"offset\":0,\"unknown\":{\"a\":[1,2]},\"currently\":"
+						+ "{\"time\":1,\"icon\":\"tornado\",\"uvIndex\":null}}");
+		assertThat(response.latitude()).isEqualByComparingTo("1.5");
+		assertThat(response.currently().icon()).isEqualTo(DsIcon.UNKNOWN);
+		assertThat(response.currently().uvIndex()).isNull();
+
+		assertThatThrownBy(() -> new StreamingJsonConverter()
+				.deserialize("{\"latitude\":1,\"longitude\":2}"))
+						.isInstanceOf(JsonParseException.class);
+	}
+
+	private static JsonConverter[] converters() {
+		return new JsonConverter[] { new JacksonJsonConverter(),
+				new StreamingJsonConverter() };
+	}
+
+	private static void assertSameValues(List<DsDataPoint> expected,
+			List<DsDataPoint> actual) {
+		assertThat(actual).hasSameSizeAs(expected);
+		for (int i = 0; i < expected.size(); i++) {
+			assertSameValues(expected.get(i), actual.get(i));
+		}
+	}
+
+	private static void assertSameValues(DsDataPoint expected, DsDataPoint actual) {
+		for (DsDataPointField field : DsDataPointField.values()) {
+			if (field.isNumeric()) {
+				// boxed, NaN equals NaN
+				assertThat(actual.doubleValue(field)).as(field.name())
+						.isEqualTo(Double.valueOf(expected.doubleValue(field)));
+			}
+			else {
+				assertThat(field.get(actual)).as(field.name())
+						.isEqualTo(field.get(expected));
+			}
+		}
+	}
 }
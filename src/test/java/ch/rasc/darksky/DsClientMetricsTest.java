@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class DsClientMetricsTest {
+
+	@Test
+	public void apiCallsAreMonotonicPerDay() {
+		Instant now = Instant.parse("2020-03-20T23:59:00Z");
+		DsClientMetrics metrics = new DsClientMetrics(Clock.fixed(now, ZoneOffset.UTC));
+		assertThat(metrics.apiCalls()).isNull();
+
+		metrics.recordApiCalls("12");
+		metrics.recordApiCalls("10");
+		metrics.recordApiCalls("");
+		metrics.recordApiCalls("abc");
+		assertThat(metrics.apiCalls()).isEqualTo(12);
+
+		DsClientMetrics nextDay = new DsClientMetrics(
+				Clock.fixed(now.plus(Duration.ofMinutes(2)), ZoneOffset.UTC));
+		nextDay.recordApiCalls("900");
+		assertThat(nextDay.apiCalls()).isEqualTo(900);
+	}
+
+	@Test
+	public void responseTime() {
+		DsClientMetrics metrics = new DsClientMetrics();
+		metrics.recordResponseTime("67.092ms");
+		metrics.recordResponseTime(null);
+		metrics.recordResponseTime("fast");
+
+		assertThat(metrics.serverLatency().count()).isEqualTo(1);
+		assertThat(metrics.serverLatency().max()).isEqualTo(Duration.ofNanos(67_092_000));
+	}
+
+	@Test
+	public void histogramPercentiles() {
+		DsLatencyHistogram histogram = new DsLatencyHistogram();
+		assertThat(histogram.percentile(99)).isEqualTo(Duration.ZERO);
+
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i, TimeUnit.MILLISECONDS);
+		}
+
+		assertThat(histogram.count()).isEqualTo(100);
+		assertThat(histogram.mean()).isEqualTo(Duration.ofMillis(50).plusMillis(1)
+				.minusNanos(500_000));
+		assertThat(histogram.max()).isEqualTo(Duration.ofMillis(100));
+		assertThat(histogram.percentile(50).toMillis()).isBetween(50L, 63L);
+		assertThat(histogram.percentile(90).toMillis()).isBetween(90L, 100L);
+		assertThat(histogram.percentile(100)).isEqualTo(Duration.ofMillis(100));
+	}
+
+	@Test
+	public void bucketBounds() {
+		for (long micros = 0; micros < 100_000; micros++) {
+			int bucket = DsLatencyHistogram.bucket(micros);
+			assertThat(DsLatencyHistogram.upperBound(bucket))
+					.isGreaterThanOrEqualTo(micros);
+			if (bucket > 0) {
+				assertThat(DsLatencyHistogram.upperBound(bucket - 1)).isLessThan(micros);
+			}
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.rasc.darksky.cache.DsDiskCache;
+import ch.rasc.darksky.cache.DsResponseCache;
+import ch.rasc.darksky.model.DsBlock;
+import ch.rasc.darksky.model.DsForecastRequest;
+import ch.rasc.darksky.model.DsResponse;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+public class DsClientResilienceTest {
+
+	private static final DsForecastRequest REQUEST = DsForecastRequest.builder()
+			.latitude("37.8267").longitude("-122.4233").build();
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	/**
+	 * Status codes of the next responses, 200 when empty
+	 */
+	private final Queue<Integer> statusCodes = new ConcurrentLinkedQueue<>();
+
+	private OkHttpClient httpClient;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		byte[] json;
+		try (InputStream in = getClass().getClassLoader()
+				.getResourceAsStream("forecast.json")) {
+			json = readAll(in);
+		}
+		byte[] error = "{\"code\":503,\"error\":\"unavailable\"}"
+				.getBytes(StandardCharsets.UTF_8);
+		this.httpClient = new OkHttpClient.Builder().addInterceptor(chain -> {
+			this.calls.incrementAndGet();
+			Integer code = this.statusCodes.poll();
+			boolean ok = code == null || code.intValue() == 200;
+			return new Response.Builder().request(chain.request())
+					.protocol(Protocol.HTTP_1_1).code(ok ? 200 : code.intValue())
+					.message(ok ? "OK" : "Error")
+					.body(ResponseBody.create(ok ? json : error,
+							MediaType.get("application/json")))
+					.build();
+		}).build();
+	}
+
+	@Test
+	public void retriesServerErrors() throws Exception {
+		DsClient client = DsClient.builder("key").httpClient(this.httpClient)
+				.retryPolicy(DsRetryPolicy.builder().maxAttempts(3)
+						.initialBackoff(Duration.ofMillis(5)).build())
+				.build();
+
+		this.statusCodes.add(503);
+		this.statusCodes.add(500);
+		assertThat(client.sendForecastRequest(REQUEST)).isNotNull();
+		assertThat(this.calls.get()).isEqualTo(3);
+
+		this.statusCodes.add(503);
+		assertThat(client.sendForecastRequestAsync(REQUEST).get()).isNotNull();
+		assertThat(this.calls.get()).isEqualTo(5);
+		assertThat(client.metrics().retries()).isEqualTo(3);
+
+		this.statusCodes.add(403);
+		assertThatThrownBy(() -> client.sendForecastRequest(REQUEST))
+				.isInstanceOf(DsHttpException.class)
+				.satisfies(e -> assertThat(((DsHttpException) e).getCode())
+						.isEqualTo(403));
+		assertThat(this.calls.get()).isEqualTo(6);
+	}
+
+	@Test
+	public void circuitBreakerFailsFast() throws Exception {
+		DsClient client = DsClient.builder("key").httpClient(this.httpClient)
+				.circuitBreaker(new DsCircuitBreaker(2, Duration.ofMillis(200))).build();
+
+		this.statusCodes.add(500);
+		this.statusCodes.add(502);
+		assertThatThrownBy(() -> client.sendForecastRequest(REQUEST))
+				.isInstanceOf(DsHttpException.class);
+		assertThatThrownBy(() -> client.sendForecastRequestAsync(REQUEST).get())
+				.isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(DsHttpException.class);
+
+		assertThatThrownBy(() -> client.sendForecastRequest(REQUEST))
+				.isInstanceOf(DsCircuitOpenException.class);
+		assertThat(this.calls.get()).isEqualTo(2);
+		assertThat(client.metrics().circuitOpened()).isEqualTo(1);
+		assertThat(client.metrics().circuitRejections()).isEqualTo(1);
+
+		Thread.sleep(250);
+		assertThat(client.sendForecastRequest(REQUEST)).isNotNull();
+		assertThat(this.calls.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void staleIfError() throws Exception {
+		Map<DsBlock, Duration> ttls = new EnumMap<>(DsBlock.class);
+		for (DsBlock block : DsBlock.values()) {
+			ttls.put(block, Duration.ofMillis(1));
+		}
+		DsClient client = DsClient.builder("key").httpClient(this.httpClient)
+				.cache(new DsResponseCache(10, ttls, Duration.ofHours(1)))
+				.staleIfError(true).build();
+
+		DsResponse response = client.sendForecastRequest(REQUEST);
+		Thread.sleep(5);
+
+		this.statusCodes.add(503);
+		assertThat(client.sendForecastRequest(REQUEST)).isSameAs(response);
+		this.statusCodes.add(503);
+		assertThat(client.sendForecastRequestAsync(REQUEST).get()).isSameAs(response);
+		assertThat(this.calls.get()).isEqualTo(3);
+		assertThat(client.metrics().staleResponses()).isEqualTo(2);
+
+		// a client error is not hidden
+		this.statusCodes.add(400);
+		assertThatThrownBy(() -> client.sendForecastRequest(REQUEST))
+				.isInstanceOf(DsHttpException.class);
+	}
+
+	@Test
+	public void staleWhileRevalidate() throws Exception {
+		Map<DsBlock, Duration> ttls = new EnumMap<>(DsBlock.class);
+		for (DsBlock block : DsBlock.values()) {
+			ttls.put(block, Duration.ofMillis(1));
+		}
+		DsClient client = DsClient.builder("key").httpClient(this.httpClient)
+				.cache(new DsResponseCache(10, ttls, Duration.ofHours(1)))
+				.refresh(DsRefreshPolicy.builder()
+						.staleWhileRevalidate(Duration.ofHours(1)).build())
+				.build();
+
+		DsResponse response = client.sendForecastRequest(REQUEST);
+		Thread.sleep(5);
+
+		assertThat(client.sendForecastRequest(REQUEST)).isSameAs(response);
+		for (int i = 0; i < 100 && this.calls.get() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(this.calls.get()).isEqualTo(2);
+		assertThat(client.metrics().refreshes()).isEqualTo(1);
+
+		DsResponse refreshed = null;
+		for (int i = 0; i < 100; i++) {
+			refreshed = client.sendForecastRequestAsync(REQUEST).get();
+			if (refreshed != response) {
+				break;
+			}
+			Thread.sleep(10);
+		}
+		assertThat(refreshed).isNotSameAs(response);
+	}
+
+	@Test
+	public void coalescedAsyncRequestReleasedOnRejection(@TempDir Path dir)
+			throws Exception {
+		try (DsDiskCache diskCache = new DsDiskCache(dir.resolve("cache"))) {
+			DsClient client = DsClient.builder("key").httpClient(this.httpClient)
+					.diskCache(diskCache).coalesceRequests(true).decodeExecutor(r -> {
+						throw new RejectedExecutionException();
+					}).build();
+
+			for (int i = 0; i < 2; i++) {
+				assertThatThrownBy(() -> client.sendForecastRequestAsync(REQUEST))
+						.isInstanceOf(RejectedExecutionException.class);
+			}
+			assertThat(this.calls.get()).isEqualTo(0);
+		}
+	}
+
+	@Test
+	public void diskCacheFailureDoesNotFailRequest(@TempDir Path dir) throws Exception {
+		DsDiskCache diskCache = new DsDiskCache(dir.resolve("cache"));
+		DsClient client = DsClient.builder("key").httpClient(this.httpClient)
+				.diskCache(diskCache)
+				.circuitBreaker(new DsCircuitBreaker(1, Duration.ofMinutes(1))).build();
+		assertThat(client.sendForecastRequest(REQUEST)).isNotNull();
+
+		// reads and writes of the cached entry fail
+		diskCache.close();
+		assertThat(client.sendForecastRequest(REQUEST)).isNotNull();
+		assertThat(client.sendForecastRequestAsync(REQUEST).get()).isNotNull();
+		assertThat(this.calls.get()).isEqualTo(3);
+		assertThat(client.metrics().errors()).isEqualTo(0);
+		assertThat(client.metrics().diskCacheErrors()).isEqualTo(4);
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+}
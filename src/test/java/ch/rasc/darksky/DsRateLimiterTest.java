@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.darksky.model.DsPriority;
+
+public class DsRateLimiterTest {
+
+	@Test
+	public void shedsLowPriorityFirst() {
+		DsRateLimiter limiter = DsRateLimiter.builder().dailyQuota(10).build();
+
+		for (int i = 0; i < 8; i++) {
+			assertThat(limiter.acquire(DsPriority.PREFETCH)).isCompleted();
+		}
+		assertThatThrownBy(() -> limiter.acquire(DsPriority.PREFETCH).join())
+				.isInstanceOf(CompletionException.class)
+				.hasCauseInstanceOf(DsQuotaExceededException.class);
+		assertThat(limiter.acquire(DsPriority.NORMAL)).isCompleted();
+
+		// the header counts calls of other applications
+		limiter.recordApiCalls("9");
+		assertThat(limiter.quotaUsed()).isEqualTo(9);
+		assertThat(limiter.acquire(DsPriority.NORMAL)).isCompletedExceptionally();
+		assertThat(limiter.acquire(DsPriority.INTERACTIVE)).isCompleted();
+		assertThat(limiter.acquire(DsPriority.INTERACTIVE)).isCompletedExceptionally();
+	}
+
+	@Test
+	public void servesWaitingRequestsByPriority() {
+		DsRateLimiter limiter = DsRateLimiter.builder().permitsPerSecond(5).build();
+		List<DsPriority> order = new CopyOnWriteArrayList<>();
+
+		long start = System.nanoTime();
+		CompletableFuture<Void> first = limiter.acquire(DsPriority.PREFETCH);
+		assertThat(first).isCompleted();
+
+		CompletableFuture<?> prefetch = limiter.acquire(DsPriority.PREFETCH)
+				.thenRun(() -> order.add(DsPriority.PREFETCH));
+		CompletableFuture<?> normal = limiter.acquire(DsPriority.NORMAL)
+				.thenRun(() -> order.add(DsPriority.NORMAL));
+		CompletableFuture<?> interactive = limiter.acquire(DsPriority.INTERACTIVE)
+				.thenRun(() -> order.add(DsPriority.INTERACTIVE));
+		assertThat(limiter.queueLength()).isEqualTo(3);
+
+		CompletableFuture.allOf(prefetch, normal, interactive).join();
+		assertThat(order).containsExactly(DsPriority.INTERACTIVE, DsPriority.NORMAL,
+				DsPriority.PREFETCH);
+		assertThat(System.nanoTime() - start)
+				.isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(560));
+	}
+
+	@Test
+	public void cancelledRequestsDoNotUseQuota() {
+		DsRateLimiter limiter = DsRateLimiter.builder().permitsPerSecond(20)
+				.dailyQuota(2).build();
+		assertThat(limiter.acquire(DsPriority.INTERACTIVE)).isCompleted();
+
+		CompletableFuture<Void> cancelled = limiter.acquire(DsPriority.INTERACTIVE);
+		CompletableFuture<Void> waiting = limiter.acquire(DsPriority.INTERACTIVE);
+		assertThat(limiter.queueLength()).isEqualTo(2);
+		cancelled.cancel(false);
+
+		waiting.join();
+		assertThat(limiter.quotaUsed()).isEqualTo(2);
+		assertThat(limiter.queueLength()).isZero();
+	}
+}
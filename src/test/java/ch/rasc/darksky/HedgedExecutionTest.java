@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class HedgedExecutionTest {
+
+	@Test
+	public void hedgeWinsAndCancelsSlowAttempt() {
+		List<CompletableFuture<String>> attempts = new ArrayList<>();
+		AtomicInteger wins = new AtomicInteger();
+
+		CompletableFuture<String> result = HedgedExecution.run(() -> {
+			CompletableFuture<String> attempt = new CompletableFuture<>();
+			synchronized (attempts) {
+				attempts.add(attempt);
+				if (attempts.size() == 2) {
+					attempt.complete("hedge");
+				}
+			}
+			return attempt;
+		}, 20, DefaultScheduler.get(), () -> true, wins::incrementAndGet);
+
+		assertThat(result.join()).isEqualTo("hedge");
+		assertThat(wins.get()).isEqualTo(1);
+		assertThat(attempts.get(0)).isCancelled();
+	}
+
+	@Test
+	public void noHedgeWhenFastOrNotAllowed() throws Exception {
+		AtomicInteger starts = new AtomicInteger();
+		CompletableFuture<String> fast = HedgedExecution.run(() -> {
+			starts.incrementAndGet();
+			return CompletableFuture.completedFuture("fast");
+		}, 10, DefaultScheduler.get(), () -> true, () -> {
+			// nothing here
+		});
+		assertThat(fast.join()).isEqualTo("fast");
+
+		CompletableFuture<String> slow = HedgedExecution.run(() -> {
+			starts.incrementAndGet();
+			return CompletableFuture.supplyAsync(() -> {
+				sleep(100);
+				return "slow";
+			});
+		}, 10, DefaultScheduler.get(), () -> false, () -> {
+			// nothing here
+		});
+		assertThat(slow.join()).isEqualTo("slow");
+		Thread.sleep(20);
+		assertThat(starts.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void failsWhenAllAttemptsFail() {
+		AtomicInteger starts = new AtomicInteger();
+		CompletableFuture<String> result = HedgedExecution.run(() -> {
+			int attempt = starts.incrementAndGet();
+			return CompletableFuture.supplyAsync(() -> {
+				sleep(attempt == 1 ? 100 : 0);
+				throw new CompletionException(new IOException("attempt " + attempt));
+			});
+		}, 10, DefaultScheduler.get(), () -> true, () -> {
+			// nothing here
+		});
+
+		assertThatThrownBy(result::join).hasCauseInstanceOf(IOException.class)
+				.hasMessageContaining("attempt 2");
+		assertThat(starts.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void cancelsAttemptsWhenResultIsCancelled() throws Exception {
+		List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+		CompletableFuture<String> result = HedgedExecution.run(() -> {
+			CompletableFuture<String> attempt = new CompletableFuture<>();
+			attempts.add(attempt);
+			return attempt;
+		}, 20, DefaultScheduler.get(), () -> true, () -> {
+			// nothing here
+		});
+		while (attempts.size() < 2) {
+			Thread.sleep(5);
+		}
+		result.cancel(false);
+		assertThat(attempts).hasSize(2).allMatch(CompletableFuture::isCancelled);
+
+		// the timer of a cancelled execution does not start a second attempt
+		attempts.clear();
+		result = HedgedExecution.run(() -> {
+			CompletableFuture<String> attempt = new CompletableFuture<>();
+			attempts.add(attempt);
+			return attempt;
+		}, 20, DefaultScheduler.get(), () -> true, () -> {
+			// nothing here
+		});
+		result.cancel(false);
+		Thread.sleep(60);
+		assertThat(attempts).hasSize(1).allMatch(CompletableFuture::isCancelled);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
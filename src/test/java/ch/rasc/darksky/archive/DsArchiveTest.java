@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.rasc.darksky.json.JacksonJsonConverter;
+import ch.rasc.darksky.model.DsColumnarDataBlock;
+import ch.rasc.darksky.model.DsDataPoint;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsIcon;
+import ch.rasc.darksky.model.DsPrecipType;
+import ch.rasc.darksky.model.DsResponse;
+import ch.rasc.darksky.model.ImmutableDsDataBlock;
+import ch.rasc.darksky.model.ImmutableDsDataPoint;
+import ch.rasc.darksky.model.ImmutableDsResponse;
+
+public class DsArchiveTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void storeAndRead() throws IOException, URISyntaxException {
+		DsResponse response;
+		try (InputStream in = getClass().getClassLoader()
+				.getResourceAsStream("forecast.json")) {
+			response = new JacksonJsonConverter().deserialize(in);
+		}
+
+		DsArchive archive = new DsArchive(this.dir);
+		String latitude = response.latitude().toPlainString() + "0";
+		String longitude = response.longitude().toPlainString();
+		LocalDate date = archive.store(response);
+
+		assertThat(archive.contains(latitude, longitude, date)).isTrue();
+		assertThat(archive.contains(latitude, longitude, date.plusDays(1))).isFalse();
+		assertThat(archive.hourly(latitude, longitude, date.plusDays(1))).isNull();
+
+		assertSameValues(archive.hourly(latitude, longitude, date),
+				DsColumnarDataBlock.of(response.hourly()));
+		assertSameValues(archive.daily(latitude, longitude, date),
+				DsColumnarDataBlock.of(response.daily()));
+		assertSameValues(
+				archive.hourly(latitude, longitude, date.minusDays(3), date.plusDays(3)),
+				DsColumnarDataBlock.of(response.hourly()));
+		assertThat(archive.daily(latitude, longitude, date.plusDays(1), date.plusDays(5))
+				.size()).isEqualTo(0);
+
+		Path json = Paths.get(getClass().getClassLoader().getResource("forecast.json")
+				.toURI());
+		Path file;
+		try (Stream<Path> files = Files.walk(this.dir)) {
+			file = files.filter(Files::isRegularFile).findFirst().get();
+		}
+		assertThat(Files.size(file)).isLessThan(Files.size(json) / 4);
+	}
+
+	@Test
+	public void storeConcurrently() throws Exception {
+		DsResponse response;
+		try (InputStream in = getClass().getClassLoader()
+				.getResourceAsStream("forecast.json")) {
+			response = new JacksonJsonConverter().deserialize(in);
+		}
+		DsArchive archive = new DsArchive(this.dir);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<LocalDate>> futures = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				futures.add(executor.submit(() -> archive.store(response)));
+			}
+			for (Future<LocalDate> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		try (Stream<Path> files = Files.walk(this.dir)) {
+			assertThat(files.filter(Files::isRegularFile)).hasSize(1);
+		}
+		LocalDate date = archive.store(response);
+		assertSameValues(
+				archive.daily(response.latitude().toPlainString(),
+						response.longitude().toPlainString(), date),
+				DsColumnarDataBlock.of(response.daily()));
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void storeUnknownConstants() throws IOException {
+		DsDataPoint hour = ImmutableDsDataPoint.builder().time(1584702000L)
+				.icon(DsIcon.UNKNOWN).precipType(DsPrecipType.UNKNOWN).build();
+		DsDataPoint nextHour = ImmutableDsDataPoint.builder().time(1584705600L)
+				.icon(DsIcon.RAIN).build();
+		DsResponse response = ImmutableDsResponse.builder()
+				.latitude(new BigDecimal("47.3769")).longitude(new BigDecimal("8.5417"))
+				.timezone("Europe/Zurich").offset(1)
+				.hourly(ImmutableDsDataBlock.builder().icon(DsIcon.UNKNOWN)
+						.addData(hour, nextHour).build())
+				.build();
+
+		DsArchive archive = new DsArchive(this.dir);
+		LocalDate date = archive.store(response);
+		DsColumnarDataBlock hourly = archive.hourly("47.3769", "8.5417", date);
+		assertThat(hourly.icon()).isEqualTo(DsIcon.UNKNOWN);
+		assertThat(hourly.icon(0)).isEqualTo(DsIcon.UNKNOWN);
+		assertThat(hourly.precipType(0)).isEqualTo(DsPrecipType.UNKNOWN);
+		assertThat(hourly.icon(1)).isEqualTo(DsIcon.RAIN);
+		assertThat(hourly.precipType(1)).isNull();
+	}
+
+	private static void assertSameValues(DsColumnarDataBlock actual,
+			DsColumnarDataBlock expected) {
+		assertThat(actual.size()).isEqualTo(expected.size());
+		assertThat(actual.time()).containsExactly(expected.time());
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.icon(i)).isEqualTo(expected.icon(i));
+			assertThat(actual.precipType(i)).isEqualTo(expected.precipType(i));
+			assertThat(actual.summary(i)).isEqualTo(expected.summary(i));
+			for (DsDataPointField field : DsDataPointField.values()) {
+				if (field.isNumeric()) {
+					assertThat(Double.valueOf(actual.value(field, i)))
+							.as("%s %d", field, i)
+							.isEqualTo(Double.valueOf(expected.value(field, i)));
+				}
+			}
+		}
+	}
+}
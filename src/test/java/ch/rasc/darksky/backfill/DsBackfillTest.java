@@ -0,0 +1,216 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.backfill;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.rasc.darksky.DsClient;
+import ch.rasc.darksky.archive.DsArchive;
+import ch.rasc.darksky.model.DsResponse;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+public class DsBackfillTest {
+
+	@TempDir
+	Path dir;
+
+	private static final Map<String, String> ZONES = new HashMap<>();
+
+	static {
+		ZONES.put("8.5417", "Europe/Zurich");
+		ZONES.put("151.2093", "Australia/Sydney");
+		ZONES.put("151.21", "Australia/Sydney");
+		ZONES.put("-157.4", "Pacific/Kiritimati");
+		ZONES.put("-171.77", "Pacific/Apia");
+	}
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	@Test
+	public void resumesAfterQuotaExhaustion() throws Exception {
+		DsClient client = DsClient.builder("key").httpClient(httpClient()).build();
+		List<DsBackfillLocation> locations = Arrays.asList(
+				DsBackfillLocation.of("47.3769", "8.5417"),
+				DsBackfillLocation.of("-33.8688", "151.2093"));
+		MemorySink sink = new MemorySink();
+		Path checkpoint = this.dir.resolve("backfill.checkpoint");
+
+		DsBackfill.Builder builder = DsBackfill.builder(client).locations(locations)
+				.dates(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 3)).sink(sink)
+				.checkpoint(checkpoint).dailyQuota(4).maxInFlight(2)
+				.checkpointInterval(1);
+
+		DsBackfillResult result = builder.build().run();
+		assertThat(result.stored()).isEqualTo(4);
+		assertThat(result.remaining()).isEqualTo(2);
+		assertThat(result.quotaExhausted()).isTrue();
+		assertThat(this.calls.get()).isEqualTo(4);
+
+		// same day: the quota stays exhausted
+		result = builder.build().run();
+		assertThat(result.stored()).isEqualTo(0);
+		assertThat(result.quotaExhausted()).isTrue();
+
+		result = builder.dailyQuota(10).build().run();
+		assertThat(result.stored()).isEqualTo(2);
+		assertThat(result.isComplete()).isTrue();
+		assertThat(this.calls.get()).isEqualTo(6);
+		assertThat(sink.tasks).hasSize(6).contains("-33.8688,151.2093 2019-01-03");
+
+		// a new backfill without checkpoint skips the stored days
+		result = DsBackfill.builder(client).locations(locations)
+				.dates(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 4)).sink(sink)
+				.build().run();
+		assertThat(result.skipped()).isEqualTo(6);
+		assertThat(result.stored()).isEqualTo(2);
+		assertThat(this.calls.get()).isEqualTo(8);
+	}
+
+	@Test
+	public void archiveSinkStoresUnderTaskLocation() throws Exception {
+		DsClient client = DsClient.builder("key").httpClient(httpClient()).build();
+		// the coordinates of the returned response differ from the requested ones
+		DsBackfillLocation location = DsBackfillLocation.of("-33.87", "151.21");
+		DsArchive archive = new DsArchive(this.dir);
+		DsBackfill.Builder builder = DsBackfill.builder(client)
+				.locations(Arrays.asList(location))
+				.dates(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 2))
+				.sink(new DsArchiveBackfillSink(archive));
+
+		assertThat(builder.build().run().stored()).isEqualTo(2);
+		assertThat(archive.contains("-33.87", "151.21", LocalDate.of(2019, 1, 2)))
+				.isTrue();
+
+		DsBackfillResult result = builder.build().run();
+		assertThat(result.skipped()).isEqualTo(2);
+		assertThat(result.stored()).isEqualTo(0);
+		assertThat(this.calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void localNoon() {
+		DsBackfillTask zurich = new DsBackfillTask(DsBackfillLocation.of("47", "8.5"),
+				LocalDate.of(2019, 1, 1));
+		DsBackfillTask honolulu = new DsBackfillTask(
+				DsBackfillLocation.of("21.3", "-157.8"), LocalDate.of(2019, 1, 1));
+		assertThat(zurich.time()).isEqualTo(1546341960L);
+		assertThat(honolulu.time()).isEqualTo(1546381872L);
+	}
+
+	@Test
+	public void requestsLocalNoonInZonesFarFromSolarTime() throws Exception {
+		DsClient client = DsClient.builder("key").httpClient(httpClient()).build();
+		// UTC+14, noon solar time is on the next day
+		DsBackfillLocation kiritimati = DsBackfillLocation.of("1.87", "-157.4");
+		// UTC+14 in January 2019 (daylight saving time of UTC+13)
+		DsBackfillLocation apia = DsBackfillLocation.of("-13.83", "-171.77");
+		Map<String, LocalDate> dates = new ConcurrentHashMap<>();
+		DsBackfillSink sink = new MemorySink() {
+			@Override
+			public void accept(DsBackfillTask task, DsResponse response) {
+				super.accept(task, response);
+				dates.put(task.toString(), DsBackfillTask.date(response));
+			}
+		};
+
+		DsBackfillResult result = DsBackfill.builder(client)
+				.locations(Arrays.asList(kiritimati, apia))
+				.dates(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 2)).sink(sink)
+				.build().run();
+		assertThat(result.stored()).isEqualTo(4);
+		assertThat(result.isComplete()).isTrue();
+		assertThat(this.calls.get()).isEqualTo(8);
+		assertThat(dates).hasSize(4);
+		dates.forEach((task, date) -> assertThat(task).endsWith(date.toString()));
+
+		DsBackfillTask task = new DsBackfillTask(kiritimati, LocalDate.of(2019, 1, 1));
+		assertThat(task.time(ZoneId.of("Pacific/Kiritimati"))).isEqualTo(1546293600L);
+	}
+
+	@Test
+	public void validatesDates() {
+		DsClient client = DsClient.builder("key").build();
+		DsBackfill.Builder builder = DsBackfill.builder(client)
+				.locations(Arrays.asList(DsBackfillLocation.of("47.3769", "8.5417")))
+				.sink(new MemorySink());
+
+		LocalDate from = LocalDate.of(2019, 1, 2);
+		assertThatThrownBy(() -> builder.dates(from, null).build())
+				.isInstanceOf(NullPointerException.class).hasMessage("to");
+		assertThatThrownBy(() -> builder.dates(from, from.minusDays(1)).build())
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(builder.dates(from, from).build().size()).isEqualTo(1);
+	}
+
+	/**
+	 * Answers Time Machine requests with the daily block of the local day of the
+	 * requested time. The coordinates of the response differ from the requested ones.
+	 */
+	private OkHttpClient httpClient() {
+		return new OkHttpClient.Builder().addInterceptor(chain -> {
+			this.calls.incrementAndGet();
+			List<String> segments = chain.request().url().pathSegments();
+			String[] location = segments.get(segments.size() - 1).split(",");
+			ZoneId zone = ZoneId.of(ZONES.getOrDefault(location[1], "UTC"));
+			ZonedDateTime day = Instant.ofEpochSecond(Long.parseLong(location[2]))
+					.atZone(zone).toLocalDate().atStartOfDay(zone);
+			String json = "{\"latitude\":" + location[0] + "1,\"longitude\":"
+					+ location[1] + "1,\"timezone\":\"" + zone.getId()
+					+ "\",\"offset\":" + day.getOffset().getTotalSeconds() / 3600
+					+ ",\"daily\":{\"data\":[{\"time\":" + day.toEpochSecond()
+					+ "}]}}";
+			return new Response.Builder().request(chain.request())
+					.protocol(Protocol.HTTP_1_1).code(200).message("OK")
+					.body(ResponseBody.create(json, MediaType.get("application/json")))
+					.build();
+		}).build();
+	}
+
+	static class MemorySink implements DsBackfillSink {
+		final Set<String> tasks = ConcurrentHashMap.newKeySet();
+
+		@Override
+		public boolean contains(DsBackfillTask task) {
+			return this.tasks.contains(task.toString());
+		}
+
+		@Override
+		public void accept(DsBackfillTask task, DsResponse response) {
+			this.tasks.add(task.toString());
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.binary;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.darksky.json.DsNumberMode;
+import ch.rasc.darksky.json.JacksonJsonConverter;
+import ch.rasc.darksky.model.DsAlertSeverity;
+import ch.rasc.darksky.model.DsDoubleDataPoint;
+import ch.rasc.darksky.model.DsResponse;
+import ch.rasc.darksky.model.ImmutableDsAlert;
+import ch.rasc.darksky.model.ImmutableDsFlag;
+import ch.rasc.darksky.model.ImmutableDsResponse;
+
+public class DsResponseCodecTest {
+
+	@Test
+	public void roundTrip() throws IOException, URISyntaxException {
+		for (String file : new String[] { "forecast.json", "forecast-hourly.json" }) {
+			byte[] json = Files.readAllBytes(Paths
+					.get(getClass().getClassLoader().getResource(file).toURI()));
+			String text = new String(json, StandardCharsets.UTF_8);
+			DsResponse response = new JacksonJsonConverter().deserialize(text);
+
+			byte[] encoded = DsResponseCodec.encode(response);
+			assertThat(encoded.length).isLessThan(json.length / 3);
+			assertThat(DsResponseCodec.decode(encoded)).isEqualTo(response);
+
+			DsResponse doubles = DsResponseCodec.decode(ByteBuffer.wrap(encoded),
+					DsNumberMode.DOUBLE);
+			assertThat(doubles.currently()).isInstanceOf(DsDoubleDataPoint.class);
+			DsResponse expected = new JacksonJsonConverter(DsNumberMode.DOUBLE)
+					.deserialize(text);
+			assertThat(doubles).isEqualTo(expected);
+			ByteBuffer reencoded = ByteBuffer.wrap(DsResponseCodec.encode(doubles));
+			assertThat(DsResponseCodec.decode(reencoded, DsNumberMode.DOUBLE))
+					.isEqualTo(expected);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void decodeFromBufferPosition() throws IOException {
+		Map<String, Object> unavailable = new LinkedHashMap<>();
+		unavailable.put("reason", "maintenance");
+		unavailable.put("codes", Arrays.asList(1, 5_000_000_000L, 2.5, true, null));
+		DsResponse response = ImmutableDsResponse.builder()
+				.latitude(new BigDecimal("-33.8688")).longitude(new BigDecimal("1e40"))
+				.timezone("Australia/Sydney").offset(10)
+				.addAlerts(ImmutableDsAlert.builder().title("Storm").description("Wind")
+						.uri("https://example.com").time(1000).expires(900)
+						.severity(DsAlertSeverity.WARNING).addRegions("North", "South")
+						.build())
+				.flags(ImmutableDsFlag.builder().darkskyUnavailable(unavailable).build())
+				.build();
+
+		BinaryWriter out = new BinaryWriter();
+		out.writeByte(42);
+		DsResponseCodec.encode(response, out);
+		DsResponseCodec.encode(response, out);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(out.size());
+		buffer.put(out.toByteArray()).flip();
+		buffer.get();
+
+		assertThat(DsResponseCodec.decode(buffer)).isEqualTo(response);
+		assertThat(DsResponseCodec.decode(buffer)).isEqualTo(response);
+		assertThat(buffer.hasRemaining()).isFalse();
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void rejectsCorruptInput() {
+		byte[] encoded = DsResponseCodec.encode(ImmutableDsResponse.builder()
+				.latitude(BigDecimal.ONE).longitude(BigDecimal.TEN).timezone("UTC")
+				.offset(0).build());
+
+		assertThatThrownBy(() -> DsResponseCodec.decode(new byte[] { 1, 2, 3, 4, 5 }))
+				.isInstanceOf(IOException.class).hasMessage("Not an encoded response");
+		assertThatThrownBy(
+				() -> DsResponseCodec.decode(Arrays.copyOf(encoded, encoded.length - 2)))
+						.isInstanceOf(IOException.class).hasMessage("Corrupt response");
+	}
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.rasc.darksky.cache.DsResponseCacheTest.MutableClock;
+import ch.rasc.darksky.model.DsBlock;
+
+public class DsDiskCacheTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void survivesReopen() throws IOException {
+		Path file = this.dir.resolve("cache.log");
+		MutableClock clock = new MutableClock();
+
+		try (DsDiskCache cache = new DsDiskCache(file, DsResponseCache.defaultTtls(),
+				clock)) {
+			cache.put("a", bytes("first"), EnumSet.of(DsBlock.DAILY));
+			cache.put("a", bytes("second"), EnumSet.of(DsBlock.DAILY));
+			cache.put("b", bytes("minutely"), EnumSet.allOf(DsBlock.class));
+			cache.putHistorical("c", bytes("history"));
+			assertThat(cache.get("a")).isEqualTo(bytes("second"));
+		}
+
+		try (DsDiskCache cache = new DsDiskCache(file, DsResponseCache.defaultTtls(),
+				clock)) {
+			assertThat(cache.size()).isEqualTo(3);
+			assertThat(cache.get("a")).isEqualTo(bytes("second"));
+			assertThat(cache.get("b")).isEqualTo(bytes("minutely"));
+			DsDiskCache.Entry entry = cache.getEntry("a");
+			assertThat(entry.body()).isEqualTo(bytes("second"));
+			assertThat(entry.expiresAt() - entry.fetchedAt())
+					.isEqualTo(Duration.ofHours(1).toMillis());
+			assertThat(cache.getEntry("c").expiresAt()).isEqualTo(Long.MAX_VALUE);
+
+			clock.advance(Duration.ofDays(365));
+			assertThat(cache.get("a")).isNull();
+			assertThat(cache.get("b")).isNull();
+			assertThat(cache.get("c")).isEqualTo(bytes("history"));
+			assertThat(cache.hitCount()).isEqualTo(5);
+			assertThat(cache.missCount()).isEqualTo(2);
+
+			long size = cache.fileSize();
+			cache.compact();
+			assertThat(cache.fileSize()).isLessThan(size);
+			assertThat(cache.size()).isEqualTo(1);
+			assertThat(cache.get("c")).isEqualTo(bytes("history"));
+		}
+
+		try (DsDiskCache cache = new DsDiskCache(file, DsResponseCache.defaultTtls(),
+				clock)) {
+			assertThat(cache.size()).isEqualTo(1);
+			assertThat(cache.get("c")).isEqualTo(bytes("history"));
+		}
+	}
+
+	@Test
+	public void discardsPartialRecord() throws IOException {
+		Path file = this.dir.resolve("cache.log");
+
+		try (DsDiskCache cache = new DsDiskCache(file)) {
+			cache.putHistorical("a", bytes("complete"));
+			cache.putHistorical("b", bytes("torn"));
+		}
+
+		long size = Files.size(file);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(size - 2);
+		}
+
+		try (DsDiskCache cache = new DsDiskCache(file)) {
+			assertThat(cache.get("a")).isEqualTo(bytes("complete"));
+			assertThat(cache.get("b")).isNull();
+
+			cache.putHistorical("b", bytes("rewritten"));
+			assertThat(cache.get("b")).isEqualTo(bytes("rewritten"));
+		}
+
+		try (DsDiskCache cache = new DsDiskCache(file)) {
+			assertThat(cache.get("b")).isEqualTo(bytes("rewritten"));
+		}
+	}
+
+	@Test
+	public void invalidateSurvivesReopen() throws IOException {
+		Path file = this.dir.resolve("cache.log");
+
+		try (DsDiskCache cache = new DsDiskCache(file)) {
+			cache.putHistorical("a", bytes("first"));
+			cache.putHistorical("b", bytes("second"));
+			cache.invalidate("a");
+			cache.invalidate("unknown");
+			assertThat(cache.get("a")).isNull();
+		}
+
+		try (DsDiskCache cache = new DsDiskCache(file)) {
+			assertThat(cache.size()).isEqualTo(1);
+			assertThat(cache.get("a")).isNull();
+			assertThat(cache.get("b")).isEqualTo(bytes("second"));
+
+			cache.putHistorical("a", bytes("again"));
+			assertThat(cache.get("a")).isEqualTo(bytes("again"));
+		}
+
+		try (DsDiskCache cache = new DsDiskCache(file)) {
+			assertThat(cache.get("a")).isEqualTo(bytes("again"));
+		}
+	}
+
+	@Test
+	public void compactsWhenFull() throws IOException {
+		Path file = this.dir.resolve("cache.log");
+		MutableClock clock = new MutableClock();
+		byte[] body = new byte[1000];
+
+		try (DsDiskCache cache = new DsDiskCache(file, DsResponseCache.defaultTtls(),
+				10_000, clock)) {
+			for (int i = 0; i < 50; i++) {
+				cache.putHistorical("key" + i, body);
+				clock.advance(Duration.ofSeconds(1));
+				assertThat(cache.fileSize()).isLessThanOrEqualTo(10_000);
+			}
+			assertThat(Files.size(file)).isLessThanOrEqualTo(10_000);
+			assertThat(cache.get("key49")).isEqualTo(body);
+			assertThat(cache.get("key0")).isNull();
+			assertThat(cache.size()).isBetween(5, 9);
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
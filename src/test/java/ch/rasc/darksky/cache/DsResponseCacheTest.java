@@ -0,0 +1,160 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.darksky.model.DsBlock;
+import ch.rasc.darksky.model.DsResponse;
+import ch.rasc.darksky.model.ImmutableDsResponse;
+
+public class DsResponseCacheTest {
+
+	@Test
+	public void expiresWithShortestBlockTtl() {
+		MutableClock clock = new MutableClock();
+		DsResponseCache cache = new DsResponseCache(10, DsResponseCache.defaultTtls(),
+				clock);
+		DsResponse response = response("1");
+
+		cache.put("daily", response, EnumSet.of(DsBlock.DAILY));
+		cache.put("all", response, EnumSet.allOf(DsBlock.class));
+
+		assertThat(cache.get("daily")).isSameAs(response);
+		assertThat(cache.get("all")).isSameAs(response);
+
+		clock.advance(Duration.ofSeconds(61));
+		assertThat(cache.get("daily")).isSameAs(response);
+		assertThat(cache.get("all")).isNull();
+
+		clock.advance(Duration.ofHours(1));
+		assertThat(cache.get("daily")).isNull();
+
+		assertThat(cache.hitCount()).isEqualTo(3);
+		assertThat(cache.missCount()).isEqualTo(2);
+		assertThat(cache.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		DsResponseCache cache = new DsResponseCache(2);
+		EnumSet<DsBlock> blocks = EnumSet.of(DsBlock.DAILY);
+
+		cache.put("a", response("1"), blocks);
+		cache.put("b", response("2"), blocks);
+		assertThat(cache.get("a")).isNotNull();
+		cache.put("c", response("3"), blocks);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.get("b")).isNull();
+		assertThat(cache.get("a")).isNotNull();
+		assertThat(cache.get("c")).isNotNull();
+	}
+
+	@Test
+	public void lookupReturnsAgeAndHits() {
+		MutableClock clock = new MutableClock();
+		DsResponseCache cache = new DsResponseCache(10, DsResponseCache.defaultTtls(),
+				Duration.ofMinutes(5), clock);
+		DsResponse response = response("1");
+		EnumSet<DsBlock> blocks = EnumSet.of(DsBlock.HOURLY);
+
+		cache.put("a", response, blocks);
+		cache.get("a");
+		clock.advance(Duration.ofMinutes(12));
+		DsResponseCache.Lookup lookup = cache.lookup("a");
+		assertThat(lookup.response()).isSameAs(response);
+		assertThat(lookup.hits()).isEqualTo(2);
+		assertThat(lookup.ttlMillis()).isEqualTo(Duration.ofMinutes(15).toMillis());
+		assertThat(lookup.lifetimeUsed()).isEqualTo(0.8);
+		assertThat(lookup.isExpired()).isFalse();
+
+		clock.advance(Duration.ofMinutes(5));
+		lookup = cache.lookup("a");
+		assertThat(lookup.isExpired()).isTrue();
+		assertThat(lookup.hits()).isEqualTo(3);
+
+		cache.put("a", response("2"), blocks);
+		assertThat(cache.lookup("a").hits()).isEqualTo(2);
+
+		clock.advance(Duration.ofMinutes(21));
+		assertThat(cache.lookup("a")).isNull();
+		assertThat(cache.hitCount()).isEqualTo(3);
+		assertThat(cache.missCount()).isEqualTo(2);
+
+		cache.putHistorical("h", response);
+		clock.advance(Duration.ofDays(100));
+		assertThat(cache.lookup("h").lifetimeUsed()).isEqualTo(0);
+	}
+
+	@Test
+	public void putKeepsOriginalExpiration() {
+		MutableClock clock = new MutableClock();
+		DsResponseCache cache = new DsResponseCache(10, DsResponseCache.defaultTtls(),
+				clock);
+		long now = clock.millis();
+
+		cache.put("a", response("1"), now - Duration.ofMinutes(14).toMillis(),
+				now + Duration.ofMinutes(1).toMillis());
+		cache.put("b", response("2"), now - Duration.ofMinutes(20).toMillis(), now);
+		DsResponseCache.Lookup lookup = cache.lookup("a");
+		assertThat(lookup.ageMillis()).isEqualTo(Duration.ofMinutes(14).toMillis());
+		assertThat(lookup.ttlMillis()).isEqualTo(Duration.ofMinutes(15).toMillis());
+		assertThat(cache.lookup("b")).isNull();
+
+		clock.advance(Duration.ofMinutes(1));
+		assertThat(cache.get("a")).isNull();
+	}
+
+	@SuppressWarnings("deprecation")
+	private static DsResponse response(String latitude) {
+		return ImmutableDsResponse.builder().latitude(new BigDecimal(latitude))
+				.longitude(BigDecimal.ONE).timezone("Europe/Zurich").offset(1).build();
+	}
+
+	static class MutableClock extends Clock {
+		private Instant now = Instant.parse("2020-03-20T12:00:00Z");
+
+		void advance(Duration duration) {
+			this.now = this.now.plus(duration);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return this.now;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+public class DsCoordinateQuantizerTest {
+
+	@Test
+	public void decimalPlaces() {
+		DsCoordinateQuantizer quantizer = DsCoordinateQuantizer.decimalPlaces(2);
+
+		assertThat(quantizer.quantize(DsCoordinate.of("46.93011019", "7.4474468")))
+				.isEqualTo(DsCoordinate.of("46.93", "7.45"));
+		assertThat(quantizer.quantize(DsCoordinate.of("46.9301", "7.445")))
+				.isEqualTo(DsCoordinate.of("46.93", "7.45"));
+		assertThat(quantizer.quantize(DsCoordinate.of("-0.001", "120")))
+				.isEqualTo(DsCoordinate.of("0", "120"));
+		assertThat(quantizer.quantize(DsCoordinate.of("-33.8651", "151.2099")))
+				.isEqualTo(DsCoordinate.of("-33.87", "151.21"));
+	}
+
+	@Test
+	public void geohash() {
+		assertThat(DsGeohash.encode(57.64911, 10.40744, 11)).isEqualTo("u4pruydqqvj");
+		assertThat(DsGeohash.encode(42.6, -5.6, 5)).isEqualTo("ezs42");
+
+		DsCoordinateQuantizer quantizer = DsCoordinateQuantizer.geohash(5);
+		DsCoordinate center = quantizer.quantize(DsCoordinate.of("57.64911", "10.40744"));
+		assertThat(center).isEqualTo(DsGeohash.center("u4pru"));
+		assertThat(quantizer.quantize(DsCoordinate.of("57.649", "10.4074")))
+				.isEqualTo(center);
+		assertThat(quantizer.quantize(center)).isEqualTo(center);
+		assertThat(DsGeohash.encode(Double.parseDouble(center.latitude()),
+				Double.parseDouble(center.longitude()), 5)).isEqualTo("u4pru");
+
+		assertThatThrownBy(() -> DsCoordinateQuantizer.geohash(13))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> DsGeohash.center("u4pa"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
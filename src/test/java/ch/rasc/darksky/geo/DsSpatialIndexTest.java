@@ -0,0 +1,202 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.darksky.cache.DsResponseCache;
+import ch.rasc.darksky.model.DsBlock;
+import ch.rasc.darksky.model.DsResponse;
+import ch.rasc.darksky.model.ImmutableDsResponse;
+
+public class DsSpatialIndexTest {
+
+	private static final long NOW = 1_600_000_000_000L;
+
+	@Test
+	public void findsNearestFreshResponse() {
+		DsSpatialIndex index = new DsSpatialIndex(0.1, 100,
+				Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+		DsResponse bern = response("46.9480", "7.4474");
+		DsResponse bernWest = response("46.9450", "7.4300");
+		DsResponse zurich = response("47.3769", "8.5417");
+
+		index.put("", bern, NOW + 1000);
+		index.put("", bernWest, NOW + 1000);
+		index.put("", zurich, NOW + 1000);
+		index.put("?units=si", response("46.9481", "7.4475"), NOW + 1000);
+		assertThat(index.size()).isEqualTo(4);
+
+		assertThat(index.nearest("", 46.9470, 7.4450, 5)).isSameAs(bern);
+		assertThat(index.nearest("", 46.9450, 7.4250, 5)).isSameAs(bernWest);
+		assertThat(index.nearest("", 47.0, 8.0, 5)).isNull();
+		assertThat(index.nearest("", 47.0, 8.0, 100)).isSameAs(bern);
+		assertThat(index.nearest("?units=si", 47.3769, 8.5417, 5)).isNull();
+
+		index.put("", bern, NOW);
+		assertThat(index.nearest("", 46.9470, 7.4450, 5)).isSameAs(bernWest);
+		index.remove("", bernWest);
+		assertThat(index.nearest("", 46.9470, 7.4450, 5)).isNull();
+	}
+
+	@Test
+	public void searchesAcrossTheAntimeridian() {
+		DsSpatialIndex index = new DsSpatialIndex(0.1, 100,
+				Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+		DsResponse fiji = response("-16.5", "179.99");
+		index.put("", fiji, Long.MAX_VALUE);
+
+		assertThat(index.nearest("", -16.5, -179.99, 5)).isSameAs(fiji);
+		assertThat(DsSpatialIndex.distanceKm(-16.5, 179.99, -16.5, -179.99))
+				.isBetween(2.1, 2.2);
+	}
+
+	@Test
+	public void limitsNumberOfLocations() {
+		DsSpatialIndex index = new DsSpatialIndex(1, 2, Clock.systemUTC());
+		long expiresAt = Long.MAX_VALUE;
+		DsResponse first = response("1", "1");
+		index.put("", first, expiresAt);
+		index.put("", response("2", "2"), expiresAt);
+		DsResponse third = response("3", "3");
+		index.put("", third, expiresAt);
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.nearest("", 1, 1, 10)).isNull();
+		assertThat(index.nearest("", 3, 3, 10)).isSameAs(third);
+
+		DsResponse replaced = response("2", "2");
+		index.put("", replaced, expiresAt);
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.nearest("", 2, 2, 10)).isSameAs(replaced);
+		assertThat(index.nearest("", 3, 3, 10)).isSameAs(third);
+	}
+
+	@Test
+	public void evictsExpiredLocationsFirst() {
+		MutableClock clock = new MutableClock(NOW);
+		DsSpatialIndex index = new DsSpatialIndex(1, 2, Duration.ofDays(1), clock);
+		DsResponse first = response("1", "1");
+		index.put("", first, NOW + 2000);
+		index.put("", response("20", "20"), NOW + 1000);
+
+		clock.millis = NOW + 1000;
+		index.put("", response("40", "40"), NOW + 3000);
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.nearest("", 1, 1, 10)).isSameAs(first);
+		assertThat(index.nearest("", 40, 40, 10)).isNotNull();
+	}
+
+	@Test
+	public void limitsAge() {
+		MutableClock clock = new MutableClock(NOW);
+		DsSpatialIndex index = new DsSpatialIndex(1, 10, Duration.ofMinutes(1), clock);
+		DsResponse response = response("1", "1");
+		index.put("", response, Long.MAX_VALUE);
+		assertThat(index.nearest("", 1, 1, 10)).isSameAs(response);
+
+		clock.millis = NOW + 60_000;
+		assertThat(index.nearest("", 1, 1, 10)).isNull();
+	}
+
+	@Test
+	public void invalidatesByKey() {
+		DsSpatialIndex index = new DsSpatialIndex(1, 10, Clock.systemUTC());
+		DsResponse bern = response("46.9480", "7.4474");
+		DsResponse zurich = response("47.3769", "8.5417");
+		index.put("bern", "", bern, Long.MAX_VALUE);
+		index.put("zurich", "", zurich, Long.MAX_VALUE);
+		assertThat(index.size()).isEqualTo(2);
+
+		index.invalidate("bern");
+		index.invalidate("unknown");
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.nearest("", 46.9480, 7.4474, 200)).isSameAs(zurich);
+
+		DsResponse moved = response("46.9480", "7.4474");
+		index.put("zurich", "", moved, Long.MAX_VALUE);
+		assertThat(index.size()).isEqualTo(1);
+		index.invalidate("zurich");
+		assertThat(index.size()).isZero();
+		assertThat(index.nearest("", 46.9480, 7.4474, 200)).isNull();
+	}
+
+	@Test
+	public void removedWithCacheEntries() {
+		DsSpatialIndex index = new DsSpatialIndex(1, 10, Clock.systemUTC());
+		DsResponseCache cache = new DsResponseCache(1);
+		cache.addRemovalListener(index::invalidate);
+		Set<DsBlock> blocks = EnumSet.of(DsBlock.DAILY);
+
+		DsResponse bern = response("46.9480", "7.4474");
+		cache.put("bern", bern, blocks);
+		index.put("bern", "", bern, Long.MAX_VALUE);
+		DsResponse zurich = response("47.3769", "8.5417");
+		cache.put("zurich", zurich, blocks);
+		index.put("zurich", "", zurich, Long.MAX_VALUE);
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.nearest("", 46.9480, 7.4474, 200)).isSameAs(zurich);
+
+		cache.invalidate("zurich");
+		assertThat(index.size()).isZero();
+	}
+
+	private static final class MutableClock extends Clock {
+		long millis;
+
+		MutableClock(long millis) {
+			this.millis = millis;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public long millis() {
+			return this.millis;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(this.millis);
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private static DsResponse response(String latitude, String longitude) {
+		return ImmutableDsResponse.builder().latitude(new BigDecimal(latitude))
+				.longitude(new BigDecimal(longitude)).timezone("Europe/Zurich")
+				.offset(1).build();
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.darksky.binary.DsResponseCodec;
+import ch.rasc.darksky.model.DsDataPointField;
+import ch.rasc.darksky.model.DsResponse;
+
+public class DsStringTableTest {
+
+	@Test
+	public void canonicalize() {
+		DsStringTable table = new DsStringTable(16, 10);
+		assertThat(table.capacity()).isEqualTo(16);
+		assertThat(new DsStringTable(100, 10).capacity()).isEqualTo(128);
+		assertThat(table.canonicalize(null)).isNull();
+
+		String clear = new String("Clear");
+		assertThat(table.canonicalize(clear)).isSameAs(clear);
+		assertThat(table.canonicalize(new String("Clear"))).isSameAs(clear);
+		char[] chars = "xxClearxx".toCharArray();
+		assertThat(table.canonicalize(chars, 2, 5)).isSameAs(clear);
+
+		String gfs = table.canonicalize(chars, 7, 2);
+		assertThat(gfs).isEqualTo("xx");
+		assertThat(table.canonicalize(new String("xx"))).isSameAs(gfs);
+
+		String longValue = "Partly cloudy throughout the day.";
+		assertThat(table.canonicalize(longValue)).isSameAs(longValue);
+		assertThat(table.canonicalize(new String(longValue))).isNotSameAs(longValue);
+
+		table.clear();
+		assertThat(table.canonicalize(new String("Clear"))).isNotSameAs(clear);
+	}
+
+	@Test
+	public void boundedByCapacity() {
+		DsStringTable table = new DsStringTable(4, 10);
+		for (int i = 0; i < 1000; i++) {
+			assertThat(table.canonicalize("v" + i)).isEqualTo("v" + i);
+		}
+		assertThat(table.capacity()).isEqualTo(4);
+	}
+
+	@Test
+	public void sharesDecodedStrings() throws IOException {
+		DsStringTable table = new DsStringTable();
+		StreamingJsonConverter converter = new StreamingJsonConverter(
+				DsNumberMode.DOUBLE, EnumSet.allOf(DsDataPointField.class), table);
+
+		DsResponse first = read(converter);
+		DsResponse second = read(converter);
+		assertThat(second).isEqualTo(first);
+		assertThat(second.timezone()).isSameAs(first.timezone());
+		assertThat(second.flags().sources().get(0))
+				.isSameAs(first.flags().sources().get(0));
+		assertThat(second.currently().summary()).isSameAs(first.currently().summary());
+		assertThat(second.hourly().data().get(5).summary())
+				.isSameAs(first.hourly().data().get(0).summary());
+
+		byte[] encoded = DsResponseCodec.encode(first);
+		DsResponse decoded = DsResponseCodec.decode(ByteBuffer.wrap(encoded),
+				DsNumberMode.DOUBLE, table);
+		assertThat(decoded).isEqualTo(first);
+		assertThat(decoded.timezone()).isSameAs(first.timezone());
+		assertThat(decoded.daily().summary()).isSameAs(first.daily().summary());
+	}
+
+	private DsResponse read(JsonConverter converter) throws IOException {
+		try (InputStream in = getClass().getClassLoader()
+				.getResourceAsStream("forecast-hourly.json")) {
+			return converter.deserialize(in);
+		}
+	}
+
+}
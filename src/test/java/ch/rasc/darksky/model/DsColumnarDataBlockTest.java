@@ -0,0 +1,85 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.darksky.json.JacksonJsonConverter;
+
+public class DsColumnarDataBlockTest {
+
+	@Test
+	public void hourlyColumns() throws IOException {
+		DsResponse response;
+		try (InputStream in = getClass().getClassLoader()
+				.getResourceAsStream("forecast-hourly.json")) {
+			response = new JacksonJsonConverter().deserialize(in);
+		}
+		List<DsDataPoint> data = response.hourly().data();
+
+		DsColumnarDataBlock block = DsColumnarDataBlock.of(response.hourly());
+		assertThat(block.size()).isEqualTo(169);
+		assertThat(block.summary()).isEqualTo("Clear throughout the day.");
+		assertThat(block.icon()).isEqualTo(DsIcon.CLEAR_DAY);
+		assertThat(block.time(0)).isEqualTo(data.get(0).time());
+		assertThat(block.time(168)).isEqualTo(data.get(168).time());
+
+		double min = data.stream().mapToDouble(p -> p.temperature().doubleValue()).min()
+				.getAsDouble();
+		double max = data.stream().mapToDouble(p -> p.temperature().doubleValue()).max()
+				.getAsDouble();
+		double mean = data.stream().mapToDouble(p -> p.temperature().doubleValue())
+				.average().getAsDouble();
+		assertThat(block.min(DsDataPointField.TEMPERATURE)).isEqualTo(min);
+		assertThat(block.max(DsDataPointField.TEMPERATURE)).isEqualTo(max);
+		assertThat(block.mean(DsDataPointField.TEMPERATURE)).isEqualTo(mean);
+		assertThat(block.column(DsDataPointField.TEMPERATURE)).hasSize(169);
+
+		long withPrecipType = data.stream().filter(p -> p.precipType() != null).count();
+		assertThat(block.count(DsDataPointField.PRECIP_TYPE)).isEqualTo(withPrecipType);
+		assertThat(block.count(DsDataPointField.TEMPERATURE)).isEqualTo(169);
+
+		// only on daily data points
+		assertThat(block.count(DsDataPointField.SUNRISE_TIME)).isZero();
+		assertThat(block.column(DsDataPointField.SUNRISE_TIME)).isEmpty();
+		assertThat(block.min(DsDataPointField.SUNRISE_TIME)).isNaN();
+		assertThat(block.isPresent(DsDataPointField.SUNRISE_TIME, 0)).isFalse();
+
+		for (int i = 0; i < data.size(); i++) {
+			DsDataPoint expected = data.get(i);
+			DsDoubleDataPoint actual = block.dataPoint(i);
+			assertThat(actual.time()).isEqualTo(expected.time());
+			assertThat(actual.icon()).isEqualTo(expected.icon());
+			assertThat(actual.precipType()).isEqualTo(expected.precipType());
+			assertThat(actual.summary()).isEqualTo(expected.summary());
+			for (DsDataPointField field : DsDataPointField.values()) {
+				if (field.isNumeric()) {
+					assertThat(block.isPresent(field, i)).as(field.name())
+							.isEqualTo(field.get(expected) != null);
+					assertThat(actual.doubleValue(field)).as(field.name())
+							.isEqualTo(Double.valueOf(expected.doubleValue(field)));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class JsonValueIndexTest {
+
+	@Test
+	public void findByJsonValue() {
+		for (DsIcon icon : DsIcon.values()) {
+			if (icon != DsIcon.UNKNOWN) {
+				assertThat(DsIcon.findByJsonValue(copy(icon.getJsonValue())))
+						.isSameAs(icon);
+				assertThat(DsIcon.findByJsonValue(chars(icon.getJsonValue()), 2,
+						icon.getJsonValue().length())).isSameAs(icon);
+			}
+		}
+		for (DsPrecipType type : DsPrecipType.values()) {
+			if (type != DsPrecipType.UNKNOWN) {
+				assertThat(DsPrecipType.findByJsonValue(copy(type.getJsonValue())))
+						.isSameAs(type);
+				assertThat(DsPrecipType.findByJsonValue(chars(type.getJsonValue()), 2,
+						type.getJsonValue().length())).isSameAs(type);
+			}
+		}
+		for (DsAlertSeverity severity : DsAlertSeverity.values()) {
+			if (severity != DsAlertSeverity.UNKNOWN) {
+				assertThat(DsAlertSeverity.findByJsonValue(copy(severity.getJsonValue())))
+						.isSameAs(severity);
+			}
+		}
+		for (DsUnit unit : DsUnit.values()) {
+			if (unit != DsUnit.UNKNOWN) {
+				assertThat(DsUnit.findByJsonValue(copy(unit.getJsonValue())))
+						.isSameAs(unit);
+			}
+		}
+	}
+
+	@Test
+	public void unknownValues() {
+		assertThat(DsIcon.findByJsonValue("hail")).isSameAs(DsIcon.UNKNOWN);
+		assertThat(DsIcon.findByJsonValue("")).isSameAs(DsIcon.UNKNOWN);
+		assertThat(DsIcon.findByJsonValue(chars("rainy"), 2, 5))
+				.isSameAs(DsIcon.UNKNOWN);
+		assertThat(DsIcon.findByJsonValue(chars("rainy"), 2, 4)).isSameAs(DsIcon.RAIN);
+		assertThat(DsPrecipType.findByJsonValue("hail")).isSameAs(DsPrecipType.UNKNOWN);
+		assertThat(DsUnit.findByJsonValue("metric")).isSameAs(DsUnit.UNKNOWN);
+
+		assertThat(DsIcon.findByJsonValue((String) null)).isNull();
+		assertThat(DsPrecipType.findByJsonValue((String) null)).isNull();
+		assertThat(DsAlertSeverity.findByJsonValue((String) null)).isNull();
+		assertThat(DsUnit.findByJsonValue((String) null)).isNull();
+	}
+
+	private static String copy(String value) {
+		return new String(value.toCharArray());
+	}
+
+	/**
+	 * The value with two leading and trailing characters
+	 */
+	private static char[] chars(String value) {
+		return ("xx" + value + "yy").toCharArray();
+	}
+}
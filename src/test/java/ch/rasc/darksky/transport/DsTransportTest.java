@@ -0,0 +1,147 @@
+/**
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.darksky.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import ch.rasc.darksky.DsClient;
+import ch.rasc.darksky.DsHttpException;
+import ch.rasc.darksky.cache.DsResponseCache;
+import ch.rasc.darksky.model.DsForecastRequest;
+import ch.rasc.darksky.model.DsResponse;
+import ch.rasc.darksky.model.DsUnit;
+
+public class DsTransportTest {
+
+	private static final DsForecastRequest REQUEST = DsForecastRequest.builder()
+			.latitude("37.8267").longitude("-122.4233").unit(DsUnit.SI).build();
+
+	private final Queue<String> paths = new ConcurrentLinkedQueue<>();
+
+	private HttpServer server;
+
+	private String baseUrl;
+
+	@BeforeEach
+	public void startServer() throws IOException {
+		byte[] json;
+		try (InputStream in = getClass().getClassLoader()
+				.getResourceAsStream("forecast.json")) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					gzip.write(buffer, 0, read);
+				}
+			}
+			json = out.toByteArray();
+		}
+
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/", exchange -> {
+			this.paths.add(exchange.getRequestURI().toString());
+			byte[] body;
+			if (exchange.getRequestURI().getPath().contains("/forbidden/")) {
+				body = "{\"code\":403,\"error\":\"forbidden\"}"
+						.getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(403, body.length);
+			}
+			else {
+				body = json;
+				exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				exchange.getResponseHeaders().add("X-Forecast-API-Calls", "7");
+				exchange.sendResponseHeaders(200, body.length);
+			}
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		this.server.start();
+		this.baseUrl = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/v1/";
+	}
+
+	@AfterEach
+	public void stopServer() {
+		this.server.stop(0);
+	}
+
+	@Test
+	public void okHttpTransport() throws Exception {
+		assertTransport(new DsOkHttpTransport());
+	}
+
+	@Test
+	public void urlConnectionTransport() throws Exception {
+		assertTransport(new DsUrlConnectionTransport());
+	}
+
+	private void assertTransport(DsTransport transport) throws Exception {
+		DsClient client = DsClient.builder("key").transport(transport)
+				.baseUrl(this.baseUrl).build();
+
+		DsResponse response = client.sendForecastRequest(REQUEST);
+		assertThat(response.latitude()).isEqualByComparingTo("37.8267");
+		assertThat(response.hourly().data()).isNotEmpty();
+		assertThat(this.paths.poll())
+				.isEqualTo("/v1/key/37.8267,-122.4233?units=si");
+		assertThat(client.sendForecastRequestAsync(REQUEST).get().currently())
+				.isEqualTo(response.currently());
+		assertThat(client.apiCalls()).isEqualTo(7);
+		assertThat(client.metrics().bytesReceived()).isGreaterThan(20_000);
+
+		DsClient forbidden = DsClient.builder("key").transport(transport)
+				.baseUrl(this.baseUrl + "forbidden/").build();
+		assertThatThrownBy(() -> forbidden.sendForecastRequest(REQUEST))
+				.isInstanceOf(DsHttpException.class).hasMessageContaining("forbidden")
+				.satisfies(e -> assertThat(((DsHttpException) e).getCode())
+						.isEqualTo(403));
+	}
+
+	@Test
+	public void cacheKeyContainsBaseUrl() throws Exception {
+		DsResponseCache cache = new DsResponseCache(10);
+		DsClient client = DsClient.builder("key").baseUrl(this.baseUrl).cache(cache)
+				.build();
+		DsClient other = DsClient.builder("key").baseUrl(this.baseUrl + "other/")
+				.cache(cache).build();
+
+		client.sendForecastRequest(REQUEST);
+		client.sendForecastRequest(REQUEST);
+		other.sendForecastRequest(REQUEST);
+		assertThat(this.paths).containsExactly("/v1/key/37.8267,-122.4233?units=si",
+				"/v1/other/key/37.8267,-122.4233?units=si");
+		assertThat(cache.size()).isEqualTo(2);
+	}
+
+}